@@ -18,7 +18,6 @@
 
 package com.frostwire.android.gui;
 
-import android.text.Html;
 import com.frostwire.android.gui.views.AbstractListAdapter;
 import com.frostwire.search.*;
 import com.frostwire.search.extratorrent.ExtratorrentSearchResult;
@@ -30,7 +29,6 @@ import rx.Observable;
 import rx.functions.Action1;
 import rx.subjects.PublishSubject;
 
-import java.text.Normalizer;
 import java.util.*;
 
 /**
@@ -49,7 +47,7 @@ public final class LocalSearchEngine {
     private static LocalSearchEngine instance;
     private final HashSet<Integer> opened = new HashSet<Integer>();
     private long currentSearchToken;
-    private List<String> currentSearchTokens;
+    private KeywordMatcher currentSearchMatcher;
     private boolean searchFinished;
 
     public synchronized static void create() {
@@ -96,7 +94,7 @@ public final class LocalSearchEngine {
         manager.stop();
 
         currentSearchToken = Math.abs(System.nanoTime());
-        currentSearchTokens = tokenize(query);
+        currentSearchMatcher = new KeywordMatcher(query);
         searchFinished = false;
 
         for (SearchEngine se : SearchEngine.getEngines()) {
@@ -110,7 +108,7 @@ public final class LocalSearchEngine {
     public void cancelSearch() {
         manager.stop();
         currentSearchToken = 0;
-        currentSearchTokens = null;
+        currentSearchMatcher = null;
         searchFinished = true;
     }
 
@@ -165,7 +163,7 @@ public final class LocalSearchEngine {
     private List<SearchResult> filter(List<? extends SearchResult> results) {
         List<SearchResult> list;
 
-        if (currentSearchTokens == null || currentSearchTokens.isEmpty()) {
+        if (currentSearchMatcher == null || currentSearchMatcher.getTokens().isEmpty()) {
             list = Collections.emptyList();
         } else {
             list = filter2(results);
@@ -209,7 +207,7 @@ public final class LocalSearchEngine {
                         }
                     } else if (sr instanceof ScrapedTorrentFileSearchResult) {
                         list.add(sr);
-                    } else if (filter(new LinkedList<String>(currentSearchTokens), sr)) {
+                    } else if (currentSearchMatcher.matches(sr)) {
                         list.add(sr);
                     }
                 } else {
@@ -223,65 +221,4 @@ public final class LocalSearchEngine {
 
         return list;
     }
-
-    private boolean filter(List<String> tokens, SearchResult sr) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(sr.getDisplayName());
-        if (sr instanceof CrawledSearchResult) {
-            sb.append(((CrawledSearchResult) sr).getParent().getDisplayName());
-        }
-
-        if (sr instanceof FileSearchResult) {
-            sb.append(((FileSearchResult) sr).getFilename());
-        }
-
-        String str = sanitize(sb.toString());
-        str = normalize(str);
-
-        Iterator<String> it = tokens.iterator();
-        while (it.hasNext()) {
-            String token = it.next();
-            if (str.contains(token)) {
-                it.remove();
-            }
-        }
-
-        return tokens.isEmpty();
-    }
-
-    private String sanitize(String str) {
-        str = Html.fromHtml(str).toString();
-        str = str.replaceAll("\\.torrent|www\\.|\\.com|\\.net|[\\\\\\/%_;\\-\\.\\(\\)\\[\\]\\n\\rÐ&~{}\\*@\\^'=!,¡|#ÀÁ]", " ");
-        str = StringUtils.removeDoubleSpaces(str);
-
-        return str.trim();
-    }
-
-    private String normalize(String token) {
-        String norm = Normalizer.normalize(token, Normalizer.Form.NFKD);
-        norm = norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        norm = norm.toLowerCase(Locale.US);
-
-        return norm;
-    }
-
-    private Set<String> normalizeTokens(Set<String> tokens) {
-        Set<String> normalizedTokens = new HashSet<String>();
-
-        for (String token : tokens) {
-            String norm = normalize(token);
-            normalizedTokens.add(norm);
-        }
-
-        return normalizedTokens;
-    }
-
-    private List<String> tokenize(String keywords) {
-        keywords = sanitize(keywords);
-
-        Set<String> tokens = new HashSet<String>(Arrays.asList(keywords.toLowerCase(Locale.US).split(" ")));
-
-        return new ArrayList<String>(normalizeTokens(tokens));
-    }
-}
\ No newline at end of file
+}
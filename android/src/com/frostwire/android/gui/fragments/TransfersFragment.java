@@ -171,7 +171,12 @@ public class TransfersFragment extends AbstractFragment implements TimerObserver
     }
 
     private void updateStatusBar(String sDown, String sUp, int downloads, int uploads) {
-        textDownloads.setText(downloads + " @ " + sDown);
+        String textDown = downloads + " @ " + sDown;
+        TransferManager tm = TransferManager.instance();
+        if (tm.isRestoringTorrents()) {
+            textDown += " (" + getString(R.string.restoring_n_of_n, tm.getRestoredTorrents(), tm.getTorrentsToRestore()) + ")";
+        }
+        textDownloads.setText(textDown);
         textUploads.setText(uploads + " @ " + sUp);
         updateVPNButtonIfStatusChanged(TransfersFragment.isVPNactive);
         EngineService.asyncCheckVPNStatus(getView(), onVPNStatusCallback);
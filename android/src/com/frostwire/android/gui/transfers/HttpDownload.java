@@ -27,9 +27,11 @@ import com.frostwire.transfers.TransferItem;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.util.ZipUtils;
 import com.frostwire.util.http.HttpClient;
+import com.frostwire.util.http.SegmentedDownloader;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
@@ -73,6 +75,8 @@ public final class HttpDownload implements DownloadTransfer {
 
     private HttpDownloadListener listener;
 
+    private volatile SegmentedDownloader segmentedDownloader;
+
     HttpDownload(TransferManager manager, File savePath, HttpDownloadLink link) {
         this.manager = manager;
         this.link = link;
@@ -179,6 +183,10 @@ public final class HttpDownload implements DownloadTransfer {
         if (status != STATUS_COMPLETE) {
             status = STATUS_CANCELLED;
         }
+        SegmentedDownloader downloader = segmentedDownloader;
+        if (downloader != null) {
+            downloader.cancel();
+        }
         if (status != STATUS_COMPLETE || deleteData) {
             cleanup();
         }
@@ -208,9 +216,11 @@ public final class HttpDownload implements DownloadTransfer {
                 try {
                     status = STATUS_DOWNLOADING;
                     String uri = link.getUrl();
-                    HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
-                    client.setListener(new DownloadListener());
-                    client.save(uri, savePath, resume);
+                    if (!downloadSegmented(uri, resume)) {
+                        HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
+                        client.setListener(new DownloadListener());
+                        client.save(uri, savePath, resume);
+                    }
                     Librarian.instance().scan(savePath);
                 } catch (Throwable e) {
                     error(e);
@@ -219,6 +229,42 @@ public final class HttpDownload implements DownloadTransfer {
         });
     }
 
+    /**
+     * Downloads over several connections when the server supports byte ranges.
+     *
+     * @return false if the server doesn't allow it, and the regular download should be used
+     */
+    private boolean downloadSegmented(String uri, boolean resume) throws IOException {
+        if (resume && savePath.exists() && !SegmentedDownloader.getStateFile(savePath).exists()) {
+            // partial data from a single connection download, keep resuming it that way
+            return false;
+        }
+
+        SegmentedDownloader downloader = new SegmentedDownloader(uri, savePath, new SegmentedDownloader.Listener() {
+            @Override
+            public void onData(SegmentedDownloader downloader, int length) {
+                synchronized (HttpDownload.this) {
+                    bytesReceived = downloader.getBytesDownloaded();
+                    updateAverageDownloadSpeed();
+                }
+            }
+        });
+        segmentedDownloader = downloader;
+
+        try {
+            if (!downloader.probe()) {
+                return false;
+            }
+
+            if (status != STATUS_CANCELLED && downloader.download(resume)) {
+                complete();
+            }
+            return true;
+        } finally {
+            segmentedDownloader = null;
+        }
+    }
+
     private String getStatusString(int status) {
         int resId;
         switch (status) {
@@ -310,6 +356,7 @@ public final class HttpDownload implements DownloadTransfer {
     private void cleanup() {
         try {
             savePath.delete();
+            SegmentedDownloader.getStateFile(savePath).delete();
         } catch (Throwable tr) {
             // ignore
         }
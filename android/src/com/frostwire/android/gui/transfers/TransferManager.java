@@ -240,6 +240,22 @@ public final class TransferManager {
         engine.restoreDownloads();
     }
 
+    public boolean isRestoringTorrents() {
+        return BTEngine.getInstance().isRestoring();
+    }
+
+    public int getRestoredTorrents() {
+        return BTEngine.getInstance().getRestoredCount();
+    }
+
+    public int getTorrentsToRestore() {
+        return BTEngine.getInstance().getRestoreTotal();
+    }
+
+    public long getRestoreTime() {
+        return BTEngine.getInstance().getRestoreTime();
+    }
+
     boolean remove(Transfer transfer) {
         if (transfer instanceof BittorrentDownload) {
             return bittorrentDownloads.remove(transfer);
@@ -27,7 +27,6 @@ import com.frostwire.logging.Logger;
 import com.frostwire.transfers.BittorrentDownload;
 import com.frostwire.transfers.TransferItem;
 import com.frostwire.transfers.TransferState;
-import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
@@ -56,9 +55,11 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
 
     private final BTEngine engine;
     private final TorrentHandle th;
+    private final String infoHash;
     private final File savePath;
     private final Date created;
     private final PiecesTracker piecesTracker;
+    private final FileProgressCache fileProgress;
     private final File parts;
 
     private final Map<String, String> extra;
@@ -74,10 +75,12 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
         super(th);
         this.engine = engine;
         this.th = th;
+        this.infoHash = th.getInfoHash().toString();
         this.savePath = new File(th.getSavePath());
         this.created = new Date(th.getStatus().getAddedTime());
         TorrentInfo ti = th.getTorrentInfo();
         this.piecesTracker = ti != null ? new PiecesTracker(ti) : null;
+        this.fileProgress = new FileProgressCache(th);
         this.parts = ti != null ? new File(savePath, "." + ti.getInfoHash() + ".parts") : null;
 
         this.extra = createExtra();
@@ -123,15 +126,15 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     }
 
     public boolean isPaused() {
-        return th.getStatus().isPaused() || engine.isPaused() || !engine.isStarted();
+        return status().isPaused() || engine.isPaused() || !engine.isStarted();
     }
 
     public boolean isSeeding() {
-        return th.getStatus().isSeeding();
+        return status().isSeeding();
     }
 
     public boolean isFinished() {
-        return th.getStatus().isFinished();
+        return status().isFinished();
     }
 
     @Override
@@ -157,7 +160,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
             return TransferState.ERROR;
         }
 
-        final TorrentStatus status = th.getStatus();
+        final BTDownloadStatus status = status();
 
         if (status.isPaused() && status.isFinished()) {
             return TransferState.FINISHED;
@@ -213,13 +216,13 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
 
     @Override
     public int getProgress() {
-        float fp = th.getStatus().getProgress();
+        float fp = status().getProgress();
 
         if (Float.compare(fp, 1f) == 0) {
             return 100;
         }
 
-        int p = (int) (th.getStatus().getProgress() * 100);
+        int p = (int) (fp * 100);
         return Math.min(p, 100);
     }
 
@@ -229,43 +232,45 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     }
 
     public long getBytesReceived() {
-        return th.getStatus().getTotalDownload();
+        return status().getTotalDownload();
     }
 
     public long getTotalBytesReceived() {
-        return th.getStatus().getAllTimeDownload();
+        return status().getAllTimeDownload();
     }
 
     public long getBytesSent() {
-        return th.getStatus().getTotalUpload();
+        return status().getTotalUpload();
     }
 
     public long getTotalBytesSent() {
-        return th.getStatus().getAllTimeUpload();
+        return status().getAllTimeUpload();
     }
 
     public long getDownloadSpeed() {
-        return (isFinished() || isPaused() || isSeeding()) ? 0 : th.getStatus().getDownloadPayloadRate();
+        BTDownloadStatus status = status();
+        return (status.isFinished() || isPaused() || status.isSeeding()) ? 0 : status.getDownloadPayloadRate();
     }
 
     public long getUploadSpeed() {
-        return ((isFinished() && !isSeeding()) || isPaused()) ? 0 : th.getStatus().getUploadPayloadRate();
+        BTDownloadStatus status = status();
+        return ((status.isFinished() && !status.isSeeding()) || isPaused()) ? 0 : status.getUploadPayloadRate();
     }
 
     public int getConnectedPeers() {
-        return th.getStatus().getNumPeers();
+        return status().getNumPeers();
     }
 
     public int getTotalPeers() {
-        return th.getStatus().getListPeers();
+        return status().getListPeers();
     }
 
     public int getConnectedSeeds() {
-        return th.getStatus().getNumSeeds();
+        return status().getNumSeeds();
     }
 
     public int getTotalSeeds() {
-        return th.getStatus().getListSeeds();
+        return status().getListSeeds();
     }
 
     @Override
@@ -287,7 +292,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     }
 
     public String getInfoHash() {
-        return th.getInfoHash().toString();
+        return infoHash;
     }
 
     @Override
@@ -301,7 +306,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
             return 0;
         }
 
-        TorrentStatus status = th.getStatus();
+        BTDownloadStatus status = status();
         long left = ti.getTotalSize() - status.getTotalDone();
         long rate = status.getDownloadPayloadRate();
 
@@ -322,6 +327,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
         th.setAutoManaged(false);
         th.pause();
         th.saveResumeData();
+        engine.invalidateStatus(infoHash);
     }
 
     public void resume() {
@@ -330,6 +336,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
         th.setAutoManaged(true);
         th.resume();
         th.saveResumeData();
+        engine.invalidateStatus(infoHash);
     }
 
     public void remove() {
@@ -342,8 +349,6 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     }
 
     public void remove(boolean deleteTorrent, boolean deleteData) {
-        String infoHash = this.getInfoHash();
-
         Session s = engine.getSession();
 
         incompleteFilesToRemove = getIncompleteFiles();
@@ -363,8 +368,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
             }
         }
 
-        engine.resumeDataFile(infoHash).delete();
-        engine.resumeTorrentFile(infoHash).delete();
+        engine.removeResumeData(infoHash);
     }
 
     public BTDownloadListener getListener() {
@@ -394,6 +398,8 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
 
     @Override
     public void torrentFinished(TorrentFinishedAlert alert) {
+        engine.invalidateStatus(infoHash);
+
         if (listener != null) {
             try {
                 listener.finished(this);
@@ -408,6 +414,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     @Override
     public void torrentRemoved(TorrentRemovedAlert alert) {
         engine.getSession().removeListener(this);
+        engine.invalidateStatus(infoHash);
 
         if (parts != null) {
             parts.delete();
@@ -420,6 +427,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     public void torrentChecked(TorrentCheckedAlert alert) {
         try {
             if (th.isValid()) {
+                fileProgress.invalidate();
                 // trigger items calculation
                 getItems();
             }
@@ -433,18 +441,23 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     public void saveResumeData(SaveResumeDataAlert alert) {
         long now = System.currentTimeMillis();
         final TorrentStatus status = th.getStatus();
-        boolean forceSerialization = status.isFinished() || status.isPaused();
+        boolean forceSerialization = status.isFinished() || status.isPaused() || engine.isResumeDataRequested(infoHash);
         if (forceSerialization || (now - lastSaveResumeTime) >= SAVE_RESUME_RESOLUTION_MILLIS) {
             lastSaveResumeTime = now;
         } else {
             // skip, too fast, see SAVE_RESUME_RESOLUTION_MILLIS
             return;
         }
-        serializeResumeData(alert);
+        try {
+            serializeResumeData(alert);
+        } finally {
+            engine.resumeDataDone(infoHash);
+        }
     }
 
     @Override
     public void pieceFinished(PieceFinishedAlert alert) {
+        fileProgress.invalidate();
         try {
             if (piecesTracker != null) {
                 piecesTracker.setComplete(alert.getPieceIndex(), true);
@@ -533,7 +546,7 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
                 int numFiles = ti.getNumFiles();
 
                 for (int i = 0; i < numFiles; i++) {
-                    BTDownloadItem item = new BTDownloadItem(th, i, fs.getFilePath(i), fs.getFileSize(i), piecesTracker);
+                    BTDownloadItem item = new BTDownloadItem(th, i, fs.getFilePath(i), fs.getFileSize(i), piecesTracker, fileProgress);
 
                     items.add(item);
                 }
@@ -600,17 +613,22 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     }
 
     public boolean isSequentialDownload() {
-        return th.getStatus().isSequentialDownload();
+        return status().isSequentialDownload();
     }
 
     public void setSequentialDownload(boolean sequential) {
         th.setSequentialDownload(sequential);
+        engine.invalidateStatus(infoHash);
     }
 
     public File partsFile() {
         return parts;
     }
 
+    private BTDownloadStatus status() {
+        return engine.getStatus(infoHash, th);
+    }
+
     private PaymentOptions loadPaymentOptions(TorrentInfo ti) {
         try {
             BTInfoAdditionalMetadataHolder holder = new BTInfoAdditionalMetadataHolder(ti, getDisplayName());
@@ -623,13 +641,10 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
     private void serializeResumeData(SaveResumeDataAlert alert) {
         try {
             if (th.isValid()) {
-                String infoHash = th.getInfoHash().toString();
-                File file = engine.resumeDataFile(infoHash);
-
                 Entry e = alert.resumeData();
                 e.getSwig().dict().set(EXTRA_DATA_KEY, Entry.fromMap(extra).getSwig());
 
-                FileUtils.writeByteArrayToFile(file, e.bencode());
+                engine.writeResumeData(infoHash, e.bencode());
             }
         } catch (Throwable e) {
             LOG.warn("Error saving resume data", e);
@@ -640,11 +655,9 @@ public final class BTDownload extends TorrentAlertAdapter implements BittorrentD
         Map<String, String> map = new HashMap<String, String>();
 
         try {
-            String infoHash = getInfoHash();
-            File file = engine.resumeDataFile(infoHash);
+            byte[] arr = engine.readResumeData(infoHash);
 
-            if (file.exists()) {
-                byte[] arr = FileUtils.readFileToByteArray(file);
+            if (arr != null) {
                 entry e = entry.bdecode(Vectors.bytes2char_vector(arr));
                 string_entry_map d = e.dict();
 
@@ -39,8 +39,13 @@ public class BTDownloadItem implements TransferItem {
     private final long size;
 
     private PiecesTracker piecesTracker;
+    private final FileProgressCache fileProgress;
 
     public BTDownloadItem(TorrentHandle th, int index, String filePath, long fileSize, PiecesTracker piecesTracker) {
+        this(th, index, filePath, fileSize, piecesTracker, new FileProgressCache(th));
+    }
+
+    BTDownloadItem(TorrentHandle th, int index, String filePath, long fileSize, PiecesTracker piecesTracker, FileProgressCache fileProgress) {
         this.th = th;
         this.index = index;
 
@@ -49,6 +54,7 @@ public class BTDownloadItem implements TransferItem {
         this.size = fileSize;
 
         this.piecesTracker = piecesTracker;
+        this.fileProgress = fileProgress;
     }
 
     @Override
@@ -78,12 +84,7 @@ public class BTDownloadItem implements TransferItem {
 
     @Override
     public long getDownloaded() {
-        if (!th.isValid()) {
-            return 0;
-        }
-
-        long[] progress = th.getFileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
-        return progress[index];
+        return fileProgress.get(index);
     }
 
     @Override
@@ -98,7 +99,7 @@ public class BTDownloadItem implements TransferItem {
         if (downloaded == size) {
             progress = 100;
         } else {
-            progress = (int) ((float) (getDownloaded() * 100) / (float) size);
+            progress = (int) ((float) (downloaded * 100) / (float) size);
         }
 
         return progress;
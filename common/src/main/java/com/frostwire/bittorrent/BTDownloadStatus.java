@@ -0,0 +1,138 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.TorrentStatus;
+
+/**
+ * Immutable copy of the fields of a {@link TorrentStatus} used by
+ * {@link BTDownload}, taken once per status refresh so the getters of the
+ * download don't cross to the native side.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class BTDownloadStatus {
+
+    private final boolean paused;
+    private final boolean seeding;
+    private final boolean finished;
+    private final boolean sequentialDownload;
+    private final TorrentStatus.State state;
+    private final float progress;
+    private final long totalDone;
+    private final long totalDownload;
+    private final long allTimeDownload;
+    private final long totalUpload;
+    private final long allTimeUpload;
+    private final int downloadPayloadRate;
+    private final int uploadPayloadRate;
+    private final int numPeers;
+    private final int listPeers;
+    private final int numSeeds;
+    private final int listSeeds;
+
+    public BTDownloadStatus(TorrentStatus status) {
+        this.paused = status.isPaused();
+        this.seeding = status.isSeeding();
+        this.finished = status.isFinished();
+        this.sequentialDownload = status.isSequentialDownload();
+        this.state = status.getState();
+        this.progress = status.getProgress();
+        this.totalDone = status.getTotalDone();
+        this.totalDownload = status.getTotalDownload();
+        this.allTimeDownload = status.getAllTimeDownload();
+        this.totalUpload = status.getTotalUpload();
+        this.allTimeUpload = status.getAllTimeUpload();
+        this.downloadPayloadRate = status.getDownloadPayloadRate();
+        this.uploadPayloadRate = status.getUploadPayloadRate();
+        this.numPeers = status.getNumPeers();
+        this.listPeers = status.getListPeers();
+        this.numSeeds = status.getNumSeeds();
+        this.listSeeds = status.getListSeeds();
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public boolean isSeeding() {
+        return seeding;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public boolean isSequentialDownload() {
+        return sequentialDownload;
+    }
+
+    public TorrentStatus.State getState() {
+        return state;
+    }
+
+    public float getProgress() {
+        return progress;
+    }
+
+    public long getTotalDone() {
+        return totalDone;
+    }
+
+    public long getTotalDownload() {
+        return totalDownload;
+    }
+
+    public long getAllTimeDownload() {
+        return allTimeDownload;
+    }
+
+    public long getTotalUpload() {
+        return totalUpload;
+    }
+
+    public long getAllTimeUpload() {
+        return allTimeUpload;
+    }
+
+    public int getDownloadPayloadRate() {
+        return downloadPayloadRate;
+    }
+
+    public int getUploadPayloadRate() {
+        return uploadPayloadRate;
+    }
+
+    public int getNumPeers() {
+        return numPeers;
+    }
+
+    public int getListPeers() {
+        return listPeers;
+    }
+
+    public int getNumSeeds() {
+        return numSeeds;
+    }
+
+    public int getListSeeds() {
+        return listSeeds;
+    }
+}
@@ -23,13 +23,20 @@ import com.frostwire.jlibtorrent.alerts.*;
 import com.frostwire.jlibtorrent.swig.*;
 import com.frostwire.logging.Logger;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
+import com.frostwire.util.ThreadPool;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.FilenameUtils;
 
 import java.io.File;
-import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantLock;
 
 import static com.frostwire.jlibtorrent.alerts.AlertType.*;
@@ -43,19 +50,55 @@ public final class BTEngine {
     private static final Logger LOG = Logger.getLogger(BTEngine.class);
 
     private static final int[] INNER_LISTENER_TYPES = new int[]{TORRENT_ADDED.getSwig(),
+            ADD_TORRENT.getSwig(),
             PIECE_FINISHED.getSwig(),
             PORTMAP.getSwig(),
             PORTMAP_ERROR.getSwig(),
-            DHT_STATS.getSwig()};
+            DHT_STATS.getSwig(),
+            STATE_UPDATE.getSwig(),
+            SAVE_RESUME_DATA_FAILED.getSwig()};
 
     private static final String TORRENT_ORIG_PATH_KEY = "torrent_orig_path";
 
+    private static final long STATUS_UPDATE_INTERVAL_MILLIS = 500;
+    private static final long SAVE_RESUME_INTERVAL_MILLIS = 10000;
+    private static final long STOP_RESUME_TIMEOUT_MILLIS = 5000;
+    // the wait of the saves requested outside of stop
+    private static final CountDownLatch NO_RESUME_WAIT = new CountDownLatch(0);
+
+    private static final String RESUME_JOURNAL_NAME = "resume.journal";
+
+    private static final int RESTORE_BATCH_SIZE = 20;
+    private static final int RESTORE_PRIORITY_ACTIVE = 0;
+    private static final int RESTORE_PRIORITY_UNKNOWN = 1;
+    private static final int RESTORE_PRIORITY_PAUSED = 2;
+    private static final int RESTORE_PRIORITY_FINISHED = 3;
+
     public static BTContext ctx;
 
     private final ReentrantLock sync;
     private final InnerListener innerListener;
 
-    private final Queue<RestoreDownloadTask> restoreDownloadsQueue;
+    private final PriorityBlockingQueue<RestoreDownloadTask> restoreDownloadsQueue;
+    private final AtomicLong restoreSequence;
+    // the info hashes of the batch being added, guarded by itself
+    private final Set<String> restorePending;
+    // if the batches are running, guarded by restorePending
+    private boolean restoreBatches;
+    private volatile boolean restoreParsing;
+    private final AtomicInteger restoreTotal;
+    private final AtomicInteger restoredCount;
+    private volatile long restoreStartTime;
+    private volatile long restoreEndTime;
+
+    private final Map<String, BTDownloadStatus> statuses;
+    private final AtomicLong lastStatusUpdateRequest;
+
+    private final Map<String, TorrentHandle> resumeDirty;
+    // the saves requested by the engine, not throttled by the download
+    private final Map<String, CountDownLatch> resumeRequested;
+    private ResumeJournal resumeJournal;
+    private Timer resumeTimer;
 
     private Session session;
     private Downloader downloader;
@@ -68,7 +111,15 @@ public final class BTEngine {
     private BTEngine() {
         this.sync = new ReentrantLock();
         this.innerListener = new InnerListener();
-        this.restoreDownloadsQueue = new LinkedList<RestoreDownloadTask>();
+        this.restoreDownloadsQueue = new PriorityBlockingQueue<RestoreDownloadTask>();
+        this.restoreSequence = new AtomicLong();
+        this.restorePending = new HashSet<String>();
+        this.restoreTotal = new AtomicInteger();
+        this.restoredCount = new AtomicInteger();
+        this.statuses = new ConcurrentHashMap<String, BTDownloadStatus>();
+        this.lastStatusUpdateRequest = new AtomicLong();
+        this.resumeDirty = new ConcurrentHashMap<String, TorrentHandle>();
+        this.resumeRequested = new ConcurrentHashMap<String, CountDownLatch>();
     }
 
     private static class Loader {
@@ -179,6 +230,14 @@ public final class BTEngine {
             loadSettings();
             session.addListener(innerListener);
 
+            resumeTimer = new Timer("BTEngine-ResumeData", true);
+            resumeTimer.schedule(new TimerTask() {
+                @Override
+                public void run() {
+                    flushResumeData();
+                }
+            }, SAVE_RESUME_INTERVAL_MILLIS, SAVE_RESUME_INTERVAL_MILLIS);
+
             fireStarted();
 
         } finally {
@@ -197,8 +256,15 @@ public final class BTEngine {
                 return;
             }
 
-            session.removeListener(innerListener);
+            resumeTimer.cancel();
+            resumeTimer = null;
+
             saveSettings();
+            saveDirtyResumeData();
+
+            session.removeListener(innerListener);
+            statuses.clear();
+            resumeRequested.clear();
 
             downloader = null;
             defaultSettings = null;
@@ -621,6 +687,12 @@ public final class BTEngine {
         return downloader.fetchMagnet(uri, timeout);
     }
 
+    /**
+     * Restores the downloads of the previous session. The journal entries
+     * are parsed in parallel in the background and added to the session in
+     * batches as they are ready, among the ones ready the downloading first,
+     * then the paused ones and the finished ones at the end.
+     */
     public void restoreDownloads() {
         if (session == null) {
             return;
@@ -631,49 +703,208 @@ public final class BTEngine {
             return;
         }
 
-        File[] torrents = ctx.homeDir.listFiles(new FilenameFilter() {
+        restoreStartTime = System.currentTimeMillis();
+        restoreEndTime = 0;
+        restoredCount.set(0);
+        restoreParsing = true;
+
+        final ResumeJournal journal = resumeJournal();
+        // before the vuze migration adds its own entries to the journal
+        final List<String> infoHashes = journal != null ? journal.getInfoHashes() : new ArrayList<String>();
+
+        migrateVuzeDownloads();
+
+        restoreTotal.set(infoHashes.size() + restoreDownloadsQueue.size());
+
+        Thread t = new Thread(new Runnable() {
             @Override
-            public boolean accept(File dir, String name) {
-                return name != null && FilenameUtils.getExtension(name).equals("torrent");
+            public void run() {
+                // the migrated vuze downloads are ready
+                startRestoreBatches();
+                try {
+                    prepareRestoreTasks(journal, infoHashes);
+                } finally {
+                    restoreParsing = false;
+                }
+                // ends the restore if the batches are done
+                startRestoreBatches();
             }
-        });
+        }, "BTEngine-RestoreDownloads");
+        t.setDaemon(true);
+        t.start();
+    }
 
-        if (torrents != null) {
-            for (File t : torrents) {
-                try {
-                    String infoHash = FilenameUtils.getBaseName(t.getName());
-                    if (infoHash != null) {
-                        File resumeFile = resumeDataFile(infoHash);
-                        restoreDownloadsQueue.add(new RestoreDownloadTask(t, null, null, resumeFile));
+    /**
+     * @return true while the downloads of the previous session are being
+     * restored
+     */
+    public boolean isRestoring() {
+        return restoreStartTime != 0 && restoreEndTime == 0;
+    }
+
+    /**
+     * @return the number of downloads to restore from the previous session
+     */
+    public int getRestoreTotal() {
+        return restoreTotal.get();
+    }
+
+    /**
+     * @return the number of downloads restored so far
+     */
+    public int getRestoredCount() {
+        return Math.min(restoredCount.get(), restoreTotal.get());
+    }
+
+    /**
+     * @return the milliseconds it took to restore all the downloads, or
+     * the time elapsed so far if it's still in progress
+     */
+    public long getRestoreTime() {
+        if (restoreStartTime == 0) {
+            return 0;
+        }
+        long end = restoreEndTime;
+        return (end != 0 ? end : System.currentTimeMillis()) - restoreStartTime;
+    }
+
+    private void prepareRestoreTasks(final ResumeJournal journal, List<String> infoHashes) {
+        if (journal == null || infoHashes.isEmpty()) {
+            return;
+        }
+
+        int nThreads = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), 4));
+        ExecutorService pool = new ThreadPool("BTEngine-Restore", nThreads, nThreads, 1L, new LinkedBlockingQueue<Runnable>(), true);
+        try {
+            for (final String infoHash : infoHashes) {
+                pool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            RestoreDownloadTask task = prepareRestoreTask(journal, infoHash);
+                            if (task != null) {
+                                restoreDownloadsQueue.add(task);
+                                startRestoreBatches();
+                            } else {
+                                restoreTotal.decrementAndGet();
+                            }
+                        } catch (Throwable e) {
+                            restoreTotal.decrementAndGet();
+                            LOG.error("Unable to restore download from previous session: " + infoHash, e);
+                        }
                     }
-                } catch (Throwable e) {
-                    LOG.error("Error restoring torrent download: " + t, e);
-                }
+                });
             }
+        } finally {
+            pool.shutdown();
         }
 
-        migrateVuzeDownloads();
+        try {
+            while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOG.info("Still parsing the downloads to restore");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-        runNextRestoreDownloadTask();
+    private RestoreDownloadTask prepareRestoreTask(ResumeJournal journal, String infoHash) {
+        byte[] torrentData = journal.get(infoHash, ResumeJournal.KIND_RESUME_TORRENT);
+        if (torrentData == null) {
+            return null;
+        }
+        byte[] resumeData = journal.get(infoHash, ResumeJournal.KIND_RESUME_DATA);
+
+        add_torrent_params p = add_torrent_params.create_instance();
+        p.setTi(TorrentInfo.bdecode(torrentData).getSwig());
+        if (ctx.dataDir != null) {
+            // only used if there is no resume data
+            p.setSave_path(ctx.dataDir.getAbsolutePath());
+        }
+
+        int priority = RESTORE_PRIORITY_UNKNOWN;
+        if (resumeData != null) {
+            p.setResume_data(Vectors.bytes2char_vector(resumeData));
+            p.setFlags(p.getFlags() | add_torrent_params.flags_t.flag_use_resume_save_path.swigValue());
+            priority = restorePriority(resumeData);
+        }
+
+        return new RestoreDownloadTask(p, priority);
+    }
+
+    private static int restorePriority(byte[] resumeData) {
+        try {
+            string_entry_map d = entry.bdecode(Vectors.bytes2char_vector(resumeData)).dict();
+            if (d.has_key("completed_time") && d.get("completed_time").integer() > 0) {
+                return RESTORE_PRIORITY_FINISHED;
+            }
+            if (d.has_key("paused") && d.get("paused").integer() != 0) {
+                return RESTORE_PRIORITY_PAUSED;
+            }
+            return RESTORE_PRIORITY_ACTIVE;
+        } catch (Throwable e) {
+            return RESTORE_PRIORITY_UNKNOWN;
+        }
     }
 
     File settingsFile() {
         return new File(ctx.homeDir, "settings.dat");
     }
 
-    File resumeTorrentFile(String infoHash) {
-        return new File(ctx.homeDir, infoHash + ".torrent");
+    /**
+     * The journal with the resume data and resume torrents of all the
+     * downloads, opened (or reopened if the home dir changed) on demand.
+     *
+     * @return the journal, or null if it can't be opened
+     */
+    synchronized ResumeJournal resumeJournal() {
+        File file = new File(ctx.homeDir, RESUME_JOURNAL_NAME);
+        if (resumeJournal == null || !resumeJournal.getFile().equals(file)) {
+            if (resumeJournal != null) {
+                resumeJournal.close();
+                resumeJournal = null;
+            }
+            try {
+                resumeJournal = ResumeJournal.open(file);
+            } catch (Throwable e) {
+                LOG.error("Unable to open the resume journal: " + file, e);
+            }
+        }
+        return resumeJournal;
+    }
+
+    byte[] readResumeData(String infoHash) {
+        ResumeJournal journal = resumeJournal();
+        return journal != null ? journal.get(infoHash, ResumeJournal.KIND_RESUME_DATA) : null;
+    }
+
+    void writeResumeData(String infoHash, byte[] data) throws IOException {
+        ResumeJournal journal = resumeJournal();
+        if (journal != null) {
+            journal.put(infoHash, ResumeJournal.KIND_RESUME_DATA, data);
+        }
     }
 
-    File resumeDataFile(String infoHash) {
-        return new File(ctx.homeDir, infoHash + ".resume");
+    /**
+     * Removes the resume data and the resume torrent of the download.
+     */
+    void removeResumeData(String infoHash) {
+        resumeDirty.remove(infoHash);
+        ResumeJournal journal = resumeJournal();
+        if (journal != null) {
+            journal.remove(infoHash);
+        }
     }
 
     File readTorrentPath(String infoHash) {
         File torrent = null;
 
         try {
-            byte[] arr = FileUtils.readFileToByteArray(resumeTorrentFile(infoHash));
+            ResumeJournal journal = resumeJournal();
+            byte[] arr = journal != null ? journal.get(infoHash, ResumeJournal.KIND_RESUME_TORRENT) : null;
+            if (arr == null) {
+                return null;
+            }
             entry e = entry.bdecode(Vectors.bytes2char_vector(arr));
             torrent = new File(e.dict().get(TORRENT_ORIG_PATH_KEY).string());
         } catch (Throwable e) {
@@ -711,12 +942,115 @@ public final class BTEngine {
             entry e = ti.toEntry().getSwig();
             e.dict().set(TORRENT_ORIG_PATH_KEY, new entry(torrent.getAbsolutePath()));
             byte[] arr = Vectors.char_vector2bytes(e.bencode());
-            FileUtils.writeByteArrayToFile(resumeTorrentFile(ti.getInfoHash().toString()), arr);
+            ResumeJournal journal = resumeJournal();
+            if (journal != null) {
+                journal.put(ti.getInfoHash().toString(), ResumeJournal.KIND_RESUME_TORRENT, arr);
+            }
         } catch (Throwable e) {
             LOG.warn("Error saving resume torrent", e);
         }
     }
 
+    /**
+     * Only remembers that the torrent has new data, the resume data of
+     * all the changed torrents is requested together by the resume timer
+     * every {@link #SAVE_RESUME_INTERVAL_MILLIS}.
+     */
+    private void markResumeDataDirty(TorrentAlert<?> alert) {
+        try {
+            TorrentHandle th = alert.getHandle();
+            resumeDirty.put(th.getInfoHash().toString(), th);
+        } catch (Throwable e) {
+            LOG.warn("Error tracking torrent with new resume data", e);
+        }
+    }
+
+    /**
+     * Runs in the resume timer, takes the engine lock so it can't run in
+     * the middle of a stop.
+     */
+    private void flushResumeData() {
+        sync.lock();
+
+        try {
+            if (session == null) {
+                return;
+            }
+
+            Iterator<TorrentHandle> it = resumeDirty.values().iterator();
+            while (it.hasNext()) {
+                TorrentHandle th = it.next();
+                it.remove();
+                requestResumeData(th, NO_RESUME_WAIT);
+            }
+        } finally {
+            sync.unlock();
+        }
+    }
+
+    /**
+     * Requests the resume data of all the changed torrents and waits (at most
+     * {@link #STOP_RESUME_TIMEOUT_MILLIS}) for it to be written, the session
+     * is aborted right after.
+     */
+    private void saveDirtyResumeData() {
+        List<TorrentHandle> handles = new ArrayList<TorrentHandle>(resumeDirty.values());
+        resumeDirty.clear();
+
+        CountDownLatch latch = new CountDownLatch(handles.size());
+        for (TorrentHandle th : handles) {
+            if (!requestResumeData(th, latch)) {
+                latch.countDown();
+            }
+        }
+
+        try {
+            if (!latch.await(STOP_RESUME_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOG.warn("Timeout waiting for the resume data of " + latch.getCount() + " torrents");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Asks libtorrent for the resume data of the torrent, the download writes
+     * it when it arrives regardless of its own throttle.
+     *
+     * @param latch counted down when the data is written or the save fails
+     * @return false if nothing was requested
+     */
+    private boolean requestResumeData(TorrentHandle th, CountDownLatch latch) {
+        try {
+            if (th.isValid() && th.needSaveResumeData()) {
+                resumeRequested.put(th.getInfoHash().toString(), latch);
+                th.saveResumeData();
+                return true;
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error triggering resume data", e);
+        }
+        return false;
+    }
+
+    /**
+     * If the engine asked for the resume data of the torrent, in that case
+     * the download must write it even if it saved it a moment ago.
+     */
+    boolean isResumeDataRequested(String infoHash) {
+        return resumeRequested.containsKey(infoHash);
+    }
+
+    /**
+     * Called once the requested resume data is written, or the save failed.
+     */
+    void resumeDataDone(String infoHash) {
+        CountDownLatch latch = resumeRequested.remove(infoHash);
+        if (latch != null) {
+            latch.countDown();
+        }
+    }
+
     private void doResumeData(TorrentAlert<?> alert) {
         try {
             TorrentHandle th = session.findTorrent(alert.getHandle().getInfoHash());
@@ -728,6 +1062,58 @@ public final class BTEngine {
         }
     }
 
+    /**
+     * Returns the last status snapshot of the torrent. All the snapshots are
+     * refreshed together with one batched request every
+     * {@link #STATUS_UPDATE_INTERVAL_MILLIS}, libtorrent only reports the
+     * torrents that changed, so an entry stays valid until replaced.
+     *
+     * @param infoHash the info hash of the handle, as a string
+     */
+    BTDownloadStatus getStatus(String infoHash, TorrentHandle th) {
+        requestStatusUpdate();
+
+        BTDownloadStatus status = statuses.get(infoHash);
+        if (status == null) {
+            status = new BTDownloadStatus(th.getStatus());
+            statuses.put(infoHash, status);
+        }
+        return status;
+    }
+
+    /**
+     * Discards the snapshot of the torrent, for actions that change its
+     * status and must be visible right away (pause, resume, removal).
+     */
+    void invalidateStatus(String infoHash) {
+        statuses.remove(infoHash);
+    }
+
+    private void requestStatusUpdate() {
+        long now = System.currentTimeMillis();
+        long last = lastStatusUpdateRequest.get();
+        if (now - last >= STATUS_UPDATE_INTERVAL_MILLIS && lastStatusUpdateRequest.compareAndSet(last, now)) {
+            Session s = session;
+            if (s != null) {
+                s.postTorrentUpdates();
+            }
+        }
+    }
+
+    private void updateStatuses(StateUpdateAlert alert) {
+        try {
+            for (TorrentStatus status : alert.getStatus()) {
+                String infoHash = status.getInfoHash().toString();
+                // skip removed torrents
+                if (statuses.containsKey(infoHash)) {
+                    statuses.put(infoHash, new BTDownloadStatus(status));
+                }
+            }
+        } catch (Throwable e) {
+            LOG.warn("Error updating the torrent status snapshots", e);
+        }
+    }
+
     private void fireStarted() {
         if (listener != null) {
             listener.started(this);
@@ -819,16 +1205,120 @@ public final class BTEngine {
         return result;
     }
 
-    private void runNextRestoreDownloadTask() {
-        final RestoreDownloadTask task;
-        try {
-            task = restoreDownloadsQueue.poll();
-        } catch (Throwable t) {
-            // on Android, LinkedList's .poll() implementation throws a NoSuchElementException
+    /**
+     * Starts the batches if they are not running, called when there are new
+     * downloads to restore.
+     */
+    private void startRestoreBatches() {
+        synchronized (restorePending) {
+            if (restoreBatches) {
+                return;
+            }
+            restoreBatches = true;
+        }
+        runNextRestoreBatch();
+    }
+
+    /**
+     * Adds the next batch of downloads to the session, the one after is
+     * added when the result of all of these is in, added or failed. The
+     * batches stop when there is nothing ready, and start again with the
+     * next download parsed.
+     */
+    private void runNextRestoreBatch() {
+        while (true) {
+            List<RestoreDownloadTask> batch = new ArrayList<RestoreDownloadTask>(RESTORE_BATCH_SIZE);
+            restoreDownloadsQueue.drainTo(batch, RESTORE_BATCH_SIZE);
+
+            if (batch.isEmpty()) {
+                synchronized (restorePending) {
+                    if (!restoreDownloadsQueue.isEmpty()) {
+                        // queued meanwhile, its start found the batches running
+                        continue;
+                    }
+                    restoreBatches = false;
+                }
+                if (!restoreParsing && isRestoring()) {
+                    restoreEndTime = System.currentTimeMillis();
+                    LOG.info("Restored " + restoredCount.get() + " downloads in " + getRestoreTime() + "ms");
+                }
+                return;
+            }
+
+            Map<String, RestoreDownloadTask> tasks = new LinkedHashMap<String, RestoreDownloadTask>();
+            for (RestoreDownloadTask task : batch) {
+                try {
+                    String infoHash = task.getInfoHash();
+                    if (tasks.put(infoHash, task) != null) {
+                        LOG.warn("Download to restore found twice: " + infoHash);
+                        restoreTotal.decrementAndGet();
+                    }
+                } catch (Throwable e) {
+                    LOG.error("Unable to restore download from previous session", e);
+                    restoreTotal.decrementAndGet();
+                }
+            }
+
+            if (tasks.isEmpty()) {
+                continue;
+            }
+
+            // all in before the first add, a fast alert can't end the batch early
+            synchronized (restorePending) {
+                restorePending.addAll(tasks.keySet());
+            }
+
+            for (Map.Entry<String, RestoreDownloadTask> e : tasks.entrySet()) {
+                try {
+                    e.getValue().run();
+                } catch (Throwable t) {
+                    LOG.error("Unable to restore download from previous session", t);
+                    onRestoreTaskDone(e.getKey(), false);
+                }
+            }
             return;
         }
-        if (task != null) {
-            task.run();
+    }
+
+    /**
+     * Result of an add to the session, only the downloads of the batch being
+     * restored count.
+     */
+    private void onRestoreTaskDone(String infoHash, boolean added) {
+        boolean last;
+        synchronized (restorePending) {
+            if (!restorePending.remove(infoHash)) {
+                return;
+            }
+            last = restorePending.isEmpty();
+        }
+
+        if (added) {
+            restoredCount.incrementAndGet();
+        } else {
+            restoreTotal.decrementAndGet();
+        }
+
+        if (last) {
+            runNextRestoreBatch();
+        }
+    }
+
+    /**
+     * Posted for every add to the session, also the failed ones (invalid
+     * resume data, duplicate, bad save path), unlike TORRENT_ADDED.
+     */
+    private void onAddTorrent(AddTorrentAlert alert) {
+        add_torrent_alert a = alert.getSwig();
+        if (a.getError().value() == 0) {
+            onRestoreTaskDone(alert.getHandle().getInfoHash().toString(), true);
+        } else {
+            torrent_info ti = a.getParams().getTi();
+            if (ti != null) {
+                String infoHash = new TorrentInfo(ti).getInfoHash().toString();
+                LOG.warn("Unable to add download " + infoHash + ": " + a.getError().message());
+                onRestoreTaskDone(infoHash, false);
+            }
         }
     }
 
@@ -885,10 +1375,12 @@ public final class BTEngine {
                     TorrentAlert<?> torrentAlert = (TorrentAlert<?>) alert;
                     fireDownloadAdded(torrentAlert);
                     doResumeData(torrentAlert);
-                    runNextRestoreDownloadTask();
+                    break;
+                case ADD_TORRENT:
+                    onAddTorrent((AddTorrentAlert) alert);
                     break;
                 case PIECE_FINISHED:
-                    doResumeData((TorrentAlert<?>) alert);
+                    markResumeDataDirty((TorrentAlert<?>) alert);
                     break;
                 case PORTMAP:
                     firewalled = false;
@@ -899,32 +1391,74 @@ public final class BTEngine {
                 case DHT_STATS:
                     totalDHTNodes = ((DhtStatsAlert) alert).totalNodes();
                     break;
+                case STATE_UPDATE:
+                    updateStatuses((StateUpdateAlert) alert);
+                    break;
+                case SAVE_RESUME_DATA_FAILED:
+                    resumeDataDone(((TorrentAlert<?>) alert).getHandle().getInfoHash().toString());
+                    break;
             }
         }
     }
 
-    private final class RestoreDownloadTask implements Runnable {
+    private final class RestoreDownloadTask implements Runnable, Comparable<RestoreDownloadTask> {
 
         private final File torrent;
         private final File saveDir;
         private final Priority[] priorities;
         private final File resume;
+        private final add_torrent_params params;
+        private final int priority;
+        private final long sequence;
+        private TorrentInfo ti;
 
         public RestoreDownloadTask(File torrent, File saveDir, Priority[] priorities, File resume) {
             this.torrent = torrent;
             this.saveDir = saveDir;
             this.priorities = priorities;
             this.resume = resume;
+            this.params = null;
+            this.priority = RESTORE_PRIORITY_UNKNOWN;
+            this.sequence = restoreSequence.getAndIncrement();
+        }
+
+        /**
+         * A download from the resume journal, already parsed.
+         */
+        public RestoreDownloadTask(add_torrent_params params, int priority) {
+            this.torrent = null;
+            this.saveDir = null;
+            this.priorities = null;
+            this.resume = null;
+            this.params = params;
+            this.priority = priority;
+            this.sequence = restoreSequence.getAndIncrement();
+        }
+
+        /**
+         * Parses the torrent if needed.
+         */
+        public String getInfoHash() {
+            if (ti == null) {
+                ti = params != null ? new TorrentInfo(params.getTi()) : new TorrentInfo(torrent);
+            }
+            return ti.getInfoHash().toString();
         }
 
         @Override
         public void run() {
-            try {
-                session.asyncAddTorrent(new TorrentInfo(torrent), saveDir, priorities, resume);
-            } catch (Throwable e) {
-                LOG.error("Unable to restore download from previous session", e);
+            if (params != null) {
+                session.getSwig().async_add_torrent(params);
+            } else {
+                session.asyncAddTorrent(ti != null ? ti : new TorrentInfo(torrent), saveDir, priorities, resume);
             }
         }
+
+        @Override
+        public int compareTo(RestoreDownloadTask o) {
+            int r = priority - o.priority;
+            return r != 0 ? r : (sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1));
+        }
     }
 
     //--------------------------------------------------
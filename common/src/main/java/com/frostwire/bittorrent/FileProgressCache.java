@@ -0,0 +1,70 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.jlibtorrent.TorrentHandle;
+
+/**
+ * The progress of all the files of a torrent, shared by its
+ * {@link BTDownloadItem}s. With piece granularity the values only change
+ * when a piece finishes, so the array is fetched again only after that
+ * (and not more than once every {@link #MIN_REFRESH_INTERVAL_MILLIS}),
+ * instead of once per item and per repaint.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class FileProgressCache {
+
+    private static final long MIN_REFRESH_INTERVAL_MILLIS = 500;
+
+    private final TorrentHandle th;
+
+    private long[] progress;
+    private boolean dirty;
+    private long lastRefresh;
+
+    FileProgressCache(TorrentHandle th) {
+        this.th = th;
+        this.dirty = true;
+    }
+
+    /**
+     * @return the downloaded bytes of the file, 0 if the handle is not valid
+     */
+    synchronized long get(int index) {
+        long now = System.currentTimeMillis();
+        if (progress == null || (dirty && now - lastRefresh >= MIN_REFRESH_INTERVAL_MILLIS)) {
+            if (!th.isValid()) {
+                return 0;
+            }
+            progress = th.getFileProgress(TorrentHandle.FileProgressFlags.PIECE_GRANULARITY);
+            dirty = false;
+            lastRefresh = now;
+        }
+        return index < progress.length ? progress[index] : 0;
+    }
+
+    /**
+     * Called when a piece finishes or the data is checked again.
+     */
+    synchronized void invalidate() {
+        dirty = true;
+    }
+}
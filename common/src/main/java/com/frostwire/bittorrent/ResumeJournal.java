@@ -0,0 +1,535 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.bittorrent;
+
+import com.frostwire.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal with the resume data and the resume torrent of all
+ * the downloads, replacing the <code>infohash.resume</code> and
+ * <code>infohash.torrent</code> files in the home dir.
+ * <p>
+ * Every record has a CRC32, loading stops at the first invalid record (a
+ * write interrupted by a crash) and the file is truncated there. The
+ * replaced records are garbage, when there is more garbage than live data
+ * the file is compacted into a temporary file that replaces the journal
+ * once it's complete and synced.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+final class ResumeJournal {
+
+    private static final Logger LOG = Logger.getLogger(ResumeJournal.class);
+
+    static final byte KIND_RESUME_DATA = 1;
+    static final byte KIND_RESUME_TORRENT = 2;
+
+    private static final int MAGIC = 0x46574a52; // FWJR
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 8;
+
+    private static final byte OP_PUT = 1;
+    private static final byte OP_REMOVE = 2;
+
+    private static final int MAX_DATA_SIZE = 64 * 1024 * 1024;
+    private static final long MIN_COMPACTION_GARBAGE = 1024 * 1024;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+
+    private static final Comparator<Record> BY_OFFSET = new Comparator<Record>() {
+        @Override
+        public int compare(Record o1, Record o2) {
+            return o1.recordOffset < o2.recordOffset ? -1 : (o1.recordOffset == o2.recordOffset ? 0 : 1);
+        }
+    };
+
+    private final File file;
+    private final Map<String, Record> index;
+
+    private RandomAccessFile raf;
+    private long liveBytes;
+
+    private ResumeJournal(File file) {
+        this.file = file;
+        this.index = new HashMap<String, Record>();
+    }
+
+    /**
+     * Opens the journal, importing the old per torrent files found in
+     * the same folder.
+     */
+    static ResumeJournal open(File file) throws IOException {
+        ResumeJournal journal = new ResumeJournal(file);
+        journal.load();
+        journal.importLegacyFiles(file.getParentFile());
+        journal.compactIfNeeded();
+        return journal;
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    synchronized byte[] get(String infoHash, byte kind) {
+        Record r = index.get(key(infoHash, kind));
+        if (r == null) {
+            return null;
+        }
+        try {
+            byte[] data = new byte[r.dataLength];
+            raf.seek(r.dataOffset);
+            raf.readFully(data);
+            return data;
+        } catch (IOException e) {
+            LOG.warn("Error reading resume journal entry: " + infoHash, e);
+            return null;
+        }
+    }
+
+    synchronized boolean contains(String infoHash, byte kind) {
+        return index.containsKey(key(infoHash, kind));
+    }
+
+    /**
+     * @return the info hashes with a resume torrent, in the order they were saved
+     */
+    synchronized List<String> getInfoHashes() {
+        List<Record> records = new ArrayList<Record>();
+        for (Record r : index.values()) {
+            if (r.kind == KIND_RESUME_TORRENT) {
+                records.add(r);
+            }
+        }
+        Collections.sort(records, BY_OFFSET);
+        List<String> hashes = new ArrayList<String>(records.size());
+        for (Record r : records) {
+            hashes.add(r.infoHash);
+        }
+        return hashes;
+    }
+
+    synchronized void put(String infoHash, byte kind, byte[] data) throws IOException {
+        Record r = append(OP_PUT, infoHash, kind, data);
+        Record old = index.put(key(infoHash, kind), r);
+        if (old != null) {
+            liveBytes -= old.recordSize;
+        }
+        liveBytes += r.recordSize;
+        compactIfNeeded();
+    }
+
+    /**
+     * Removes the resume data and the resume torrent of the download.
+     */
+    synchronized void remove(String infoHash) {
+        try {
+            for (byte kind : new byte[]{KIND_RESUME_DATA, KIND_RESUME_TORRENT}) {
+                Record old = index.remove(key(infoHash, kind));
+                if (old != null) {
+                    liveBytes -= old.recordSize;
+                    append(OP_REMOVE, infoHash, kind, new byte[0]);
+                }
+            }
+            compactIfNeeded();
+        } catch (IOException e) {
+            LOG.warn("Error removing resume journal entry: " + infoHash, e);
+        }
+    }
+
+    synchronized void close() {
+        IOUtils.closeQuietly(raf);
+        raf = null;
+    }
+
+    private void load() throws IOException {
+        File parent = file.getParentFile();
+        if (parent != null && !parent.exists()) {
+            parent.mkdirs();
+        }
+
+        recoverCompacted();
+
+        if (file.exists() && !readAll()) {
+            // unknown format, keep it aside instead of losing it
+            File bad = new File(file.getParentFile(), file.getName() + ".bad");
+            FileUtils.deleteQuietly(bad);
+            if (!file.renameTo(bad)) {
+                FileUtils.deleteQuietly(file);
+            }
+            index.clear();
+            liveBytes = 0;
+        }
+
+        raf = new RandomAccessFile(file, "rw");
+        if (raf.length() < HEADER_SIZE) {
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+        }
+        raf.seek(raf.length());
+    }
+
+    /**
+     * Promotes the file of an interrupted compaction if the journal is
+     * missing or unreadable, discards it otherwise. The journal put aside
+     * while replacing it is restored if there is nothing better.
+     */
+    private void recoverCompacted() throws IOException {
+        File tmp = tmpFile();
+        File old = oldFile();
+
+        if (tmp.exists()) {
+            // the header is written last, only a complete file has it
+            if ((!file.exists() || !hasHeader(file)) && hasHeader(tmp)) {
+                LOG.info("Recovering compacted resume journal");
+                move(tmp, file);
+            } else {
+                FileUtils.deleteQuietly(tmp);
+            }
+        }
+
+        if (old.exists()) {
+            if (!file.exists() && hasHeader(old)) {
+                LOG.info("Recovering resume journal replaced by an interrupted compaction");
+                move(old, file);
+            } else {
+                FileUtils.deleteQuietly(old);
+            }
+        }
+    }
+
+    private static boolean hasHeader(File f) {
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(f));
+            return in.readInt() == MAGIC && in.readInt() == VERSION;
+        } catch (IOException e) {
+            return false;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    /**
+     * @return false if the file is not a journal
+     */
+    private boolean readAll() throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        long validLength = HEADER_SIZE;
+        try {
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    return false;
+                }
+            } catch (EOFException e) {
+                return false;
+            }
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                Record r;
+                try {
+                    r = readRecord(in, validLength, crc);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (r == null) {
+                    LOG.warn("Invalid record in resume journal at " + validLength + ", discarding the rest");
+                    break;
+                }
+
+                String key = key(r.infoHash, r.kind);
+                Record old = r.op == OP_PUT ? index.put(key, r) : index.remove(key);
+                if (old != null) {
+                    liveBytes -= old.recordSize;
+                }
+                if (r.op == OP_PUT) {
+                    liveBytes += r.recordSize;
+                }
+                validLength += r.recordSize;
+            }
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+
+        if (validLength < file.length()) {
+            RandomAccessFile f = new RandomAccessFile(file, "rw");
+            try {
+                f.setLength(validLength);
+            } finally {
+                IOUtils.closeQuietly(f);
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the record, or null if it's corrupted
+     */
+    private static Record readRecord(DataInputStream in, long offset, CRC32 crc) throws IOException {
+        byte op = in.readByte();
+        byte kind = in.readByte();
+        int hashLength = in.readUnsignedShort();
+        if ((op != OP_PUT && op != OP_REMOVE) || hashLength == 0 || hashLength > 128) {
+            return null;
+        }
+        byte[] hash = new byte[hashLength];
+        in.readFully(hash);
+        int dataLength = in.readInt();
+        if (dataLength < 0 || dataLength > MAX_DATA_SIZE) {
+            return null;
+        }
+        byte[] data = new byte[dataLength];
+        in.readFully(data);
+        int checksum = in.readInt();
+
+        crc.reset();
+        crc.update(op);
+        crc.update(kind);
+        crc.update(hashLength >>> 8);
+        crc.update(hashLength);
+        crc.update(hash);
+        crc.update(dataLength >>> 24);
+        crc.update(dataLength >>> 16);
+        crc.update(dataLength >>> 8);
+        crc.update(dataLength);
+        crc.update(data);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        long dataOffset = offset + 1 + 1 + 2 + hashLength + 4;
+        return new Record(op, new String(hash, ASCII), kind, offset, dataOffset, dataLength);
+    }
+
+    private Record append(byte op, String infoHash, byte kind, byte[] data) throws IOException {
+        byte[] hash = infoHash.getBytes(ASCII);
+        ByteBuffer bb = ByteBuffer.allocate(1 + 1 + 2 + hash.length + 4 + data.length + 4);
+        bb.put(op);
+        bb.put(kind);
+        bb.putShort((short) hash.length);
+        bb.put(hash);
+        bb.putInt(data.length);
+        bb.put(data);
+        CRC32 crc = new CRC32();
+        crc.update(bb.array(), 0, bb.position());
+        bb.putInt((int) crc.getValue());
+
+        long offset = raf.length();
+        raf.seek(offset);
+        raf.write(bb.array());
+
+        return new Record(op, infoHash, kind, offset, offset + 1 + 1 + 2 + hash.length + 4, data.length);
+    }
+
+    private void compactIfNeeded() throws IOException {
+        long garbage = raf.length() - HEADER_SIZE - liveBytes;
+        if (garbage > MIN_COMPACTION_GARBAGE && garbage > liveBytes) {
+            compact();
+        }
+    }
+
+    private void compact() throws IOException {
+        File tmp = tmpFile();
+        FileUtils.deleteQuietly(tmp);
+
+        List<Record> records = new ArrayList<Record>(index.values());
+        Collections.sort(records, BY_OFFSET);
+
+        RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+        Map<String, Record> newIndex = new HashMap<String, Record>();
+        try {
+            // the header is left empty until all the records are on disk
+            out.writeLong(0);
+            byte[] buffer = new byte[64 * 1024];
+            for (Record r : records) {
+                long newOffset = out.length();
+                // the records are copied as they are, checksum included
+                raf.seek(r.recordOffset);
+                long remaining = r.recordSize;
+                while (remaining > 0) {
+                    int n = (int) Math.min(buffer.length, remaining);
+                    raf.readFully(buffer, 0, n);
+                    out.write(buffer, 0, n);
+                    remaining -= n;
+                }
+                newIndex.put(key(r.infoHash, r.kind), new Record(r.op, r.infoHash, r.kind, newOffset, newOffset + (r.dataOffset - r.recordOffset), r.dataLength));
+            }
+            out.getFD().sync();
+            out.seek(0);
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.getFD().sync();
+        } catch (IOException e) {
+            IOUtils.closeQuietly(out);
+            FileUtils.deleteQuietly(tmp);
+            throw e;
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+
+        raf.close();
+        try {
+            move(tmp, file);
+        } catch (IOException e) {
+            // keep using the old file, the journal is still consistent
+            LOG.warn("Unable to replace resume journal with the compacted one", e);
+            FileUtils.deleteQuietly(tmp);
+            raf = new RandomAccessFile(file, "rw");
+            raf.seek(raf.length());
+            return;
+        }
+
+        index.clear();
+        index.putAll(newIndex);
+        raf = new RandomAccessFile(file, "rw");
+        raf.seek(raf.length());
+    }
+
+    /**
+     * Replaces the target with the source. Where a rename can't replace an
+     * existing file (Windows) the target is put aside first, and only
+     * deleted once the source is in place, so there is always a complete
+     * journal on disk (recovered by {@link #recoverCompacted()}).
+     */
+    private void move(File source, File target) throws IOException {
+        if (source.renameTo(target)) {
+            return;
+        }
+
+        File old = oldFile();
+        FileUtils.deleteQuietly(old);
+        if (target.exists() && !target.renameTo(old)) {
+            throw new IOException("Unable to put aside " + target);
+        }
+        if (!source.renameTo(target)) {
+            if (old.exists() && !old.renameTo(target)) {
+                LOG.warn("Unable to restore " + target + " from " + old);
+            }
+            throw new IOException("Unable to rename " + source + " to " + target);
+        }
+        FileUtils.deleteQuietly(old);
+    }
+
+    private File tmpFile() {
+        return new File(file.getParentFile(), file.getName() + ".tmp");
+    }
+
+    private File oldFile() {
+        return new File(file.getParentFile(), file.getName() + ".old");
+    }
+
+    private void importLegacyFiles(File dir) {
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null) {
+            return;
+        }
+
+        int count = 0;
+        for (File f : files) {
+            String ext = FilenameUtils.getExtension(f.getName());
+            byte kind;
+            if (ext.equals("resume")) {
+                kind = KIND_RESUME_DATA;
+            } else if (ext.equals("torrent")) {
+                kind = KIND_RESUME_TORRENT;
+            } else {
+                continue;
+            }
+
+            String infoHash = FilenameUtils.getBaseName(f.getName());
+            if (!isInfoHash(infoHash)) {
+                continue;
+            }
+
+            try {
+                if (!index.containsKey(key(infoHash, kind))) {
+                    put(infoHash, kind, FileUtils.readFileToByteArray(f));
+                }
+                f.delete();
+                count++;
+            } catch (Throwable e) {
+                LOG.warn("Error importing resume file into journal: " + f, e);
+            }
+        }
+
+        if (count > 0) {
+            LOG.info("Imported " + count + " resume files into " + file);
+        }
+    }
+
+    private static boolean isInfoHash(String s) {
+        if (s.length() != 40) {
+            return false;
+        }
+        for (int i = 0; i < s.length(); i++) {
+            if (Character.digit(s.charAt(i), 16) == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String key(String infoHash, byte kind) {
+        return kind + ":" + infoHash;
+    }
+
+    private static final class Record {
+
+        final byte op;
+        final String infoHash;
+        final byte kind;
+        final long recordOffset;
+        final long dataOffset;
+        final int dataLength;
+        final long recordSize;
+
+        Record(byte op, String infoHash, byte kind, long recordOffset, long dataOffset, int dataLength) {
+            this.op = op;
+            this.infoHash = infoHash;
+            this.kind = kind;
+            this.recordOffset = recordOffset;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+            this.recordSize = (dataOffset - recordOffset) + dataLength + 4;
+        }
+    }
+}
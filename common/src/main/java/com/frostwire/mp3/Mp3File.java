@@ -2,6 +2,8 @@ package com.frostwire.mp3;
 
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -12,6 +14,11 @@ public class Mp3File extends FileWrapper {
 	private static final int XING_MARKER_OFFSET_1 = 13;
 	private static final int XING_MARKER_OFFSET_2 = 21;
 	private static final int XING_MARKER_OFFSET_3 = 36;
+	private static final int XING_FLAG_FRAMES = 0x01;
+	private static final int VBRI_MARKER_OFFSET = 36;
+	private static final int VBRI_FRAMES_OFFSET = 14;
+	private static final int CBR_SAMPLE_BLOCKS = 4;
+	private static final int CBR_SAMPLE_LENGTH = 8192;
 
 	protected int bufferLength;
 	private int xingOffset = -1;
@@ -20,6 +27,7 @@ public class Mp3File extends FileWrapper {
 	private int frameCount = 0;
 	private Map<Integer, MutableInteger> bitrates = new HashMap<Integer, MutableInteger>();
 	private int xingBitrate;
+	private int xingFrameCount;
 	private double bitrate = 0;
 	private String channelMode;
 	private String emphasis;
@@ -134,18 +142,122 @@ public class Mp3File extends FileWrapper {
 						return;
 					}
 				}
+				if (! lastBlock && frameCount >= 2) {
+					// the first block is enough to know the format, the rest of
+					// the frames are only walked if the headers can't tell
+					FileChannel channel = file.getChannel();
+					if (! estimateFromHeaders(channel)) {
+						scanChannel(channel, fileOffset);
+					}
+					return;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Estimates the frame count, the end of the frames and the average bitrate
+	 * from the Xing/Info/VBRI frame count or, for constant bitrate files, from
+	 * the size of the file. A file is taken as constant bitrate only if the
+	 * frames sampled along the rest of it have the bitrate of the first block.
+	 */
+	private boolean estimateFromHeaders(FileChannel channel) throws IOException {
+		int audioEndOffset = maxEndOffset() - 1;
+		if (xingFrameCount > 0) {
+			double lengthInMilliseconds = (double)xingFrameCount * getSamplesPerFrame() * 1000 / sampleRate;
+			frameCount = xingFrameCount;
+			endOffset = audioEndOffset;
+			bitrate = 8 * (endOffset - startOffset) / lengthInMilliseconds;
+			return true;
+		}
+		if (bitrates.size() == 1 && isConstantBitrate(channel)) {
+			double frameLength = (double)(endOffset + 1 - startOffset) / frameCount;
+			frameCount = (int)((audioEndOffset + 1 - startOffset) / frameLength + 0.5);
+			endOffset = audioEndOffset;
+			return true;
+		}
+		return false;
+	}
+
+	private boolean isConstantBitrate(FileChannel channel) throws IOException {
+		int bitrate = bitrates.keySet().iterator().next().intValue();
+		int from = endOffset + 1;
+		int to = maxEndOffset();
+		ByteBuffer buffer = ByteBuffer.allocate(CBR_SAMPLE_LENGTH);
+		byte[] bytes = buffer.array();
+		for (int i = 1; i <= CBR_SAMPLE_BLOCKS; i++) {
+			int sampleOffset = from + (int)((long)(to - from) * i / (CBR_SAMPLE_BLOCKS + 1));
+			int bytesRead = read(channel, buffer, sampleOffset);
+			MpegFrame frame = findFrame(bytes, bytesRead, sampleOffset);
+			if (frame != null && frame.getBitrate() != bitrate) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Finds the first frame in the block followed by another frame, so a
+	 * stray sync pattern in the audio data isn't taken for a header.
+	 */
+	private MpegFrame findFrame(byte[] bytes, int bytesRead, int absoluteOffset) {
+		for (int offset = 0; offset < bytesRead - 4; offset++) {
+			MpegFrame frame = frameAt(bytes, bytesRead, absoluteOffset, offset);
+			if (frame != null && frameAt(bytes, bytesRead, absoluteOffset, offset + frame.getLengthInBytes()) != null) {
+				return frame;
+			}
+		}
+		return null;
+	}
+
+	private MpegFrame frameAt(byte[] bytes, int bytesRead, int absoluteOffset, int offset) {
+		if (offset + 4 > bytesRead) return null;
+		if (bytes[offset] != (byte)0xFF || (bytes[offset + 1] & (byte)0xE0) != (byte)0xE0) return null;
+		try {
+			MpegFrame frame = new MpegFrame(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
+			sanityCheckFrame(frame, absoluteOffset + offset);
+			return frame;
+		} catch (InvalidDataException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Walks the rest of the frames reading the file through its channel a
+	 * block at a time.
+	 */
+	private void scanChannel(FileChannel channel, int fileOffset) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(bufferLength);
+		byte[] bytes = buffer.array();
+		while (fileOffset < maxEndOffset() - MINIMUM_BUFFER_LENGTH) {
+			int bytesRead = read(channel, buffer, fileOffset);
+			if (bytesRead < MINIMUM_BUFFER_LENGTH) return;
+			int offset;
+			try {
+				offset = scanBlock(bytes, bytesRead, fileOffset, 0);
+			} catch (InvalidDataException e) {
+				return;
 			}
+			if (offset == 0) return;
+			fileOffset += offset;
 		}
 	}
 
+	private static int read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		buffer.clear();
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) break;
+		}
+		return buffer.position();
+	}
+
 	private int scanBlockForStart(byte[] bytes, int bytesRead, int absoluteOffset, int offset) {
 		while (offset < bytesRead - MINIMUM_BUFFER_LENGTH) {
 			if (bytes[offset] == (byte)0xFF && (bytes[offset + 1] & (byte)0xE0) == (byte)0xE0) {
 				try {
 					MpegFrame frame = new MpegFrame(bytes[offset], bytes[offset + 1], bytes[offset + 2], bytes[offset + 3]);
-					if (xingOffset < 0 && isXingFrame(bytes, offset)) {
+					if (xingOffset < 0 && (isXingFrame(bytes, bytesRead, offset) || isVbriFrame(bytes, bytesRead, offset))) {
 						xingOffset = absoluteOffset + offset;
 						xingBitrate = frame.getBitrate();
+						xingFrameCount = readXingFrameCount(bytes, bytesRead, offset);
 						offset += frame.getLengthInBytes();
 					} else {
 						startOffset = absoluteOffset + offset;
@@ -195,14 +307,14 @@ public class Mp3File extends FileWrapper {
 		return maxEndOffset;
 	}
 
-	private boolean isXingFrame(byte[] bytes, int offset) {
-		if (bytes.length >= offset + XING_MARKER_OFFSET_1 + 3) {
+	private boolean isXingFrame(byte[] bytes, int bytesRead, int offset) {
+		if (bytesRead >= offset + XING_MARKER_OFFSET_1 + 4) {
 			if ("Xing".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_1, 4))) return true;
 			if ("Info".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_1, 4))) return true;
-			if (bytes.length >= offset + XING_MARKER_OFFSET_2 + 3) {
+			if (bytesRead >= offset + XING_MARKER_OFFSET_2 + 4) {
 				if ("Xing".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_2, 4))) return true;
 				if ("Info".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_2, 4))) return true;
-				if (bytes.length >= offset + XING_MARKER_OFFSET_3 + 3) {
+				if (bytesRead >= offset + XING_MARKER_OFFSET_3 + 4) {
 					if ("Xing".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_3, 4))) return true;
 					if ("Info".equals(BufferTools.byteBufferToString(bytes, offset + XING_MARKER_OFFSET_3, 4))) return true;
 				}
@@ -211,6 +323,37 @@ public class Mp3File extends FileWrapper {
 		return false;
 	}
 	
+	private boolean isVbriFrame(byte[] bytes, int bytesRead, int offset) {
+		if (bytesRead >= offset + VBRI_MARKER_OFFSET + 4) {
+			return "VBRI".equals(BufferTools.byteBufferToString(bytes, offset + VBRI_MARKER_OFFSET, 4));
+		}
+		return false;
+	}
+
+	private int readXingFrameCount(byte[] bytes, int bytesRead, int offset) {
+		int[] markerOffsets = {XING_MARKER_OFFSET_1, XING_MARKER_OFFSET_2, XING_MARKER_OFFSET_3};
+		for (int markerOffset : markerOffsets) {
+			int pos = offset + markerOffset;
+			if (pos + 12 > bytesRead) break;
+			String marker = BufferTools.byteBufferToString(bytes, pos, 4);
+			if ("Xing".equals(marker) || "Info".equals(marker)) {
+				if ((bytes[pos + 7] & XING_FLAG_FRAMES) == 0) return 0;
+				return Math.max(0, BufferTools.unpackInteger(bytes[pos + 8], bytes[pos + 9], bytes[pos + 10], bytes[pos + 11]));
+			}
+		}
+		int pos = offset + VBRI_MARKER_OFFSET + VBRI_FRAMES_OFFSET;
+		if (pos + 4 <= bytesRead && isVbriFrame(bytes, bytesRead, offset)) {
+			return Math.max(0, BufferTools.unpackInteger(bytes[pos], bytes[pos + 1], bytes[pos + 2], bytes[pos + 3]));
+		}
+		return 0;
+	}
+
+	private int getSamplesPerFrame() {
+		if (MpegFrame.MPEG_LAYER_1.equals(layer)) return 384;
+		if (MpegFrame.MPEG_LAYER_3.equals(layer) && ! MpegFrame.MPEG_VERSION_1_0.equals(version)) return 576;
+		return 1152;
+	}
+
 	private void sanityCheckFrame(MpegFrame frame, int offset) throws InvalidDataException {
 		if (sampleRate != frame.getSampleRate()) throw new InvalidDataException("Inconsistent frame header");
 		if (! layer.equals(frame.getLayer())) throw new InvalidDataException("Inconsistent frame header");
@@ -76,12 +76,7 @@ public class DefaultMp4Builder implements Mp4Builder {
             // getting the samples may be a time consuming activity
             List<Sample> samples = track.getSamples();
             putSamples(track, samples);
-            long[] sizes = new long[samples.size()];
-            for (int i = 0; i < sizes.length; i++) {
-                Sample b = samples.get(i);
-                sizes[i] = b.getSize();
-            }
-            track2SampleSizes.put(track, sizes);
+            track2SampleSizes.put(track, getSampleSizes(track, samples));
 
         }
 
@@ -103,14 +98,20 @@ public class DefaultMp4Builder implements Mp4Builder {
 
         }
 
-        InterleaveChunkMdat mdat = new InterleaveChunkMdat(movie, chunks, contentSize);
+        Box mdat = createMdat(movie, chunks, contentSize);
         isoFile.addBox(mdat);
 
         /*
         dataOffset is where the first sample starts. In this special mdat the samples always start
         at offset 16 so that we can use the same offset for large boxes and small boxes
          */
-        long dataOffset = mdat.getDataOffset();
+        long dataOffset = 16;
+        for (Box box : isoFile.getBoxes()) {
+            if (box == mdat) {
+                break;
+            }
+            dataOffset += box.getSize();
+        }
         for (StaticChunkOffsetBox chunkOffsetBox : chunkOffsetBoxes.values()) {
             long[] offsets = chunkOffsetBox.getChunkOffsets();
             for (int i = 0; i < offsets.length; i++) {
@@ -151,6 +152,34 @@ public class DefaultMp4Builder implements Mp4Builder {
         return track2Sample.put(track, samples);
     }
 
+    /**
+     * Override to get the sizes without going through the sample objects.
+     */
+    protected long[] getSampleSizes(Track track, List<Sample> samples) {
+        long[] sizes = new long[samples.size()];
+        for (int i = 0; i < sizes.length; i++) {
+            Sample b = samples.get(i);
+            sizes[i] = b.getSize();
+        }
+        return sizes;
+    }
+
+    /**
+     * Creates the 'mdat' box, its content has to be the chunks in the order
+     * of the chunk offsets and start at offset 16 of the box.
+     */
+    protected Box createMdat(Movie movie, Map<Track, int[]> chunks, long contentSize) {
+        return new InterleaveChunkMdat(movie, chunks, contentSize);
+    }
+
+    /**
+     * @return the chunk offsets of the track, relative to the start of the mdat
+     * content until the movie is completely built
+     */
+    protected long[] getChunkOffsets(Track track) {
+        return chunkOffsetBoxes.get(track).getChunkOffsets();
+    }
+
     protected FileTypeBox createFileTypeBox(Movie movie) {
         List<String> minorBrands = new LinkedList<String>();
 
@@ -686,22 +715,6 @@ public class DefaultMp4Builder implements Mp4Builder {
         public void parse(DataSource dataSource, ByteBuffer header, long contentSize, BoxParser boxParser) throws IOException {
         }
 
-        public long getDataOffset() {
-            Object b = this;
-            long offset = 16;
-            while (b instanceof Box) {
-                for (Box box : ((Box) b).getParent().getBoxes()) {
-                    if (b == box) {
-                        break;
-                    }
-                    offset += box.getSize();
-                }
-                b = ((Box) b).getParent();
-            }
-            return offset;
-        }
-
-
         public String getType() {
             return "mdat";
         }
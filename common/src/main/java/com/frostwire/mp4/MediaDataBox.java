@@ -56,7 +56,7 @@ public final class MediaDataBox implements Box {
         return TYPE;
     }
 
-    private static void transfer(DataSource from, long position, long count, WritableByteChannel to) throws IOException {
+    static void transfer(DataSource from, long position, long count, WritableByteChannel to) throws IOException {
         long maxCount = (64 * 1024 * 1024) - (32 * 1024);
         // Transfer data in chunks a bit less than 64MB
         // People state that this is a kind of magic number on Windows.
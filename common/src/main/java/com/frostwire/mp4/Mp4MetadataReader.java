@@ -0,0 +1,261 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Reads the movie header and the iTunes metadata of a MP4 file without
+ * building the box tree.
+ * <p>
+ * Only the box headers on the way to <code>/moov/mvhd</code> and
+ * <code>/moov/udta/meta/ilst</code> are read, everything else (<code>mdat</code>,
+ * the tracks and their sample tables) is skipped by seeking over it, so the
+ * cost is a few KB of I/O regardless of the size of the file. The cover art
+ * is only read if asked for.
+ */
+public final class Mp4MetadataReader {
+
+    private static final String COVER_TYPE = "covr";
+
+    private static final int MAX_ITEM_SIZE = 16 * 1024 * 1024;
+
+    private static Properties mapping;
+
+    private static final ThreadLocal<BoxParser> parser = new ThreadLocal<BoxParser>() {
+        @Override
+        protected BoxParser initialValue() {
+            // the parser keeps lookup state, one per thread, sharing the mapping
+            return new PropertyBoxParserImpl(true, getMapping());
+        }
+    };
+
+    private final DataSource ds;
+    private final boolean readCover;
+    private final ByteBuffer header;
+
+    private MovieHeaderBox mvhd;
+    private AppleItemListBox ilst;
+
+    private Mp4MetadataReader(DataSource ds, boolean readCover) {
+        this.ds = ds;
+        this.readCover = readCover;
+        this.header = ByteBuffer.allocate(16);
+    }
+
+    /**
+     * Reads the metadata of the file.
+     *
+     * @param readCover if the <code>covr</code> item should be read
+     * @throws IOException if the file can't be read or has no <code>moov</code> box
+     */
+    public static Mp4MetadataReader read(File file, boolean readCover) throws IOException {
+        FileDataSourceImpl ds = new FileDataSourceImpl(file);
+        try {
+            Mp4MetadataReader r = new Mp4MetadataReader(ds, readCover);
+            r.read();
+            return r;
+        } finally {
+            ds.close();
+        }
+    }
+
+    /**
+     * @return the movie header, never <code>null</code>
+     */
+    public MovieHeaderBox getMovieHeaderBox() {
+        return mvhd;
+    }
+
+    /**
+     * @return the metadata items, or <code>null</code> if the file has none
+     */
+    public AppleItemListBox getItemListBox() {
+        return ilst;
+    }
+
+    /**
+     * @return the cover art, or <code>null</code> if there is none or it was not read
+     */
+    public AppleCoverBox getCoverBox() {
+        if (ilst == null) {
+            return null;
+        }
+        List<AppleCoverBox> boxes = ilst.getBoxes(AppleCoverBox.class);
+        return boxes.isEmpty() ? null : boxes.get(0);
+    }
+
+    private void read() throws IOException {
+        long[] moov = find(0, ds.size(), MovieBox.TYPE);
+        if (moov == null) {
+            throw new IOException("No moov box found");
+        }
+
+        long pos = moov[0];
+        long end = moov[1];
+        while (pos < end) {
+            long[] box = readHeader(pos, end);
+            if (box == null) {
+                break;
+            }
+
+            String type = type();
+            if (MovieHeaderBox.TYPE.equals(type)) {
+                ds.position(pos);
+                mvhd = (MovieHeaderBox) parser.get().parseBox(ds, null);
+            } else if (UserDataBox.TYPE.equals(type) && ilst == null) {
+                readUserData(box[0], box[1]);
+            }
+
+            pos = box[1];
+        }
+
+        if (mvhd == null) {
+            throw new IOException("No mvhd box found");
+        }
+    }
+
+    private void readUserData(long start, long end) throws IOException {
+        long[] meta = find(start, end, MetaBox.TYPE);
+        if (meta == null) {
+            return;
+        }
+
+        // the full box version and flags, missing in some QuickTime files
+        long metaStart = meta[0];
+        if (readHeader(metaStart, meta[1]) == null || !"hdlr".equals(type())) {
+            metaStart += 4;
+        }
+
+        long[] items = find(metaStart, meta[1], AppleItemListBox.TYPE);
+        if (items == null) {
+            return;
+        }
+
+        AppleItemListBox list = new AppleItemListBox();
+        List<Box> boxes = new ArrayList<Box>();
+
+        long pos = items[0];
+        while (pos < items[1]) {
+            long[] item = readHeader(pos, items[1]);
+            if (item == null) {
+                break;
+            }
+
+            boolean cover = COVER_TYPE.equals(type());
+            if ((!cover || readCover) && item[1] - pos <= MAX_ITEM_SIZE) {
+                ds.position(pos);
+                Box box = parser.get().parseBox(ds, list);
+                if (box != null) {
+                    boxes.add(box);
+                }
+            }
+
+            pos = item[1];
+        }
+
+        list.setBoxes(boxes);
+        ilst = list;
+    }
+
+    /**
+     * Returns the content start and end of the first box of the given type
+     * among the boxes in [start, end), or <code>null</code> if there is none.
+     */
+    private long[] find(long start, long end, String type) throws IOException {
+        long pos = start;
+        while (pos < end) {
+            long[] box = readHeader(pos, end);
+            if (box == null) {
+                return null;
+            }
+            if (type.equals(type())) {
+                return box;
+            }
+            pos = box[1];
+        }
+        return null;
+    }
+
+    /**
+     * Reads the header of the box at pos, leaving the type in the header buffer.
+     *
+     * @return the content start and end of the box, or <code>null</code> if
+     * there is no valid box there
+     */
+    private long[] readHeader(long pos, long end) throws IOException {
+        if (end - pos < 8) {
+            return null;
+        }
+
+        header.clear();
+        header.limit(8);
+        ds.position(pos);
+        if (!readFully(header)) {
+            return null;
+        }
+        header.rewind();
+
+        long size = IsoTypeReader.readUInt32(header);
+        int headerSize = 8;
+        if (size == 1) {
+            header.limit(16);
+            header.position(8);
+            if (!readFully(header)) {
+                return null;
+            }
+            header.position(8);
+            size = IsoTypeReader.readUInt64(header);
+            headerSize = 16;
+        } else if (size == 0) {
+            size = end - pos;
+        }
+
+        if (size < headerSize || pos + size > end) {
+            return null;
+        }
+
+        return new long[]{pos + headerSize, pos + size};
+    }
+
+    private String type() {
+        header.position(4);
+        return IsoTypeReader.read4cc(header);
+    }
+
+    private boolean readFully(ByteBuffer bb) throws IOException {
+        while (bb.remaining() > 0) {
+            if (ds.read(bb) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static synchronized Properties getMapping() {
+        if (mapping == null) {
+            mapping = new PropertyBoxParserImpl().mapping;
+        }
+        return mapping;
+    }
+}
@@ -7,31 +7,49 @@ import java.util.List;
  * Creates a list of <code>ByteBuffer</code>s that represent the samples of a given track.
  */
 public class SampleList extends AbstractList<Sample> {
-    List<Sample> samples;
-
-
+    private final TrackBox trackBox;
+    private final IsoFile[] additionalFragments;
+    private final boolean fragmented;
+    private List<Sample> samples;
 
     public SampleList(TrackBox trackBox, IsoFile... additionalFragments) {
-        Container topLevel = ((Box) trackBox.getParent()).getParent();
+        this.trackBox = trackBox;
+        this.additionalFragments = additionalFragments;
+        this.fragmented = !trackBox.getParent().getBoxes(MovieExtendsBox.class).isEmpty();
 
-        if (trackBox.getParent().getBoxes(MovieExtendsBox.class).isEmpty()) {
-            if (additionalFragments.length > 0) {
-                throw new RuntimeException("The TrackBox comes from a standard MP4 file. Only use the additionalFragments param if you are dealing with ( fragmented MP4 files AND additional fragments in standalone files )");
-            }
-            samples = new DefaultMp4SampleList(trackBox.getTrackHeaderBox().getTrackId(), topLevel);
-        } else {
-            samples = new FragmentedMp4SampleList(trackBox.getTrackHeaderBox().getTrackId(), topLevel, additionalFragments);
+        if (!fragmented && additionalFragments.length > 0) {
+            throw new RuntimeException("The TrackBox comes from a standard MP4 file. Only use the additionalFragments param if you are dealing with ( fragmented MP4 files AND additional fragments in standalone files )");
         }
     }
 
     @Override
     public Sample get(int index) {
-        return samples.get(index);
+        return samples().get(index);
     }
 
     @Override
     public int size() {
-        return samples.size();
+        if (!fragmented && samples == null) {
+            // avoid building the chunk tables just to know the count
+            return CastUtils.l2i(trackBox.getSampleTableBox().getSampleSizeBox().getSampleCount());
+        }
+        return samples().size();
     }
 
+    /**
+     * The underlying list is created on first access, since building it
+     * allocates per chunk tables that a caller using only the sample
+     * metadata doesn't need.
+     */
+    private synchronized List<Sample> samples() {
+        if (samples == null) {
+            Container topLevel = ((Box) trackBox.getParent()).getParent();
+            if (!fragmented) {
+                samples = new DefaultMp4SampleList(trackBox.getTrackHeaderBox().getTrackId(), topLevel);
+            } else {
+                samples = new FragmentedMp4SampleList(trackBox.getTrackHeaderBox().getTrackId(), topLevel, additionalFragments);
+            }
+        }
+        return samples;
+    }
 }
@@ -0,0 +1,194 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Builds the same plain MP4 as {@link DefaultMp4Builder}, but the sample
+ * sizes come from a {@link TrackSampleTable} and the 'mdat' is written by
+ * transferring the ranges of the source files directly to the output,
+ * consecutive samples in a single transfer. No sample is ever loaded or
+ * mapped, so the memory used doesn't depend on the size of the media.
+ * <p>
+ * Tracks without a registered source fall back to the default behavior.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class StreamingMp4Builder extends DefaultMp4Builder {
+
+    private final Map<Track, TrackSampleTable> tables = new HashMap<Track, TrackSampleTable>();
+    private final Map<Track, DataSource> sources = new HashMap<Track, DataSource>();
+
+    /**
+     * @param track  the track as added to the movie
+     * @param table  the samples of the track
+     * @param source the file the table offsets refer to
+     */
+    public void addTrackSource(Track track, TrackSampleTable table, DataSource source) {
+        tables.put(track, table);
+        sources.put(track, source);
+    }
+
+    @Override
+    protected long[] getSampleSizes(Track track, List<Sample> samples) {
+        TrackSampleTable table = tables.get(track);
+        return table != null ? table.getSizes() : super.getSampleSizes(track, samples);
+    }
+
+    @Override
+    protected Box createMdat(Movie movie, Map<Track, int[]> chunks, long contentSize) {
+        for (Track track : movie.getTracks()) {
+            if (!tables.containsKey(track)) {
+                return super.createMdat(movie, chunks, contentSize);
+            }
+        }
+        return new TransferMdat(chunks, contentSize);
+    }
+
+    private static final class Chunk {
+
+        final Track track;
+        final int firstSample;
+        final int samples;
+        final long offset;
+
+        Chunk(Track track, int firstSample, int samples, long offset) {
+            this.track = track;
+            this.firstSample = firstSample;
+            this.samples = samples;
+            this.offset = offset;
+        }
+    }
+
+    private final class TransferMdat implements Box {
+
+        private final Map<Track, int[]> chunks;
+        private final long contentSize;
+        private Container parent;
+
+        TransferMdat(Map<Track, int[]> chunks, long contentSize) {
+            this.chunks = chunks;
+            this.contentSize = contentSize;
+        }
+
+        public Container getParent() {
+            return parent;
+        }
+
+        public void setParent(Container parent) {
+            this.parent = parent;
+        }
+
+        public long getOffset() {
+            throw new RuntimeException("Doesn't have any meaning for programmatically created boxes");
+        }
+
+        public void parse(DataSource dataSource, ByteBuffer header, long contentSize, BoxParser boxParser) throws IOException {
+        }
+
+        public String getType() {
+            return "mdat";
+        }
+
+        public long getSize() {
+            return 16 + contentSize;
+        }
+
+        public void getBox(WritableByteChannel writableByteChannel) throws IOException {
+            ByteBuffer bb = ByteBuffer.allocate(16);
+            long size = getSize();
+            if (size < 4294967296L) {
+                IsoTypeWriter.writeUInt32(bb, size);
+                bb.put(IsoFile.fourCCtoBytes("mdat"));
+                bb.put(new byte[8]);
+            } else {
+                IsoTypeWriter.writeUInt32(bb, 1);
+                bb.put(IsoFile.fourCCtoBytes("mdat"));
+                IsoTypeWriter.writeUInt64(bb, size);
+            }
+            bb.rewind();
+            writableByteChannel.write(bb);
+
+            long written = 0;
+            for (Chunk chunk : orderedChunks()) {
+                TrackSampleTable table = tables.get(chunk.track);
+                DataSource source = sources.get(chunk.track);
+                long sourceSize = source.size();
+
+                int end = chunk.firstSample + chunk.samples;
+                int i = chunk.firstSample;
+                while (i < end) {
+                    long start = table.getOffset(i);
+                    long length = table.getSize(i);
+                    i++;
+                    // samples are usually contiguous in the source, move them in one go
+                    while (i < end && table.getOffset(i) == start + length) {
+                        length += table.getSize(i);
+                        i++;
+                    }
+
+                    if (start + length > sourceSize) {
+                        throw new IOException("Sample data out of the source file bounds, truncated file?");
+                    }
+                    MediaDataBox.transfer(source, start, length, writableByteChannel);
+                    written += length;
+                }
+            }
+
+            if (written != contentSize) {
+                throw new IOException("Wrong mdat size, expected: " + contentSize + ", written: " + written);
+            }
+        }
+
+        /**
+         * The chunks in the order the chunk offset boxes expect them.
+         */
+        private List<Chunk> orderedChunks() {
+            List<Chunk> list = new ArrayList<Chunk>();
+            for (Map.Entry<Track, int[]> e : chunks.entrySet()) {
+                Track track = e.getKey();
+                int[] sizes = e.getValue();
+                long[] offsets = getChunkOffsets(track);
+                int sample = 0;
+                for (int i = 0; i < sizes.length; i++) {
+                    list.add(new Chunk(track, sample, sizes[i], offsets[i]));
+                    sample += sizes[i];
+                }
+            }
+
+            Collections.sort(list, new Comparator<Chunk>() {
+                @Override
+                public int compare(Chunk o1, Chunk o2) {
+                    return o1.offset < o2.offset ? -1 : (o1.offset == o2.offset ? 0 : 1);
+                }
+            });
+
+            return list;
+        }
+    }
+}
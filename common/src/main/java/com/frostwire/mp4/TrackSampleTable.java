@@ -0,0 +1,166 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.mp4;
+
+import java.util.List;
+
+import static com.frostwire.mp4.CastUtils.l2i;
+
+/**
+ * Size and absolute file offset of every sample of a track, computed from
+ * the sample tables (or the movie fragments) only. Unlike the sample lists
+ * it never maps or reads the media data.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class TrackSampleTable {
+
+    private final long[] sizes;
+    private final long[] offsets;
+
+    private TrackSampleTable(long[] sizes, long[] offsets) {
+        this.sizes = sizes;
+        this.offsets = offsets;
+    }
+
+    public int size() {
+        return sizes.length;
+    }
+
+    public long[] getSizes() {
+        return sizes;
+    }
+
+    public long getSize(int index) {
+        return sizes[index];
+    }
+
+    public long getOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * @param trackBox a track of a parsed top level file
+     */
+    public static TrackSampleTable build(TrackBox trackBox) {
+        Container topLevel = ((Box) trackBox.getParent()).getParent();
+        // same criteria as SampleList
+        if (trackBox.getParent().getBoxes(MovieExtendsBox.class).isEmpty()) {
+            return buildFromSampleTable(trackBox);
+        } else {
+            return buildFromFragments(trackBox, topLevel);
+        }
+    }
+
+    private static TrackSampleTable buildFromSampleTable(TrackBox trackBox) {
+        SampleTableBox stbl = trackBox.getSampleTableBox();
+        SampleSizeBox stsz = stbl.getSampleSizeBox();
+        long[] chunkOffsets = stbl.getChunkOffsetBox().getChunkOffsets();
+        long[] samplesPerChunk = stbl.getSampleToChunkBox().blowup(chunkOffsets.length);
+
+        int n = l2i(stsz.getSampleCount());
+        long[] sizes = new long[n];
+        long[] offsets = new long[n];
+
+        int sample = 0;
+        for (int chunk = 0; chunk < chunkOffsets.length && sample < n; chunk++) {
+            long offset = chunkOffsets[chunk];
+            for (long i = 0; i < samplesPerChunk[chunk] && sample < n; i++) {
+                long size = stsz.getSampleSizeAtIndex(sample);
+                sizes[sample] = size;
+                offsets[sample] = offset;
+                offset += size;
+                sample++;
+            }
+        }
+
+        if (sample != n) {
+            throw new RuntimeException("Sample tables of track " + trackBox.getTrackHeaderBox().getTrackId() + " are inconsistent");
+        }
+
+        return new TrackSampleTable(sizes, offsets);
+    }
+
+    private static TrackSampleTable buildFromFragments(TrackBox trackBox, Container topLevel) {
+        long trackId = trackBox.getTrackHeaderBox().getTrackId();
+
+        TrackExtendsBox trex = null;
+        List<TrackExtendsBox> trexs = Path.getPaths(topLevel, "moov[0]/mvex[0]/trex");
+        for (TrackExtendsBox box : trexs) {
+            if (box.getTrackId() == trackId) {
+                trex = box;
+            }
+        }
+
+        int n = 0;
+        for (MovieFragmentBox moof : topLevel.getBoxes(MovieFragmentBox.class)) {
+            for (TrackFragmentBox traf : moof.getBoxes(TrackFragmentBox.class)) {
+                if (traf.getTrackFragmentHeaderBox().getTrackId() == trackId) {
+                    for (TrackRunBox trun : traf.getBoxes(TrackRunBox.class)) {
+                        n += trun.getEntries().size();
+                    }
+                }
+            }
+        }
+
+        long[] sizes = new long[n];
+        long[] offsets = new long[n];
+
+        int sample = 0;
+        for (MovieFragmentBox moof : topLevel.getBoxes(MovieFragmentBox.class)) {
+            for (TrackFragmentBox traf : moof.getBoxes(TrackFragmentBox.class)) {
+                TrackFragmentHeaderBox tfhd = traf.getTrackFragmentHeaderBox();
+                if (tfhd.getTrackId() != trackId) {
+                    continue;
+                }
+
+                // same base as FragmentedMp4SampleList, the top level file starts at 0
+                long base = tfhd.hasBaseDataOffset() ? tfhd.getBaseDataOffset() : moof.getOffset();
+                long offset = base;
+
+                for (TrackRunBox trun : traf.getBoxes(TrackRunBox.class)) {
+                    if (trun.isDataOffsetPresent()) {
+                        offset = base + trun.getDataOffset();
+                    }
+
+                    long defaultSampleSize = 0;
+                    if (!trun.isSampleSizePresent()) {
+                        if (tfhd.hasDefaultSampleSize()) {
+                            defaultSampleSize = tfhd.getDefaultSampleSize();
+                        } else if (trex != null) {
+                            defaultSampleSize = trex.getDefaultSampleSize();
+                        } else {
+                            throw new RuntimeException("File doesn't contain trex box but track fragments aren't fully self contained. Cannot determine sample size.");
+                        }
+                    }
+
+                    for (TrackRunBox.Entry e : trun.getEntries()) {
+                        long size = trun.isSampleSizePresent() ? e.getSampleSize() : defaultSampleSize;
+                        sizes[sample] = size;
+                        offsets[sample] = offset;
+                        offset += size;
+                        sample++;
+                    }
+                }
+            }
+        }
+
+        return new TrackSampleTable(sizes, offsets);
+    }
+}
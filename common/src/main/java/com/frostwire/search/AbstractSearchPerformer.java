@@ -34,7 +34,7 @@ public abstract class AbstractSearchPerformer implements SearchPerformer {
     private final long token;
     private final PublishSubject<List<? extends SearchResult>> subject;
 
-    private boolean stopped;
+    private volatile boolean stopped;
 
     public AbstractSearchPerformer(long token) {
         this.token = token;
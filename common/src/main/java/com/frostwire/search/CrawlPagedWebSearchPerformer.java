@@ -37,6 +37,9 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
     private static final int FAILED_CRAWL_URL_CACHE_LIFETIME = 600000; // 10 minutes.
     private static final int DEFAULT_MAGNET_DOWNLOAD_TIMEOUT = 20000; // 20 seconds.
 
+    // striped locks, so crawls of different urls don't contend on a single cache monitor
+    private static final Object[] cacheLocks = newCacheLocks(16);
+
     private static CrawlCache cache = null;
     private static MagnetDownloader magnetDownloader = null;
 
@@ -47,6 +50,10 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
         this.numCrawls = numCrawls;
     }
 
+    public static CrawlCache getCache() {
+        return cache;
+    }
+
     public static void setCache(CrawlCache cache) {
         CrawlPagedWebSearchPerformer.cache = cache;
     }
@@ -163,7 +170,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     private byte[] cacheGet(String key) {
         if (cache != null) {
-            synchronized (cache) {
+            synchronized (cacheLock(key)) {
                 return cache.get(key);
             }
         } else {
@@ -173,7 +180,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     private void cachePut(String key, byte[] data) {
         if (cache != null) {
-            synchronized (cache) {
+            synchronized (cacheLock(key)) {
                 cache.put(key, data);
             }
         }
@@ -181,7 +188,7 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     private void cacheRemove(String key) {
         if (cache != null) {
-            synchronized (cache) {
+            synchronized (cacheLock(key)) {
                 cache.remove(key);
             }
         }
@@ -211,19 +218,29 @@ public abstract class CrawlPagedWebSearchPerformer<T extends CrawlableSearchResu
 
     public static void clearCache() {
         if (cache != null) {
-            synchronized (cache) {
-                cache.clear();
-            }
+            cache.clear();
         }
     }
 
     public static long getCacheSize() {
         long result = 0;
         if (cache != null) {
-            synchronized (cache) {
-                result = cache.size();
-            }
+            result = cache.size();
         }
         return result;
     }
+
+    private static Object cacheLock(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return cacheLocks[h & (cacheLocks.length - 1)];
+    }
+
+    private static Object[] newCacheLocks(int n) {
+        Object[] locks = new Object[n];
+        for (int i = 0; i < n; i++) {
+            locks[i] = new Object();
+        }
+        return locks;
+    }
 }
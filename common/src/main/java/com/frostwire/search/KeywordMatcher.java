@@ -0,0 +1,418 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.frostwire.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Matches search results against the keywords of a query, a result matches
+ * if its text contains all the keywords.
+ * <p>
+ * The query and the result texts are sanitized (html tags and entities, separator
+ * chars and noise like ".torrent" or "www." are dropped) and folded (diacritical
+ * marks removed, lower cased) in a single pass with a precomputed table, while the
+ * keywords are searched all at once with an Aho-Corasick automaton. Matching a
+ * result doesn't create any string.
+ * <p>
+ * Instances are immutable and can be shared between threads.
+ */
+public final class KeywordMatcher {
+
+    /**
+     * Only this many keywords of a query are used.
+     */
+    public static final int MAX_TOKENS = 64;
+
+    /**
+     * The fold table covers the chars below this one (up to the CJK symbols) and the
+     * ones from {@link #FOLD_HIGH_START} (compatibility forms, ligatures, full width
+     * forms), other chars are only lower cased.
+     */
+    private static final int FOLD_LOW_END = 0x3400;
+    private static final int FOLD_HIGH_START = 0xF900;
+    private static final int FOLD_TABLE_SIZE = FOLD_LOW_END + (0x10000 - FOLD_HIGH_START);
+
+    private static final char[] FOLD = new char[FOLD_TABLE_SIZE];
+
+    /**
+     * Non null for the chars that fold to no char (i.e. combining marks) or to several.
+     */
+    private static final String[] FOLD_SPECIAL = new String[FOLD_TABLE_SIZE];
+
+    private static final String SEPARATORS = " \\/%_;-.()[]\n\r\u00D0&~{}*@^'=!,\u00A1|#\u00C0\u00C1";
+
+    private static final String[] NOISE = {".torrent", "www.", ".com", ".net"};
+
+    private static final boolean[] SEPARATOR = new boolean[256];
+
+    static {
+        for (int i = 0; i < SEPARATORS.length(); i++) {
+            SEPARATOR[SEPARATORS.charAt(i)] = true;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < FOLD_TABLE_SIZE; i++) {
+            char c = (char) (i < FOLD_LOW_END ? i : i - FOLD_LOW_END + FOLD_HIGH_START);
+            String s = String.valueOf(c);
+            if (!Normalizer.isNormalized(s, Normalizer.Form.NFKD)) {
+                s = Normalizer.normalize(s, Normalizer.Form.NFKD);
+            }
+            sb.setLength(0);
+            for (int k = 0; k < s.length(); k++) {
+                char d = s.charAt(k);
+                if (d < 0x0300 || d > 0x036F) { // combining diacritical marks block
+                    sb.append(d);
+                }
+            }
+            s = sb.toString().toLowerCase(Locale.US);
+            if (s.length() == 1) {
+                FOLD[i] = s.charAt(0);
+            } else {
+                FOLD[i] = c;
+                FOLD_SPECIAL[i] = s;
+            }
+        }
+    }
+
+    private final List<String> tokens;
+
+    // automaton, state 0 is the root
+    private char[][] edgeChars;
+    private int[][] edgeTargets;
+    private int[] fail;
+    private long[] output;
+
+    private final long allMatched;
+
+    public KeywordMatcher(String query) {
+        this.tokens = tokenize(query);
+        this.allMatched = tokens.size() == 64 ? -1L : (1L << tokens.size()) - 1;
+        build();
+    }
+
+    /**
+     * @return the distinct keywords of the query, sanitized and folded
+     */
+    public List<String> getTokens() {
+        return tokens;
+    }
+
+    /**
+     * Matches the display name of the result, the one of its parent if it's crawled
+     * and its file name if it's a file, each text on its own.
+     *
+     * @return <code>true</code> if the texts of the result contain all the keywords
+     */
+    public boolean matches(SearchResult sr) {
+        long matched = scan(sr.getDisplayName(), 0);
+
+        if (matched != allMatched && sr instanceof CrawledSearchResult) {
+            CrawlableSearchResult parent = ((CrawledSearchResult) sr).getParent();
+            if (parent != null) {
+                matched = scan(parent.getDisplayName(), matched);
+            }
+        }
+
+        if (matched != allMatched && sr instanceof FileSearchResult) {
+            matched = scan(((FileSearchResult) sr).getFilename(), matched);
+        }
+
+        return matched == allMatched;
+    }
+
+    /**
+     * @return <code>true</code> if the text contains all the keywords
+     */
+    public boolean matches(String text) {
+        return scan(text, 0) == allMatched;
+    }
+
+    /**
+     * Removes the diacritical marks and lower cases the string, the folding used
+     * for keywords and texts, but without sanitizing it.
+     */
+    public static String fold(String s) {
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            appendFolded(sb, s.charAt(i));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Feeds the sanitized and folded text to the automaton.
+     *
+     * @return <code>matched</code> with the bits of the keywords found in the text set
+     */
+    private long scan(String text, long matched) {
+        if (text == null) {
+            return matched;
+        }
+
+        int n = text.length();
+        int state = 0;
+        int i = 0;
+
+        while (i < n && matched != allMatched) {
+            int skip = skipMarkup(text, i);
+            if (skip > 0) {
+                i += skip;
+                continue;
+            }
+
+            skip = skipSeparator(text, i);
+            if (skip > 0) {
+                state = 0; // keywords have no separators
+                i += skip;
+                continue;
+            }
+
+            char c = text.charAt(i++);
+            int index = foldIndex(c);
+
+            String special = index != -1 ? FOLD_SPECIAL[index] : null;
+            if (special == null) {
+                state = step(state, index != -1 ? FOLD[index] : Character.toLowerCase(c));
+                matched |= output[state];
+            } else {
+                for (int k = 0; k < special.length(); k++) {
+                    state = step(state, special.charAt(k));
+                    matched |= output[state];
+                }
+            }
+        }
+
+        return matched;
+    }
+
+    private int step(int state, char c) {
+        while (true) {
+            int next = target(state, c);
+            if (next != -1) {
+                return next;
+            }
+            if (state == 0) {
+                return 0;
+            }
+            state = fail[state];
+        }
+    }
+
+    private int target(int state, char c) {
+        char[] chars = edgeChars[state];
+        if (chars != null) {
+            for (int k = 0; k < chars.length; k++) {
+                if (chars[k] == c) {
+                    return edgeTargets[state][k];
+                }
+            }
+        }
+        return -1;
+    }
+
+    private void build() {
+        int maxStates = 1;
+        for (String token : tokens) {
+            maxStates += token.length();
+        }
+
+        edgeChars = new char[maxStates][];
+        edgeTargets = new int[maxStates][];
+        fail = new int[maxStates];
+        output = new long[maxStates];
+
+        // trie of the keywords
+        int numStates = 1;
+        for (int t = 0; t < tokens.size(); t++) {
+            String token = tokens.get(t);
+            int state = 0;
+            for (int i = 0; i < token.length(); i++) {
+                char c = token.charAt(i);
+                int next = target(state, c);
+                if (next == -1) {
+                    next = numStates++;
+                    addEdge(state, c, next);
+                }
+                state = next;
+            }
+            output[state] |= 1L << t;
+        }
+
+        // failure links, breadth first
+        int[] queue = new int[numStates];
+        int head = 0;
+        int tail = 0;
+
+        if (edgeTargets[0] != null) {
+            for (int child : edgeTargets[0]) {
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+
+        while (head < tail) {
+            int state = queue[head++];
+            if (edgeChars[state] == null) {
+                continue;
+            }
+            for (int k = 0; k < edgeChars[state].length; k++) {
+                char c = edgeChars[state][k];
+                int child = edgeTargets[state][k];
+                queue[tail++] = child;
+
+                int f = fail[state];
+                while (f != 0 && target(f, c) == -1) {
+                    f = fail[f];
+                }
+                int t = target(f, c);
+                fail[child] = t != -1 ? t : 0;
+                output[child] |= output[fail[child]];
+            }
+        }
+    }
+
+    private void addEdge(int state, char c, int next) {
+        char[] chars = edgeChars[state];
+        int[] targets = edgeTargets[state];
+        int n = chars != null ? chars.length : 0;
+
+        chars = chars != null ? Arrays.copyOf(chars, n + 1) : new char[1];
+        targets = targets != null ? Arrays.copyOf(targets, n + 1) : new int[1];
+        chars[n] = c;
+        targets[n] = next;
+
+        edgeChars[state] = chars;
+        edgeTargets[state] = targets;
+    }
+
+    private static List<String> tokenize(String query) {
+        if (query == null) {
+            return Collections.emptyList();
+        }
+
+        StringBuilder sb = new StringBuilder(query.length());
+        int n = query.length();
+        int i = 0;
+
+        while (i < n) {
+            int skip = skipMarkup(query, i);
+            if (skip > 0) {
+                i += skip;
+                continue;
+            }
+
+            skip = skipSeparator(query, i);
+            if (skip > 0) {
+                sb.append(' ');
+                i += skip;
+                continue;
+            }
+
+            appendFolded(sb, query.charAt(i++));
+        }
+
+        Set<String> tokens = new LinkedHashSet<>();
+        for (String token : sb.toString().split(" ")) {
+            if (token.length() > 0 && tokens.size() < MAX_TOKENS) {
+                tokens.add(token);
+            }
+        }
+
+        return Collections.unmodifiableList(new ArrayList<>(tokens));
+    }
+
+    private static void appendFolded(StringBuilder sb, char c) {
+        int index = foldIndex(c);
+        if (index != -1) {
+            String special = FOLD_SPECIAL[index];
+            if (special == null) {
+                sb.append(FOLD[index]);
+            } else {
+                sb.append(special);
+            }
+        } else {
+            sb.append(Character.toLowerCase(c));
+        }
+    }
+
+    /**
+     * @return the index of the char in the fold table, or -1 if it's not there
+     */
+    private static int foldIndex(char c) {
+        if (c < FOLD_LOW_END) {
+            return c;
+        }
+        if (c >= FOLD_HIGH_START) {
+            return c - FOLD_HIGH_START + FOLD_LOW_END;
+        }
+        return -1;
+    }
+
+    /**
+     * @return the length of the html tag or entity at <code>i</code>, or 0
+     */
+    private static int skipMarkup(String text, int i) {
+        char c = text.charAt(i);
+        char close;
+
+        if (c == '<') {
+            close = '>';
+        } else if (c == '&') {
+            close = ';';
+        } else {
+            return 0;
+        }
+
+        for (int j = i + 1; j < text.length(); j++) {
+            char d = text.charAt(j);
+            if (d == close) {
+                return j - i + 1;
+            }
+            if (d == '\n' || d == '\r') {
+                break;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the length of the separator or noise word at <code>i</code>, or 0
+     */
+    private static int skipSeparator(String text, int i) {
+        char c = text.charAt(i);
+
+        if (c == '.' || c == 'w') {
+            for (String noise : NOISE) {
+                if (text.startsWith(noise, i)) {
+                    return noise.length();
+                }
+            }
+        }
+
+        return c < 256 && SEPARATOR[c] ? 1 : 0;
+    }
+}
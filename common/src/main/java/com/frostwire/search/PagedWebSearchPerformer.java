@@ -43,7 +43,22 @@ public abstract class PagedWebSearchPerformer extends WebSearchPerformer {
     @Override
     public void perform() {
         for (int i = 1; !isStopped() && i <= pages; i++) {
-            onResults(searchPage(i));
+            performPage(i);
+        }
+    }
+
+    public int getPages() {
+        return pages;
+    }
+
+    /**
+     * Searches one page and sends its results back. The search manager runs
+     * each page as a task of its own, so the pages are requested at the same
+     * time within the limit of the domain.
+     */
+    public void performPage(int page) {
+        if (!isStopped()) {
+            onResults(searchPage(page));
         }
     }
 
@@ -0,0 +1,103 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Snapshot of the scheduling state of one search domain in
+ * {@link SearchManagerImpl}, as returned by {@link SearchManagerImpl#getDomainStats()}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchDomainStats {
+
+    private final String domain;
+    private final int inFlight;
+    private final int queued;
+    private final int limit;
+    private final long tasks;
+    private final long errors;
+    private final long averageLatency;
+    private final double errorRate;
+
+    SearchDomainStats(String domain, int inFlight, int queued, int limit, long tasks, long errors, long averageLatency, double errorRate) {
+        this.domain = domain;
+        this.inFlight = inFlight;
+        this.queued = queued;
+        this.limit = limit;
+        this.tasks = tasks;
+        this.errors = errors;
+        this.averageLatency = averageLatency;
+        this.errorRate = errorRate;
+    }
+
+    /**
+     * @return the domain name of the performers, or the performer class
+     * name for the ones that are not web based
+     */
+    public String getDomain() {
+        return domain;
+    }
+
+    public int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return the tasks waiting for the domain to go below its limit
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * @return the current number of tasks allowed to run at the same time
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public long getTasks() {
+        return tasks;
+    }
+
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * @return the moving average of the execution time in milliseconds
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    /**
+     * @return the moving average of failed tasks, between 0 and 1
+     */
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return domain + "[inFlight=" + inFlight + ", queued=" + queued + ", limit=" + limit +
+                ", tasks=" + tasks + ", errors=" + errors + ", avgLatency=" + averageLatency + "ms" +
+                ", errorRate=" + String.format("%.2f", errorRate) + "]";
+    }
+}
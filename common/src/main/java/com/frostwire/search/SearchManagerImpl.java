@@ -1,7 +1,7 @@
 /*
  * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
  * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
- 
+
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
  * You may obtain a copy of the License at
@@ -18,20 +18,51 @@
 package com.frostwire.search;
 
 import com.frostwire.logging.Logger;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
+import com.frostwire.search.torrent.TorrentCrawlableSearchResult;
 import com.frostwire.util.ThreadPool;
 import rx.Observable;
 import rx.functions.Action1;
 import rx.subjects.PublishSubject;
 
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * The tasks are tracked per search token, so submitting, finishing and
+ * stopping a task only touches the bookkeeping of its own search.
+ * <p>
+ * Each search domain has an adaptive limit of tasks running at the same
+ * time, lowered when its tasks are slow or fail, so one bad engine can't
+ * take all the threads. The pages of a paged web search are tasks of their
+ * own, so they are requested at the same time within that limit, the rest
+ * wait in the queue of the domain. If a deadline is set, a search that reaches it is
+ * ended right away: its running performers are stopped, their late results
+ * and its pending crawls are dropped.
+ * <p>
+ * The same torrent returned by several engines is delivered only once per
+ * search, and crawled once: the other copies wait until the crawl produces
+ * the files of the torrent, and are crawled in turn if it doesn't. The seeds
+ * and source of every copy are merged into the delivered result.
+ *
  * @author gubatron
  * @author aldenml
  */
@@ -40,17 +71,61 @@ public class SearchManagerImpl implements SearchManager {
     private static final Logger LOG = Logger.getLogger(SearchManagerImpl.class);
 
     private static final int DEFAULT_NTHREADS = 6;
+    /**
+     * A sensible deadline for interactive searches, in milliseconds. Not
+     * applied unless passed to {@link #SearchManagerImpl(int, long)}.
+     */
+    public static final long DEFAULT_SEARCH_DEADLINE = 90000;
+
+    private static final long SLOW_TASK_LATENCY = 15000; // ms
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final int MAX_SEARCH_STATS = 50;
 
     private final ExecutorService executor;
-    private final List<SearchTask> tasks;
+    private final int maxDomainLimit;
+    private final long searchDeadline;
+    private final Timer deadlines;
+    private final ConcurrentMap<Long, TokenTasks> tokens;
+    private final ConcurrentMap<String, DomainTasks> domains;
+    private final AtomicInteger pending;
+    private final AtomicLong sequence;
+    private final ConcurrentMap<String, SearchTaskStats> stats;
+    private final Map<Long, SearchStats> searchStats;
     private final PublishSubject<SearchManagerSignal> subject;
 
-    public SearchManagerImpl(int nThreads) {
+    /**
+     * @param nThreads       the number of threads for the tasks of all the searches
+     * @param searchDeadline milliseconds after the first task of a search to end
+     *                       it and drop its pending crawls, 0 for no deadline
+     */
+    public SearchManagerImpl(int nThreads, long searchDeadline) {
         this.executor = new ThreadPool("SearchManager", nThreads, nThreads, 1L, new PriorityBlockingQueue<Runnable>(), true);
-        this.tasks = Collections.synchronizedList(new LinkedList<SearchTask>());
+        // always leave a thread to the other domains
+        this.maxDomainLimit = Math.max(1, nThreads - 1);
+        this.searchDeadline = searchDeadline;
+        this.deadlines = searchDeadline > 0 ? new Timer("SearchManager-Deadlines", true) : null;
+        this.tokens = new ConcurrentHashMap<Long, TokenTasks>();
+        this.domains = new ConcurrentHashMap<String, DomainTasks>();
+        this.pending = new AtomicInteger();
+        this.sequence = new AtomicLong();
+        this.stats = new ConcurrentHashMap<String, SearchTaskStats>();
+        this.searchStats = Collections.synchronizedMap(new LinkedHashMap<Long, SearchStats>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, SearchStats> eldest) {
+                return size() > MAX_SEARCH_STATS;
+            }
+        });
         this.subject = PublishSubject.create();
     }
 
+    /**
+     * A search manager without deadline, the searches end when all their
+     * tasks do.
+     */
+    public SearchManagerImpl(int nThreads) {
+        this(nThreads, 0);
+    }
+
     public SearchManagerImpl() {
         this(DEFAULT_NTHREADS);
     }
@@ -75,32 +150,81 @@ public class SearchManagerImpl implements SearchManager {
                 }
             });
 
-            SearchTask task = new PerformTask(this, performer, getOrder(performer.getToken()));
-
-            submitSearchTask(task);
+            if (performer instanceof PagedWebSearchPerformer && ((PagedWebSearchPerformer) performer).getPages() > 1) {
+                PagedWebSearchPerformer paged = (PagedWebSearchPerformer) performer;
+                List<SearchTask> pages = new ArrayList<SearchTask>(paged.getPages());
+                for (int i = 1; i <= paged.getPages(); i++) {
+                    pages.add(new PageTask(this, paged, i));
+                }
+                submitSearchTasks(pages);
+            } else {
+                submitSearchTask(new PerformTask(this, performer));
+            }
         } else {
             LOG.warn("Search performer is null, review your logic");
         }
     }
 
     public void submitSearchTask(SearchTask task) {
-        tasks.add(task);
-        executor.execute(task);
+        if (register(task)) {
+            if (task.domainTasks.offer(task)) {
+                execute(task);
+            }
+        }
+    }
+
+    /**
+     * Registers all the tasks before running any, so the search can't be
+     * over in the middle.
+     */
+    private void submitSearchTasks(List<SearchTask> tasks) {
+        List<SearchTask> registered = new ArrayList<SearchTask>(tasks.size());
+        for (SearchTask task : tasks) {
+            if (register(task)) {
+                registered.add(task);
+            }
+        }
+        for (SearchTask task : registered) {
+            if (task.domainTasks.offer(task)) {
+                execute(task);
+            }
+        }
+    }
+
+    /**
+     * Runs the task, or finishes it right away if the executor is shut down.
+     */
+    private void execute(SearchTask task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            long now = System.nanoTime();
+            taskFinished(task, false, false, now, now);
+        }
     }
 
     @Override
     public void stop() {
-        stopTasks(-1L);
+        for (Long token : tokens.keySet()) {
+            stop(token);
+        }
     }
 
     @Override
     public void stop(long token) {
-        stopTasks(token);
+        TokenTasks tt = tokens.remove(token);
+        if (tt != null) {
+            // detached, a new search with the same token starts from scratch
+            tt.stop();
+        }
     }
 
     @Override
     public boolean shutdown(long timeout, TimeUnit unit) {
         stop();
+        if (deadlines != null) {
+            deadlines.cancel();
+        }
         executor.shutdown();
         try {
             if (!executor.awaitTermination(timeout, unit)) {
@@ -118,7 +242,54 @@ public class SearchManagerImpl implements SearchManager {
             Thread.currentThread().interrupt();
         }
 
-        return tasks.isEmpty();
+        return pending.get() == 0;
+    }
+
+    /**
+     * @return the number of submitted tasks of the search not finished yet
+     */
+    public int getInFlightTasks(long token) {
+        TokenTasks tt = tokens.get(token);
+        return tt != null ? tt.size() : 0;
+    }
+
+    /**
+     * @return the number of submitted tasks not finished yet by search token
+     */
+    public Map<Long, Integer> getInFlightTasks() {
+        Map<Long, Integer> map = new HashMap<Long, Integer>();
+        for (Map.Entry<Long, TokenTasks> e : tokens.entrySet()) {
+            int n = e.getValue().size();
+            if (n > 0) {
+                map.put(e.getKey(), n);
+            }
+        }
+        return map;
+    }
+
+    /**
+     * @return the queue wait and execution times of the tasks by performer class name
+     */
+    public Map<String, SearchTaskStats> getTaskStats() {
+        return new HashMap<String, SearchTaskStats>(stats);
+    }
+
+    /**
+     * @return the current limits, latency and error rate by search domain
+     */
+    public Map<String, SearchDomainStats> getDomainStats() {
+        Map<String, SearchDomainStats> map = new HashMap<String, SearchDomainStats>();
+        for (DomainTasks dt : domains.values()) {
+            map.put(dt.domain, dt.snapshot());
+        }
+        return map;
+    }
+
+    /**
+     * @return the timings of one of the last finished searches, or null
+     */
+    public SearchStats getSearchStats(long token) {
+        return searchStats.get(token);
     }
 
     protected void onResults(SearchPerformer performer, List<? extends SearchResult> results) {
@@ -142,8 +313,7 @@ public class SearchManagerImpl implements SearchManager {
     private void crawl(SearchPerformer performer, CrawlableSearchResult sr) {
         if (performer != null && !performer.isStopped()) {
             try {
-                SearchTask task = new CrawlTask(this, performer, sr, getOrder(performer.getToken()));
-                submitSearchTask(task);
+                submitSearchTask(new CrawlTask(this, performer, sr));
             } catch (Throwable e) {
                 LOG.warn("Error scheduling crawling of search result: " + sr);
             }
@@ -152,58 +322,155 @@ public class SearchManagerImpl implements SearchManager {
         }
     }
 
-    private void stopTasks(long token) {
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (token == -1L || task.getToken() == token) {
-                    task.stopSearch();
+    /**
+     * @return false if the task was dropped because its search is over
+     */
+    private boolean register(SearchTask task) {
+        long token = task.getToken();
+        while (true) {
+            TokenTasks tt = tokens.get(token);
+            if (tt == null) {
+                TokenTasks newTasks = new TokenTasks(token);
+                tt = tokens.putIfAbsent(token, newTasks);
+                if (tt == null) {
+                    tt = newTasks;
+                    scheduleDeadline(tt);
                 }
             }
+            int r = tt.add(task, sequence.getAndIncrement());
+            if (r == TokenTasks.ADDED) {
+                task.domainTasks = getDomainTasks(task.performer);
+                pending.incrementAndGet();
+                return true;
+            }
+            if (r == TokenTasks.DROPPED) {
+                return false;
+            }
+            // a finished entry is being removed from the map, retry with a new one
+            tokens.remove(token, tt);
         }
     }
 
-    private void checkIfFinished(SearchPerformer performer) {
-        SearchTask pendingTask = null;
-
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext() && pendingTask == null) {
-                SearchTask task = it.next();
-                if (task.getToken() == performer.getToken() && !task.isStopped()) {
-                    pendingTask = task;
+    private void scheduleDeadline(final TokenTasks tt) {
+        if (deadlines == null) {
+            return;
+        }
+        TimerTask timeout = new TimerTask() {
+            @Override
+            public void run() {
+                if (tt.expire()) {
+                    // the running performers give up, the queued tasks are dropped
+                    tt.stop();
+                    searchFinished(tt);
                 }
+            }
+        };
+        tt.deadline = timeout;
+        try {
+            deadlines.schedule(timeout, searchDeadline);
+        } catch (IllegalStateException e) {
+            // timer cancelled, shutting down
+        }
+    }
 
-                if (task.isStopped()) {
-                    it.remove();
-                }
+    private DomainTasks getDomainTasks(SearchPerformer performer) {
+        String domain = performer instanceof WebSearchPerformer ?
+                ((WebSearchPerformer) performer).getDomainName() :
+                performer.getClass().getName();
+        DomainTasks dt = domains.get(domain);
+        if (dt == null) {
+            DomainTasks newTasks = new DomainTasks(domain, maxDomainLimit);
+            dt = domains.putIfAbsent(domain, newTasks);
+            if (dt == null) {
+                dt = newTasks;
+            }
+        }
+        return dt;
+    }
+
+    private void taskFinished(SearchTask task, boolean executed, boolean failed, long startNanos, long endNanos) {
+        if (executed) {
+            recordStats(task, startNanos, endNanos);
+        }
+
+        List<SearchTask> next = task.domainTasks.release(executed, failed, endNanos - startNanos);
+        for (SearchTask t : next) {
+            execute(t);
+        }
+
+        TokenTasks tt = task.tokenTasks;
+        if (tt.remove(task)) {
+            pending.decrementAndGet();
+            if (tt.finish()) {
+                searchFinished(tt);
+            } else if (tt.isDone()) {
+                // ended before by the deadline, the last task is out now
+                tokens.remove(tt.token, tt);
             }
         }
+    }
 
-        if (pendingTask == null) {
-            onFinished(performer.getToken());
+    private void searchFinished(TokenTasks tt) {
+        if (tt.deadline != null) {
+            tt.deadline.cancel();
+        }
+        if (tt.isDone()) {
+            tokens.remove(tt.token, tt);
         }
+
+        SearchStats s = tt.stats();
+        searchStats.put(tt.token, s);
+        LOG.debug("Search finished: " + s);
+
+        onFinished(tt.token);
     }
 
-    private int getOrder(long token) {
-        int order = 0;
-        synchronized (tasks) {
-            Iterator<SearchTask> it = tasks.iterator();
-            while (it.hasNext()) {
-                SearchTask task = it.next();
-                if (task.getToken() == token) {
-                    order = order + 1;
-                }
+    private void recordStats(SearchTask task, long startNanos, long endNanos) {
+        String name = task.performer.getClass().getName();
+        SearchTaskStats s = stats.get(name);
+        if (s == null) {
+            SearchTaskStats newStats = new SearchTaskStats(name);
+            s = stats.putIfAbsent(name, newStats);
+            if (s == null) {
+                s = newStats;
             }
         }
-        return order;
+        s.record(startNanos - task.submitNanos, endNanos - startNanos);
     }
 
     private void performerOnResults(SearchPerformer performer, List<? extends SearchResult> results) {
         List<SearchResult> list = new LinkedList<SearchResult>();
+        TokenTasks tt = tokens.get(performer.getToken());
+        if (tt != null && tt.isExpired()) {
+            // the search is over, the listeners already got its end
+            return;
+        }
 
         for (SearchResult sr : results) {
+            if (tt != null) {
+                if (sr instanceof TorrentCrawlableSearchResult) {
+                    TorrentCopies copies = tt.torrentCopies(((TorrentCrawlableSearchResult) sr).getHash());
+                    if (copies != null) {
+                        int r = copies.offer(performer, (TorrentCrawlableSearchResult) sr);
+                        if (r == TorrentCopies.DELIVER) {
+                            list.add(sr);
+                        }
+                        if (r != TorrentCopies.SKIP) {
+                            crawl(performer, (CrawlableSearchResult) sr);
+                        }
+                        continue;
+                    }
+                } else if (sr instanceof CrawledSearchResult) {
+                    CrawlableSearchResult parent = ((CrawledSearchResult) sr).getParent();
+                    if (parent instanceof TorrentCrawlableSearchResult) {
+                        TorrentCopies copies = tt.torrentCopies(((TorrentCrawlableSearchResult) parent).getHash());
+                        if (copies != null) {
+                            copies.crawled();
+                        }
+                    }
+                }
+            }
+
             if (sr instanceof CrawlableSearchResult) {
                 CrawlableSearchResult csr = (CrawlableSearchResult) sr;
 
@@ -218,20 +485,396 @@ public class SearchManagerImpl implements SearchManager {
         }
 
         if (!list.isEmpty()) {
+            if (tt != null) {
+                tt.resultsArrived();
+            }
             onResults(performer, list);
         }
     }
 
+    /**
+     * Crawls the next copy of the torrent if the crawl just finished didn't
+     * produce its files.
+     */
+    private void torrentCrawlFinished(TokenTasks tt, TorrentCrawlableSearchResult sr) {
+        TorrentCopies copies = tt.torrentCopies(sr.getHash());
+        if (copies == null) {
+            return;
+        }
+
+        TorrentCopy next = copies.crawlFinished();
+        if (next != null) {
+            if (next.deliver) {
+                tt.resultsArrived();
+                onResults(next.performer, Collections.singletonList(next.sr));
+            }
+            crawl(next.performer, next.sr);
+        }
+    }
+
+    /**
+     * @return the hash as lower case hex (base32 hashes of magnets are
+     * converted), or null if it's not a usable key
+     */
+    static String normalizeHash(String hash) {
+        if (hash == null) {
+            return null;
+        }
+        hash = hash.trim();
+        if (hash.length() == 32) {
+            String hex = base32ToHex(hash);
+            if (hex != null) {
+                return hex;
+            }
+        }
+        return hash.length() > 0 ? hash.toLowerCase(Locale.US) : null;
+    }
+
+    private static String base32ToHex(String s) {
+        StringBuilder sb = new StringBuilder(40);
+        long buffer = 0;
+        int bits = 0;
+        for (int i = 0; i < s.length(); i++) {
+            char c = Character.toUpperCase(s.charAt(i));
+            int v;
+            if (c >= 'A' && c <= 'Z') {
+                v = c - 'A';
+            } else if (c >= '2' && c <= '7') {
+                v = c - '2' + 26;
+            } else {
+                return null;
+            }
+            buffer = (buffer << 5) | v;
+            bits += 5;
+            while (bits >= 4) {
+                bits -= 4;
+                sb.append(Character.forDigit((int) ((buffer >> bits) & 0xf), 16));
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Bookkeeping of the tasks of one search. The lock is per token, the
+     * task set is only iterated when the whole search is stopped.
+     */
+    private static final class TokenTasks {
+
+        static final int ADDED = 0;
+        static final int DROPPED = 1;
+        static final int FINISHED = 2;
+
+        final long token;
+        private final ConcurrentMap<String, TorrentCopies> torrents;
+        private final Set<SearchTask> tasks;
+        private final long startNanos;
+        private long firstResultNanos;
+        private long endNanos;
+        private boolean stopped;
+        private boolean expired;
+        private boolean finished;
+        TimerTask deadline;
+
+        TokenTasks(long token) {
+            this.token = token;
+            this.torrents = new ConcurrentHashMap<String, TorrentCopies>();
+            this.tasks = Collections.newSetFromMap(new HashMap<SearchTask, Boolean>());
+            this.startNanos = System.nanoTime();
+        }
+
+        synchronized int add(SearchTask task, long sequence) {
+            if (finished) {
+                // a crawl of an expired search is dropped, anything else is a new search
+                return expired && task instanceof CrawlTask ? DROPPED : FINISHED;
+            }
+            // same priority as before, the number of tasks already in flight for the search
+            task.order = tasks.size();
+            task.tokenTasks = this;
+            task.sequence = sequence;
+            tasks.add(task);
+            return ADDED;
+        }
+
+        /**
+         * @return the copies of the torrent in this search, or null if the
+         * hash is not usable
+         */
+        TorrentCopies torrentCopies(String hash) {
+            String key = normalizeHash(hash);
+            if (key == null) {
+                return null;
+            }
+            TorrentCopies copies = torrents.get(key);
+            if (copies == null) {
+                TorrentCopies newCopies = new TorrentCopies();
+                copies = torrents.putIfAbsent(key, newCopies);
+                if (copies == null) {
+                    copies = newCopies;
+                }
+            }
+            return copies;
+        }
+
+        synchronized boolean remove(SearchTask task) {
+            return tasks.remove(task);
+        }
+
+        /**
+         * @return true the first time there is no pending task, or the
+         * search was stopped, the search is over at that point
+         */
+        synchronized boolean finish() {
+            if (!finished && (stopped || tasks.isEmpty())) {
+                finished = true;
+                endNanos = System.nanoTime();
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return true if the search wasn't over, from now on the
+         * crawls not started are dropped
+         */
+        synchronized boolean expire() {
+            if (!finished) {
+                finished = true;
+                expired = true;
+                endNanos = System.nanoTime();
+                return true;
+            }
+            return false;
+        }
+
+        synchronized boolean isExpired() {
+            return expired;
+        }
+
+        /**
+         * @return true if the search is over and there are no tasks left
+         */
+        synchronized boolean isDone() {
+            return finished && tasks.isEmpty();
+        }
+
+        synchronized void resultsArrived() {
+            if (firstResultNanos == 0) {
+                firstResultNanos = System.nanoTime();
+            }
+        }
+
+        synchronized int size() {
+            return tasks.size();
+        }
+
+        synchronized SearchStats stats() {
+            long firstResult = firstResultNanos != 0 ? TimeUnit.NANOSECONDS.toMillis(firstResultNanos - startNanos) : -1;
+            return new SearchStats(token, firstResult, TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos), expired);
+        }
+
+        void stop() {
+            List<SearchTask> list;
+            synchronized (this) {
+                stopped = true;
+                list = new ArrayList<SearchTask>(tasks);
+            }
+            for (SearchTask task : list) {
+                task.stopSearch();
+            }
+        }
+    }
+
+    /**
+     * The copies of the same torrent returned by the engines of one search.
+     * The torrent is delivered once, and only one copy at a time is crawled;
+     * the others wait, and are dropped once a crawl produces the files of the
+     * torrent. Every copy is merged into the delivered result, the ones that
+     * arrive before it on delivery.
+     */
+    private static final class TorrentCopies {
+
+        /**
+         * Deliver the result and crawl it.
+         */
+        static final int DELIVER = 0;
+        /**
+         * Crawl the result, the torrent was already delivered.
+         */
+        static final int CRAWL = 1;
+        /**
+         * Nothing to do, the result is dropped or waits for its turn.
+         */
+        static final int SKIP = 2;
+
+        private final LinkedList<TorrentCopy> waiting = new LinkedList<TorrentCopy>();
+        private final List<TorrentCrawlableSearchResult> undelivered = new LinkedList<TorrentCrawlableSearchResult>();
+        private TorrentCrawlableSearchResult delivered;
+        private boolean crawling;
+        private boolean crawled;
+
+        synchronized int offer(SearchPerformer performer, TorrentCrawlableSearchResult sr) {
+            if (delivered != null) {
+                merge(delivered, sr);
+            } else {
+                undelivered.add(sr);
+            }
+            if (crawled) {
+                return SKIP;
+            }
+            if (crawling) {
+                waiting.add(new TorrentCopy(performer, sr));
+                return SKIP;
+            }
+            crawling = true;
+            return deliver(sr) ? DELIVER : CRAWL;
+        }
+
+        synchronized void crawled() {
+            crawled = true;
+            waiting.clear();
+        }
+
+        /**
+         * @return the next copy to crawl, or null
+         */
+        synchronized TorrentCopy crawlFinished() {
+            crawling = false;
+            if (crawled || waiting.isEmpty()) {
+                return null;
+            }
+            crawling = true;
+            TorrentCopy next = waiting.removeFirst();
+            next.deliver = deliver(next.sr);
+            return next;
+        }
+
+        // guarded by this
+        private boolean deliver(TorrentCrawlableSearchResult sr) {
+            if (delivered == null && sr.isComplete()) {
+                delivered = sr;
+                for (TorrentCrawlableSearchResult copy : undelivered) {
+                    if (copy != sr) {
+                        merge(sr, copy);
+                    }
+                }
+                undelivered.clear();
+                return true;
+            }
+            return false;
+        }
+
+        private static void merge(TorrentCrawlableSearchResult delivered, TorrentCrawlableSearchResult copy) {
+            if (delivered instanceof AbstractTorrentSearchResult) {
+                ((AbstractTorrentSearchResult) delivered).merge(copy);
+            }
+        }
+    }
+
+    private static final class TorrentCopy {
+
+        final SearchPerformer performer;
+        final TorrentCrawlableSearchResult sr;
+        boolean deliver;
+
+        TorrentCopy(SearchPerformer performer, TorrentCrawlableSearchResult sr) {
+            this.performer = performer;
+            this.sr = sr;
+        }
+    }
+
+    /**
+     * Limits the tasks of one domain running at the same time. The limit
+     * grows by one after a full window of fast tasks and is halved with a
+     * slow or failed one, the rest of the tasks wait here in priority order
+     * instead of in the executor queue.
+     */
+    private static final class DomainTasks {
+
+        final String domain;
+        private final int maxLimit;
+        private final PriorityQueue<SearchTask> queue;
+        private int limit;
+        private int inFlight;
+        private int successes;
+        private long tasks;
+        private long errors;
+        private double latency; // ms
+        private double errorRate;
+
+        DomainTasks(String domain, int maxLimit) {
+            this.domain = domain;
+            this.maxLimit = maxLimit;
+            this.queue = new PriorityQueue<SearchTask>();
+            this.limit = Math.max(1, maxLimit / 2);
+        }
+
+        /**
+         * @return true if the task can be executed now, otherwise it's queued
+         */
+        synchronized boolean offer(SearchTask task) {
+            if (inFlight < limit) {
+                inFlight++;
+                return true;
+            }
+            queue.add(task);
+            return false;
+        }
+
+        /**
+         * @return the queued tasks that can be executed now
+         */
+        synchronized List<SearchTask> release(boolean executed, boolean failed, long nanos) {
+            inFlight--;
+
+            if (executed) {
+                long ms = TimeUnit.NANOSECONDS.toMillis(nanos);
+                tasks++;
+                latency = tasks == 1 ? ms : latency + LATENCY_ALPHA * (ms - latency);
+                errorRate = errorRate + LATENCY_ALPHA * ((failed ? 1 : 0) - errorRate);
+
+                if (failed || ms > SLOW_TASK_LATENCY) {
+                    if (failed) {
+                        errors++;
+                    }
+                    limit = Math.max(1, limit / 2);
+                    successes = 0;
+                } else if (++successes >= limit) {
+                    limit = Math.min(maxLimit, limit + 1);
+                    successes = 0;
+                }
+            }
+
+            List<SearchTask> next = Collections.emptyList();
+            while (inFlight < limit && !queue.isEmpty()) {
+                if (next.isEmpty()) {
+                    next = new ArrayList<SearchTask>();
+                }
+                next.add(queue.poll());
+                inFlight++;
+            }
+            return next;
+        }
+
+        synchronized SearchDomainStats snapshot() {
+            return new SearchDomainStats(domain, inFlight, queue.size(), limit, tasks, errors, Math.round(latency), errorRate);
+        }
+    }
+
     private static abstract class SearchTask extends Thread implements Comparable<SearchTask> {
 
         protected final SearchManagerImpl manager;
         protected final SearchPerformer performer;
-        private final int order;
-
-        public SearchTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
+        final long submitNanos;
+        // set on registration
+        int order;
+        long sequence;
+        TokenTasks tokenTasks;
+        DomainTasks domainTasks;
+
+        public SearchTask(SearchManagerImpl manager, SearchPerformer performer) {
             this.manager = manager;
             this.performer = performer;
-            this.order = order;
+            this.submitNanos = System.nanoTime();
             this.setName(performer.getClass().getName() + "-SearchTask");
         }
 
@@ -247,31 +890,75 @@ public class SearchManagerImpl implements SearchManager {
             performer.stop();
         }
 
+        /**
+         * @return true if the task should not run anymore
+         */
+        protected boolean isDropped() {
+            return isStopped();
+        }
+
+        @Override
+        public final void run() {
+            long start = System.nanoTime();
+            boolean executed = false;
+            boolean failed = false;
+            try {
+                if (!isDropped()) {
+                    executed = true;
+                    execute();
+                }
+            } catch (Throwable e) {
+                failed = true;
+                LOG.warn("Error running search task: " + this + ", e=" + e.getMessage());
+            } finally {
+                manager.taskFinished(this, executed, failed, start, System.nanoTime());
+            }
+        }
+
+        protected abstract void execute();
+
         @Override
         public int compareTo(SearchTask o) {
-            return order - o.order;
+            int r = order - o.order;
+            // FIFO among the tasks with the same priority
+            return r != 0 ? r : (sequence < o.sequence ? -1 : (sequence == o.sequence ? 0 : 1));
         }
     }
 
     private static final class PerformTask extends SearchTask {
 
-        public PerformTask(SearchManagerImpl manager, SearchPerformer performer, int order) {
-            super(manager, performer, order);
+        public PerformTask(SearchManagerImpl manager, SearchPerformer performer) {
+            super(manager, performer);
         }
 
         @Override
-        public void run() {
-            try {
-                if (!isStopped()) {
-                    performer.perform();
-                }
-            } catch (Throwable e) {
-                LOG.warn("Error performing search: " + performer + ", e=" + e.getMessage());
-            } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
-                }
-            }
+        protected void execute() {
+            performer.perform();
+        }
+
+        @Override
+        public String toString() {
+            return "PerformTask(" + performer + ")";
+        }
+    }
+
+    private static final class PageTask extends SearchTask {
+
+        private final int page;
+
+        public PageTask(SearchManagerImpl manager, PagedWebSearchPerformer performer, int page) {
+            super(manager, performer);
+            this.page = page;
+        }
+
+        @Override
+        protected void execute() {
+            ((PagedWebSearchPerformer) performer).performPage(page);
+        }
+
+        @Override
+        public String toString() {
+            return "PageTask(" + performer + ", page=" + page + ")";
         }
     }
 
@@ -279,24 +966,30 @@ public class SearchManagerImpl implements SearchManager {
 
         private final CrawlableSearchResult sr;
 
-        public CrawlTask(SearchManagerImpl manager, SearchPerformer performer, CrawlableSearchResult sr, int order) {
-            super(manager, performer, order);
+        public CrawlTask(SearchManagerImpl manager, SearchPerformer performer, CrawlableSearchResult sr) {
+            super(manager, performer);
             this.sr = sr;
         }
 
         @Override
-        public void run() {
+        protected boolean isDropped() {
+            return super.isDropped() || tokenTasks.isExpired();
+        }
+
+        @Override
+        protected void execute() {
             try {
-                if (!isStopped()) {
-                    performer.crawl(sr);
-                }
-            } catch (Throwable e) {
-                LOG.warn("Error performing crawling of: " + sr + ", e=" + e.getMessage());
+                performer.crawl(sr);
             } finally {
-                if (manager.tasks.remove(this)) {
-                    manager.checkIfFinished(performer);
+                if (sr instanceof TorrentCrawlableSearchResult) {
+                    manager.torrentCrawlFinished(tokenTasks, (TorrentCrawlableSearchResult) sr);
                 }
             }
         }
+
+        @Override
+        public String toString() {
+            return "CrawlTask(" + sr + ")";
+        }
     }
 }
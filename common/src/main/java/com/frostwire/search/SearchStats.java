@@ -0,0 +1,70 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+/**
+ * Timings of a finished search, as returned by {@link SearchManagerImpl#getSearchStats(long)}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchStats {
+
+    private final long token;
+    private final long timeToFirstResult;
+    private final long totalTime;
+    private final boolean expired;
+
+    SearchStats(long token, long timeToFirstResult, long totalTime, boolean expired) {
+        this.token = token;
+        this.timeToFirstResult = timeToFirstResult;
+        this.totalTime = totalTime;
+        this.expired = expired;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    /**
+     * @return the milliseconds from the first task to the first results, -1 if there were none
+     */
+    public long getTimeToFirstResult() {
+        return timeToFirstResult;
+    }
+
+    /**
+     * @return the milliseconds from the first task to the end signal
+     */
+    public long getTotalTime() {
+        return totalTime;
+    }
+
+    /**
+     * @return true if the search reached its deadline and the pending crawls were dropped
+     */
+    public boolean isExpired() {
+        return expired;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchStats[token=" + token + ", firstResult=" + timeToFirstResult + "ms, total=" + totalTime + "ms" +
+                (expired ? ", expired" : "") + "]";
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Accumulated queue wait and execution times of the search tasks of
+ * one performer class, as recorded by {@link SearchManagerImpl}.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SearchTaskStats {
+
+    private final String performer;
+
+    private final AtomicLong tasks;
+    private final AtomicLong totalWaitNanos;
+    private final AtomicLong maxWaitNanos;
+    private final AtomicLong totalExecNanos;
+    private final AtomicLong maxExecNanos;
+
+    SearchTaskStats(String performer) {
+        this.performer = performer;
+        this.tasks = new AtomicLong();
+        this.totalWaitNanos = new AtomicLong();
+        this.maxWaitNanos = new AtomicLong();
+        this.totalExecNanos = new AtomicLong();
+        this.maxExecNanos = new AtomicLong();
+    }
+
+    /**
+     * @return the class name of the performer
+     */
+    public String getPerformer() {
+        return performer;
+    }
+
+    public long getTasks() {
+        return tasks.get();
+    }
+
+    public long getTotalWaitTime(TimeUnit unit) {
+        return unit.convert(totalWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxWaitTime(TimeUnit unit) {
+        return unit.convert(maxWaitNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageWaitTime(TimeUnit unit) {
+        long n = tasks.get();
+        return n > 0 ? unit.convert(totalWaitNanos.get() / n, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    public long getTotalExecutionTime(TimeUnit unit) {
+        return unit.convert(totalExecNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getMaxExecutionTime(TimeUnit unit) {
+        return unit.convert(maxExecNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getAverageExecutionTime(TimeUnit unit) {
+        long n = tasks.get();
+        return n > 0 ? unit.convert(totalExecNanos.get() / n, TimeUnit.NANOSECONDS) : 0;
+    }
+
+    void record(long waitNanos, long execNanos) {
+        tasks.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        totalExecNanos.addAndGet(execNanos);
+        updateMax(maxWaitNanos, waitNanos);
+        updateMax(maxExecNanos, execNanos);
+    }
+
+    @Override
+    public String toString() {
+        return performer + "[tasks=" + getTasks() +
+                ", avgWait=" + getAverageWaitTime(TimeUnit.MILLISECONDS) + "ms" +
+                ", maxWait=" + getMaxWaitTime(TimeUnit.MILLISECONDS) + "ms" +
+                ", avgExec=" + getAverageExecutionTime(TimeUnit.MILLISECONDS) + "ms" +
+                ", maxExec=" + getMaxExecutionTime(TimeUnit.MILLISECONDS) + "ms]";
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+}
@@ -69,6 +69,15 @@ public abstract class WebSearchPerformer extends AbstractSearchPerformer {
         return encodedKeywords;
     }
 
+    /**
+     * Also aborts the HTTP requests in flight for this performer.
+     */
+    @Override
+    public void stop() {
+        super.stop();
+        client.cancel();
+    }
+
     @Override
     public void crawl(CrawlableSearchResult sr) {
         LOG.warn("Review your logic, calling deep search without implementation for: " + sr);
@@ -19,6 +19,9 @@ package com.frostwire.search.torrent;
 
 import com.frostwire.search.AbstractFileSearchResult;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author gubatron
  * @author aldenml
@@ -27,6 +30,10 @@ public abstract class AbstractTorrentSearchResult extends AbstractFileSearchResu
 
     private int uid = -1;
 
+    // the copies of this torrent returned by other engines, guarded by this
+    private List<String> copySources;
+    private int copySeeds = -1;
+
     @Override
     public boolean isComplete() {
         return true;
@@ -45,4 +52,41 @@ public abstract class AbstractTorrentSearchResult extends AbstractFileSearchResu
     public String getReferrerUrl() {
         return getDetailsUrl();
     }
+
+    /**
+     * Merges a copy of this torrent (same info hash) returned by another
+     * engine in the same search.
+     */
+    public synchronized void merge(TorrentSearchResult copy) {
+        String source = copy.getSource();
+        if (source != null && !source.equals(getSource())) {
+            if (copySources == null) {
+                copySources = new ArrayList<String>(2);
+            }
+            if (!copySources.contains(source)) {
+                copySources.add(source);
+            }
+        }
+        copySeeds = Math.max(copySeeds, copy.getSeeds());
+    }
+
+    /**
+     * @return the highest number of seeds reported by the engines that
+     * returned the torrent
+     */
+    public synchronized int getMergedSeeds() {
+        return Math.max(getSeeds(), copySeeds);
+    }
+
+    /**
+     * @return the engines that returned the torrent, the one of this result first
+     */
+    public synchronized List<String> getSources() {
+        List<String> sources = new ArrayList<String>(copySources != null ? copySources.size() + 1 : 1);
+        sources.add(getSource());
+        if (copySources != null) {
+            sources.addAll(copySources);
+        }
+        return sources;
+    }
 }
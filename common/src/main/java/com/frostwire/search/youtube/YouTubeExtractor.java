@@ -16,11 +16,14 @@
 package com.frostwire.search.youtube;
 
 import com.frostwire.logging.Logger;
+import com.frostwire.search.CrawlCache;
+import com.frostwire.search.CrawlPagedWebSearchPerformer;
 import com.frostwire.search.FileSearchResult;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.HttpClientFactory;
 import com.frostwire.search.youtube.jd.Browser;
 import com.frostwire.search.youtube.jd.Encoding;
+import com.frostwire.search.youtube.jd.JsSigProgram;
 import com.frostwire.search.youtube.jd.Regex;
 import org.w3c.dom.Document;
 import org.w3c.dom.Node;
@@ -54,6 +57,9 @@ public final class YouTubeExtractor {
     // using the signature decoding per running session (LruCache)
     private static LRUCacheMap<String, YouTubeSig> YT_SIG_MAP = new LRUCacheMap<String, YouTubeSig>(50);
 
+    // compiled signature programs are persisted in the crawl cache, keyed by player url
+    private static final String SIG_CACHE_KEY_PREFIX = "youtube:sig:";
+
     private YouTubeSig currentYTSig;
 
     public List<LinkInfo> extract(String videoUrl, boolean testConnection) {
@@ -370,28 +376,71 @@ public final class YouTubeExtractor {
     }
 
     private YouTubeSig getYouTubeSig(String html5playerUrl) {
-        // concurrency issues are not important in this point
-        YouTubeSig sig = null;
-        if (!YT_SIG_MAP.containsKey(html5playerUrl)) {
+        html5playerUrl = html5playerUrl.replace("\\", "");
+
+        YouTubeSig sig;
+        synchronized (YT_SIG_MAP) {
+            sig = YT_SIG_MAP.get(html5playerUrl);
+        }
+        if (sig != null) {
+            //cache hit, it worked with this url.
+            return sig;
+        }
+
+        sig = loadYouTubeSig(html5playerUrl);
+
+        if (sig == null) {
             String jscode = "";
             try {
-                html5playerUrl = html5playerUrl.replace("\\", "");
                 HttpClient httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.SEARCH);
                 jscode = httpClient.get(html5playerUrl);
                 sig = new YouTubeSig(jscode);
-                YT_SIG_MAP.put(html5playerUrl, sig);
+                saveYouTubeSig(html5playerUrl, sig);
             } catch (Throwable t) {
                 LOG.error("Could not getYouTubeSig", t);
                 LOG.error("jscode:\n" + jscode);
             }
-        } else {
-            //cache hit, it worked with this url.            
-            sig = YT_SIG_MAP.get(html5playerUrl);
+        }
+
+        if (sig != null) {
+            synchronized (YT_SIG_MAP) {
+                YT_SIG_MAP.put(html5playerUrl, sig);
+            }
         }
 
         return sig;
     }
 
+    private static YouTubeSig loadYouTubeSig(String html5playerUrl) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.getCache();
+        if (cache == null) {
+            return null;
+        }
+
+        try {
+            byte[] data = cache.get(SIG_CACHE_KEY_PREFIX + html5playerUrl);
+            JsSigProgram program = data != null ? JsSigProgram.fromByteArray(data) : null;
+            return program != null ? new YouTubeSig(program) : null;
+        } catch (Throwable e) {
+            LOG.warn("Error loading compiled signature function: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static void saveYouTubeSig(String html5playerUrl, YouTubeSig sig) {
+        CrawlCache cache = CrawlPagedWebSearchPerformer.getCache();
+        JsSigProgram program = sig.getProgram();
+        if (cache == null || program == null) {
+            return;
+        }
+
+        try {
+            cache.put(SIG_CACHE_KEY_PREFIX + html5playerUrl, program.toByteArray());
+        } catch (Throwable e) {
+            LOG.warn("Error saving compiled signature function: " + e.getMessage());
+        }
+    }
+
     private ThumbnailLinks createThumbnailLink(String videoId) {
         String normal = "http://img.youtube.com/vi/" + videoId + "/default.jpg";
         String mq = "http://img.youtube.com/vi/" + videoId + "/mqdefault.jpg";
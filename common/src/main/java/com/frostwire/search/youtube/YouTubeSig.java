@@ -21,7 +21,9 @@ package com.frostwire.search.youtube;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
+import com.frostwire.logging.Logger;
 import com.frostwire.search.youtube.jd.JsFunction;
+import com.frostwire.search.youtube.jd.JsSigProgram;
 
 /**
  * @author gubatron
@@ -30,7 +32,13 @@ import com.frostwire.search.youtube.jd.JsFunction;
  */
 public final class YouTubeSig {
 
-	private final JsFunction<String> fn;
+    private static final Logger LOG = Logger.getLogger(YouTubeSig.class);
+
+    // signatures are around 80-90 chars, all different to catch any misplaced one
+    private static final String VERIFY_SIG = buildVerifySig(88);
+
+    private final JsSigProgram program;
+    private final JsFunction<String> fn;
 
 	public YouTubeSig(String jscode) {
 		//The function is usually found in a block like this:
@@ -46,10 +54,46 @@ public final class YouTubeSig {
 		Matcher m = Pattern.compile("\\.sig\\|\\|([$a-zA-Z0-9]+)\\(").matcher(jscode);
         m.find();
         String funcname = m.group(1);
-        this.fn = new JsFunction<String>(jscode, funcname);
+        JsFunction<String> fn = new JsFunction<String>(jscode, funcname);
+
+        JsSigProgram program = null;
+        try {
+            program = JsSigProgram.compile(jscode, funcname);
+            // the interpreter is the reference, only keep the compiled version if both agree
+            if (!program.eval(VERIFY_SIG).equals(fn.eval(VERIFY_SIG))) {
+                LOG.warn("Compiled signature function differs from the interpreted one, using the interpreter");
+                program = null;
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to compile signature function, using the interpreter: " + e.getMessage());
+            program = null;
+        }
+
+        this.program = program;
+        this.fn = program == null ? fn : null;
+    }
+
+    public YouTubeSig(JsSigProgram program) {
+        this.program = program;
+        this.fn = null;
     }
 
 	public String calc(String sig) {
-		return fn.eval(sig);
+		return program != null ? program.eval(sig) : fn.eval(sig);
 	}
+
+    /**
+     * @return the compiled signature function, null if it's only interpreted
+     */
+    public JsSigProgram getProgram() {
+        return program;
+    }
+
+    private static String buildVerifySig(int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('!' + i));
+        }
+        return sb.toString();
+    }
 }
@@ -0,0 +1,240 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search.youtube.jd;
+
+import static com.frostwire.search.youtube.jd.JavaFunctions.escape;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.frostwire.regex.Matcher;
+import com.frostwire.regex.Pattern;
+
+/**
+ * The signature descrambler compiled to a list of string operations.
+ * <p>
+ * The player function is always a sequence of reverse, splice/slice and
+ * swap calls over the characters of the signature, so instead of
+ * interpreting the JS statements on every call, they are parsed once and
+ * {@link #eval(String)} just runs the operations. The program can be
+ * serialized to avoid downloading and parsing the player again.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class JsSigProgram {
+
+    private static final int VERSION = 1;
+
+    private static final int OP_REVERSE = 1;
+    private static final int OP_SLICE = 2; // slice and splice(0, n) both drop the first n chars
+    private static final int OP_SWAP = 3;
+
+    private final static String WS = "[ \\t\\n\\x0B\\f\\r]";
+    private final static String VAR = "[a-zA-Z$0-9_]+";
+
+    private static final Pattern SPLIT_STMT = Pattern.compile("^[a-z]+=[a-z]+\\.split\\(\"\"\\)$");
+    private static final Pattern JOIN_STMT = Pattern.compile("^return [a-z]+\\.join\\(\"\"\\)$");
+    private static final Pattern MEMBER_STMT = Pattern.compile("^([a-z]+=)?[a-z]+\\.(?<member>reverse|slice)\\((?<arg>[0-9]*)\\)$");
+    private static final Pattern CALL_STMT = Pattern.compile("^([a-z]+=)?((?<obj>" + VAR + ")\\.)?(?<func>" + VAR + ")\\([a-z]+(,(?<arg>[0-9]+))?\\)$");
+
+    private final int[] ops;
+    private final int[] args;
+
+    private JsSigProgram(int[] ops, int[] args) {
+        this.ops = ops;
+        this.args = args;
+    }
+
+    public String eval(String sig) {
+        StringBuilder sb = new StringBuilder(sig);
+        for (int i = 0; i < ops.length; i++) {
+            int arg = args[i];
+            switch (ops[i]) {
+                case OP_REVERSE:
+                    sb.reverse();
+                    break;
+                case OP_SLICE:
+                    sb.delete(0, Math.min(arg, sb.length()));
+                    break;
+                case OP_SWAP:
+                    if (sb.length() > 0) {
+                        int j = arg % sb.length();
+                        char c = sb.charAt(0);
+                        sb.setCharAt(0, sb.charAt(j));
+                        sb.setCharAt(j, c);
+                    }
+                    break;
+                default:
+                    throw new JsError("Invalid operation in signature program: " + ops[i]);
+            }
+        }
+        return sb.toString();
+    }
+
+    public byte[] toByteArray() {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(VERSION);
+            out.writeInt(ops.length);
+            for (int i = 0; i < ops.length; i++) {
+                out.writeByte(ops[i]);
+                out.writeInt(args[i]);
+            }
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            // not possible with a byte array
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * @return the program, or null if the data is not a valid serialized program
+     */
+    public static JsSigProgram fromByteArray(byte[] data) {
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+            if (in.readInt() != VERSION) {
+                return null;
+            }
+            int n = in.readInt();
+            if (n < 0 || n > data.length) {
+                return null;
+            }
+            int[] ops = new int[n];
+            int[] args = new int[n];
+            for (int i = 0; i < n; i++) {
+                ops[i] = in.readByte();
+                args[i] = in.readInt();
+                if (ops[i] < OP_REVERSE || ops[i] > OP_SWAP || args[i] < 0) {
+                    return null;
+                }
+            }
+            return new JsSigProgram(ops, args);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Compiles the function <code>funcname</code> of the player code.
+     *
+     * @throws JsError if the function uses something other than the known operations
+     */
+    public static JsSigProgram compile(String jscode, String funcname) {
+        String code = extractFunctionCode(jscode, funcname);
+
+        List<Integer> ops = new ArrayList<Integer>();
+        List<Integer> args = new ArrayList<Integer>();
+
+        for (String stmt : code.split(";")) {
+            stmt = stmt.replaceAll("[\n\r]", "").trim();
+            if (stmt.startsWith("var ")) {
+                stmt = stmt.substring("var ".length());
+            }
+
+            if (stmt.length() == 0 || SPLIT_STMT.matcher(stmt).find() || JOIN_STMT.matcher(stmt).find()) {
+                continue;
+            }
+
+            Matcher m = MEMBER_STMT.matcher(stmt);
+            if (m.find()) {
+                if (m.group("member").equals("reverse")) {
+                    ops.add(OP_REVERSE);
+                    args.add(0);
+                } else {
+                    ops.add(OP_SLICE);
+                    args.add(parseArg(m.group("arg"), stmt));
+                }
+                continue;
+            }
+
+            m = CALL_STMT.matcher(stmt);
+            if (m.find()) {
+                String obj = m.group("obj");
+                String func = m.group("func");
+                String body = obj != null ? extractMemberCode(jscode, obj, func) : extractFunctionCode(jscode, func);
+                ops.add(classify(body, stmt));
+                args.add(m.group("arg") != null ? parseArg(m.group("arg"), stmt) : 0);
+                continue;
+            }
+
+            throw new JsError("Unsupported statement in signature function: " + stmt);
+        }
+
+        int[] opsArr = new int[ops.size()];
+        int[] argsArr = new int[args.size()];
+        for (int i = 0; i < opsArr.length; i++) {
+            opsArr[i] = ops.get(i);
+            argsArr[i] = args.get(i);
+        }
+        return new JsSigProgram(opsArr, argsArr);
+    }
+
+    private static int classify(String body, String stmt) {
+        if (body.contains("%")) {
+            return OP_SWAP;
+        }
+        if (body.contains(".reverse(")) {
+            return OP_REVERSE;
+        }
+        if (body.contains(".splice(0,") || body.contains(".slice(")) {
+            return OP_SLICE;
+        }
+        throw new JsError("Unsupported helper function in signature statement: " + stmt);
+    }
+
+    private static int parseArg(String arg, String stmt) {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            throw new JsError("Unsupported argument in signature statement: " + stmt);
+        }
+    }
+
+    private static String extractFunctionCode(String jscode, String funcname) {
+        String regex = String.format("(%1$s" + WS + "*=" + WS + "*function|function" + WS + "+%1$s|[\\{;,]%1$s" + WS + "*=" + WS + "*function|var" + WS + "+%1$s" + WS + "*=" + WS + "*function)" + WS + "*",
+                escape(funcname)) + "\\([a-z,]+\\)\\{(?<code>[^\\}]+)\\}";
+        Matcher m = Pattern.compile(regex).matcher(jscode);
+        if (!m.find()) {
+            throw new JsError("Could not find JS function " + funcname);
+        }
+        return m.group("code");
+    }
+
+    private static String extractMemberCode(String jscode, String objname, String member) {
+        Matcher m = Pattern.compile(String.format("(var" + WS + "+)?%1$s" + WS + "*=" + WS + "*\\{", escape(objname))).matcher(jscode);
+        if (!m.find()) {
+            throw new JsError("Could not find JS object " + objname);
+        }
+
+        // the first definition of the member after the start of the object
+        Matcher fm = Pattern.compile("[\\{,]" + WS + "*" + escape(member) + WS + "*:" + WS + "*function\\([a-z,]+\\)\\{(?<code>[^\\}]+)\\}").matcher(jscode);
+        if (!fm.find(m.end() - 1)) {
+            throw new JsError("Could not find JS function " + objname + "." + member);
+        }
+        return fm.group("code");
+    }
+}
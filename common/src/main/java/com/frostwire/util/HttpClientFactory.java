@@ -17,13 +17,18 @@
 
 package com.frostwire.util;
 
+import com.frostwire.util.http.ConnectionPoolStats;
+import com.frostwire.util.http.HostLimiter;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.http.JdkHttpClient;
 import com.frostwire.util.http.OKHTTPClient;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
 
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.Map;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -38,7 +43,9 @@ public class HttpClientFactory {
         MISC
     }
 
-    private static Map<HttpContext, ThreadPool> okHttpClientPools = null;
+    private static Map<HttpContext, OkHttpClient> okHttpClients = null;
+    private static Map<HttpContext, ConnectionPoolStats> connectionPoolStats = null;
+    private static Map<HttpContext, HostLimiter> hostLimiters = null;
 
     private HttpClientFactory() {
     }
@@ -48,17 +55,41 @@ public class HttpClientFactory {
     }
 
     public static HttpClient getInstance(HttpContext context) {
-        if (okHttpClientPools == null) {
-            okHttpClientPools = buildThreadPools();
+        OkHttpClient client = getOkHttpClients().get(context);
+        return new OKHTTPClient(client, hostLimiters.get(context));
+    }
+
+    public static ConnectionPoolStats getConnectionPoolStats(HttpContext context) {
+        getOkHttpClients();
+        return connectionPoolStats.get(context);
+    }
+
+    private static synchronized Map<HttpContext, OkHttpClient> getOkHttpClients() {
+        if (okHttpClients == null) {
+            connectionPoolStats = new EnumMap<HttpContext, ConnectionPoolStats>(HttpContext.class);
+            hostLimiters = new EnumMap<HttpContext, HostLimiter>(HttpContext.class);
+            okHttpClients = buildOkHttpClients();
         }
-        return new OKHTTPClient(okHttpClientPools.get(context));
+        return okHttpClients;
     }
 
-    private static Map<HttpContext, ThreadPool> buildThreadPools() {
-        final HashMap<HttpContext, ThreadPool> map = new HashMap<HttpContext, ThreadPool>();
-        map.put(HttpContext.SEARCH, new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.DOWNLOAD, new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true));
-        map.put(HttpContext.MISC, new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true));
+    private static Map<HttpContext, OkHttpClient> buildOkHttpClients() {
+        final Map<HttpContext, OkHttpClient> map = new EnumMap<HttpContext, OkHttpClient>(HttpContext.class);
+        // searches fan out to many engines at once, keep more idle sockets around between pages and crawls
+        map.put(HttpContext.SEARCH, buildOkHttpClient(HttpContext.SEARCH, new ThreadPool("OkHttpClient-searches", 1, 5, 60, new LinkedBlockingQueue<Runnable>(), true), 20, 120, 4));
+        map.put(HttpContext.DOWNLOAD, buildOkHttpClient(HttpContext.DOWNLOAD, new ThreadPool("OkHttpClient-downloads", 1, 10, 5, new LinkedBlockingQueue<Runnable>(), true), 8, 60, 4));
+        map.put(HttpContext.MISC, buildOkHttpClient(HttpContext.MISC, new ThreadPool("OkHttpClient-misc", 2, 10, 30, new LinkedBlockingQueue<Runnable>(), true), 5, 30, 5));
         return map;
     }
-}
\ No newline at end of file
+
+    private static OkHttpClient buildOkHttpClient(HttpContext context, ThreadPool pool, int maxIdleConnections, long keepAliveInSeconds, int maxRequestsPerHost) {
+        ConnectionPool connectionPool = new ConnectionPool(maxIdleConnections, keepAliveInSeconds, TimeUnit.SECONDS);
+        ConnectionPoolStats stats = new ConnectionPoolStats(connectionPool);
+        connectionPoolStats.put(context, stats);
+        hostLimiters.put(context, new HostLimiter(maxRequestsPerHost));
+
+        OkHttpClient client = OKHTTPClient.newOkHttpClient(pool, connectionPool);
+        client.networkInterceptors().add(stats);
+        return client;
+    }
+}
@@ -44,23 +44,7 @@ public final class MP4Muxer {
         FileInputStream audioIn = new FileInputStream(audio);
 
         try {
-            FileChannel videoChannel = videoIn.getChannel();
-            Movie videoMovie = buildMovie(videoChannel);
-
-            FileChannel audioChannel = audioIn.getChannel();
-            Movie audioMovie = buildMovie(audioChannel);
-
-            Movie outMovie = new Movie();
-
-            for (Track trk : videoMovie.getTracks()) {
-                outMovie.addTrack(trk);
-            }
-
-            for (Track trk : audioMovie.getTracks()) {
-                outMovie.addTrack(trk);
-            }
-
-            Container out = new DefaultMp4Builder() {
+            StreamingMp4Builder builder = new StreamingMp4Builder() {
                 @Override
                 protected FileTypeBox createFileTypeBox(Movie movie) {
                     List<String> minorBrands = new LinkedList<String>();
@@ -93,7 +77,25 @@ public final class MP4Muxer {
                 protected Box createUdta(Movie movie) {
                     return mt != null ? addUserDataBox(mt) : null;
                 }
-            }.build(outMovie);
+            };
+
+            FileChannel videoChannel = videoIn.getChannel();
+            Movie videoMovie = buildMovie(videoChannel, builder);
+
+            FileChannel audioChannel = audioIn.getChannel();
+            Movie audioMovie = buildMovie(audioChannel, builder);
+
+            Movie outMovie = new Movie();
+
+            for (Track trk : videoMovie.getTracks()) {
+                outMovie.addTrack(trk);
+            }
+
+            for (Track trk : audioMovie.getTracks()) {
+                outMovie.addTrack(trk);
+            }
+
+            Container out = builder.build(outMovie);
 
             FileOutputStream fos = new FileOutputStream(output);
             try {
@@ -112,27 +114,7 @@ public final class MP4Muxer {
         FileInputStream videoIn = new FileInputStream(video);
 
         try {
-            FileChannel videoChannel = videoIn.getChannel();
-            Movie videoMovie = buildMovie(videoChannel);
-
-            Track audioTrack = null;
-
-            for (Track trk : videoMovie.getTracks()) {
-                if (trk.getHandler().equals("soun")) {
-                    audioTrack = trk;
-                    break;
-                }
-            }
-
-            if (audioTrack == null) {
-                IOUtils.closeQuietly(videoIn);
-                return;
-            }
-
-            Movie outMovie = new Movie();
-            outMovie.addTrack(audioTrack);
-
-            Container out = new DefaultMp4Builder() {
+            StreamingMp4Builder builder = new StreamingMp4Builder() {
                 @Override
                 protected FileTypeBox createFileTypeBox(Movie movie) {
                     List<String> minorBrands = new LinkedList<String>();
@@ -165,7 +147,29 @@ public final class MP4Muxer {
                 protected Box createUdta(Movie movie) {
                     return mt != null ? addUserDataBox(mt) : null;
                 }
-            }.build(outMovie);
+            };
+
+            FileChannel videoChannel = videoIn.getChannel();
+            Movie videoMovie = buildMovie(videoChannel, builder);
+
+            Track audioTrack = null;
+
+            for (Track trk : videoMovie.getTracks()) {
+                if (trk.getHandler().equals("soun")) {
+                    audioTrack = trk;
+                    break;
+                }
+            }
+
+            if (audioTrack == null) {
+                IOUtils.closeQuietly(videoIn);
+                return;
+            }
+
+            Movie outMovie = new Movie();
+            outMovie.addTrack(audioTrack);
+
+            Container out = builder.build(outMovie);
 
             FileOutputStream fos = new FileOutputStream(output);
             try {
@@ -178,7 +182,11 @@ public final class MP4Muxer {
         }
     }
 
-    private static Movie buildMovie(FileChannel channel) throws IOException {
+    /**
+     * Parses the file and registers its tracks in the builder, so the media
+     * data can be transferred straight from the file when writing.
+     */
+    private static Movie buildMovie(FileChannel channel, StreamingMp4Builder builder) throws IOException {
         BoxParser parser = new PropertyBoxParserImpl() {
             @Override
             public Box parseBox(DataSource byteChannel, Container parent) throws IOException {
@@ -191,13 +199,16 @@ public final class MP4Muxer {
                 return box;
             }
         };
+        FileDataSourceImpl dataSource = new FileDataSourceImpl(channel);
         @SuppressWarnings("resource")
-        IsoFile isoFile = new IsoFile(new FileDataSourceImpl(channel), parser);
+        IsoFile isoFile = new IsoFile(dataSource, parser);
         Movie m = new Movie();
         List<TrackBox> trackBoxes = isoFile.getMovieBox().getBoxes(TrackBox.class);
         int n = 1;
         for (TrackBox trackBox : trackBoxes) {
-            m.addTrack(new Mp4TrackImpl("track"+ n, trackBox));
+            Track track = new Mp4TrackImpl("track"+ n, trackBox);
+            builder.addTrackSource(track, TrackSampleTable.build(trackBox), dataSource);
+            m.addTrack(track);
             n++;
         }
 
@@ -26,6 +26,7 @@ import javax.net.ssl.TrustManager;
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
 import java.security.SecureRandom;
 import java.util.List;
@@ -166,6 +167,9 @@ public abstract class AbstractHttpClient implements HttpClient {
     @Override
     abstract public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException;
 
+    @Override
+    abstract public void save(String url, OutputStream out, long rangeStart, long rangeEnd, int timeout, String userAgent) throws IOException;
+
     @Override
     abstract public String post(String url, int timeout, String userAgent, Map<String, String> formData) throws IOException;
 
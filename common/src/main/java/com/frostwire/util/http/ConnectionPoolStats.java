@@ -0,0 +1,96 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.squareup.okhttp.Connection;
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.Interceptor;
+import com.squareup.okhttp.Response;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Network interceptor that keeps hit/miss counters for a shared
+ * {@link ConnectionPool}. A request is a hit when it goes out over a
+ * connection that already carried a previous request.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class ConnectionPoolStats implements Interceptor {
+
+    private final ConnectionPool pool;
+
+    // weak, so connections evicted from the pool can be collected
+    private final Set<Connection> seen;
+
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public ConnectionPoolStats(ConnectionPool pool) {
+        this.pool = pool;
+        this.seen = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Connection, Boolean>()));
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    @Override
+    public Response intercept(Chain chain) throws IOException {
+        Connection connection = chain.connection();
+        if (connection != null) {
+            if (seen.add(connection)) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+        }
+        return chain.proceed(chain.request());
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public float getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total > 0 ? (float) h / total : 0f;
+    }
+
+    public int getConnectionCount() {
+        return pool.getConnectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return pool.getIdleConnectionCount();
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStats(hits: " + getHits() + ", misses: " + getMisses() +
+                ", connections: " + getConnectionCount() + ", idle: " + getIdleConnectionCount() + ")";
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits the requests to the same host running at the same time. The
+ * requests are synchronous, so the limit of the OkHttp dispatcher (which only
+ * applies to the enqueued calls) doesn't apply to them; a permit is taken
+ * before the call and released once the response headers arrive, the body
+ * is read outside of the limit so long downloads don't hold the host.
+ */
+public final class HostLimiter {
+
+    private static final long CANCEL_CHECK_INTERVAL_MILLIS = 250;
+
+    private final int maxRequestsPerHost;
+    private final ConcurrentMap<String, Semaphore> hosts;
+
+    public HostLimiter(int maxRequestsPerHost) {
+        if (maxRequestsPerHost <= 0) {
+            throw new IllegalArgumentException("Invalid max requests per host: " + maxRequestsPerHost);
+        }
+        this.maxRequestsPerHost = maxRequestsPerHost;
+        this.hosts = new ConcurrentHashMap<String, Semaphore>();
+    }
+
+    public int getMaxRequestsPerHost() {
+        return maxRequestsPerHost;
+    }
+
+    /**
+     * Waits for a permit for the host of the url, giving up as soon as the
+     * client is canceled.
+     *
+     * @return the permit to pass to {@link #release(Semaphore)}, or null if
+     * the client was canceled or the url has no host (the request fails later
+     * with a proper error)
+     */
+    public Semaphore acquire(String url, HttpClient client) throws InterruptedIOException {
+        String host = host(url);
+        if (host == null) {
+            return null;
+        }
+
+        Semaphore permits = hosts.get(host);
+        if (permits == null) {
+            Semaphore newPermits = new Semaphore(maxRequestsPerHost, true);
+            permits = hosts.putIfAbsent(host, newPermits);
+            if (permits == null) {
+                permits = newPermits;
+            }
+        }
+
+        try {
+            while (!client.isCanceled()) {
+                if (permits.tryAcquire(CANCEL_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return permits;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a request slot to " + host);
+        }
+        return null;
+    }
+
+    public void release(Semaphore permit) {
+        if (permit != null) {
+            permit.release();
+        }
+    }
+
+    private static String host(String url) {
+        try {
+            String host = new URL(url).getHost();
+            return host != null && host.length() > 0 ? host.toLowerCase(Locale.US) : null;
+        } catch (MalformedURLException e) {
+            return null;
+        }
+    }
+}
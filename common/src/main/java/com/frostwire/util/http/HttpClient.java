@@ -19,6 +19,7 @@ package com.frostwire.util.http;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Map;
 
@@ -75,6 +76,14 @@ public interface HttpClient {
 
     void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException;
 
+    /**
+     * Writes the inclusive byte range [rangeStart, rangeEnd] of the resource to the given stream,
+     * the stream is not closed.
+     *
+     * @throws RangeNotSupportedException if the server doesn't answer with a partial content response
+     */
+    void save(String url, OutputStream out, long rangeStart, long rangeEnd, int timeout, String userAgent) throws IOException;
+
     String post(String url, int timeout, String userAgent, Map<String, String> formData) throws IOException;
 
     String post(String url, int timeout, String userAgent, String content, boolean gzip) throws IOException;
@@ -113,6 +113,52 @@ public final class JdkHttpClient extends AbstractHttpClient {
         }
     }
 
+    @Override
+    public void save(String url, OutputStream out, long rangeStart, long rangeEnd, int timeout, String userAgent) throws IOException {
+        canceled = false;
+        final HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+
+        conn.setConnectTimeout(timeout);
+        conn.setReadTimeout(timeout);
+        conn.setRequestProperty("User-Agent", userAgent != null ? userAgent : DEFAULT_USER_AGENT);
+        conn.setInstanceFollowRedirects(true);
+
+        if (conn instanceof HttpsURLConnection) {
+            setHostnameVerifier((HttpsURLConnection) conn);
+        }
+
+        conn.setRequestProperty("Range", "bytes=" + rangeStart + "-" + rangeEnd);
+
+        InputStream in = null;
+
+        try {
+            int httpResponseCode = getResponseCode(conn);
+            if (httpResponseCode != HttpURLConnection.HTTP_PARTIAL) {
+                throw new RangeNotSupportedException("Server does not support bytes range request, response code: " + httpResponseCode);
+            }
+            onHeaders(conn.getHeaderFields());
+
+            in = conn.getInputStream();
+            byte[] b = new byte[16384];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    out.write(b, 0, n);
+                    onData(b, 0, n);
+                }
+            }
+
+            if (canceled) {
+                onCancel();
+            } else {
+                onComplete();
+            }
+        } finally {
+            closeQuietly(in);
+            closeQuietly(conn);
+        }
+    }
+
     /**
      * Post a form Content-type: application/x-www-form-urlencoded
      */
@@ -33,9 +33,12 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
 /** An OkHttpClient based HTTP Client.
@@ -45,10 +48,18 @@ import java.util.concurrent.TimeUnit;
 */
 public class OKHTTPClient extends AbstractHttpClient {
     private static final Logger LOG = Logger.getLogger(OKHTTPClient.class);
-    private final ThreadPool pool;
-
-    public OKHTTPClient(final ThreadPool pool) {
-        this.pool = pool;
+    private final OkHttpClient sharedClient;
+    private final HostLimiter hostLimiter;
+
+    /**
+     * @param sharedClient long lived client whose connection pool and dispatcher
+     *                     are shared by every request made through this instance,
+     *                     see {@link #newOkHttpClient(ThreadPool, ConnectionPool)}
+     * @param hostLimiter  limit of the requests to the same host, shared too
+     */
+    public OKHTTPClient(final OkHttpClient sharedClient, final HostLimiter hostLimiter) {
+        this.sharedClient = sharedClient;
+        this.hostLimiter = hostLimiter;
     }
 
     @Override
@@ -59,10 +70,13 @@ public class OKHTTPClient extends AbstractHttpClient {
         Request req = new Request.Builder().
                 url(url).
                 header("User-Agent", DEFAULT_USER_AGENT).
+                tag(this).
                 head().
                 build();
-        Response resp = okHttpClient.newCall(req).execute();
+        Response resp = execute(okHttpClient, req);
         copyMultiMap(resp.headers().toMultimap(), outputHeaders);
+        // release the connection back to the pool
+        closeQuietly(resp.body());
         return resp.code();
     }
 
@@ -97,9 +111,13 @@ public class OKHTTPClient extends AbstractHttpClient {
 
     @Override
     public void save(String url, File file, boolean resume, int timeout, String userAgent, String referrer) throws IOException {
+        if (canceled) {
+            onCancel();
+            return;
+        }
+
         FileOutputStream fos;
         long rangeStart;
-        canceled = false;
         if (resume && file.exists()) {
             fos = new FileOutputStream(file, true);
             rangeStart = file.length();
@@ -111,20 +129,83 @@ public class OKHTTPClient extends AbstractHttpClient {
         final OkHttpClient okHttpClient = newOkHttpClient();
         final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, referrer, null);
         addRangeHeader(rangeStart, -1, builder);
-        final Response response = getSyncResponse(okHttpClient, builder);
+        final Response response;
+        try {
+            response = getSyncResponse(okHttpClient, builder);
+        } catch (IOException e) {
+            if (canceled) {
+                closeQuietly(fos);
+                onCancel();
+                return;
+            }
+            throw e;
+        }
         final Headers headers = response.headers();
         onHeaders(headers);
         final InputStream in = response.body().byteStream();
 
-        byte[] b = new byte[4096];
-        int n;
-        while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
-            if (!canceled) {
-                fos.write(b, 0, n);
-                onData(b, 0, n);
+        try {
+            byte[] b = new byte[4096];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    fos.write(b, 0, n);
+                    onData(b, 0, n);
+                }
+            }
+        } finally {
+            closeQuietly(fos);
+            closeQuietly(in);
+        }
+        if (canceled) {
+            onCancel();
+        } else {
+            onComplete();
+        }
+    }
+
+    @Override
+    public void save(String url, OutputStream out, long rangeStart, long rangeEnd, int timeout, String userAgent) throws IOException {
+        if (canceled) {
+            onCancel();
+            return;
+        }
+
+        final OkHttpClient okHttpClient = newOkHttpClient();
+        final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, null, null);
+        addRangeHeader(rangeStart, rangeEnd, builder);
+        final Response response;
+        try {
+            response = getSyncResponse(okHttpClient, builder);
+        } catch (IOException e) {
+            if (canceled) {
+                onCancel();
+                return;
+            }
+            throw e;
+        }
+
+        if (response.code() != HttpURLConnection.HTTP_PARTIAL) {
+            closeQuietly(response.body());
+            throw new RangeNotSupportedException("Server does not support bytes range request, response code: " + response.code());
+        }
+
+        onHeaders(response.headers());
+        final InputStream in = response.body().byteStream();
+
+        try {
+            byte[] b = new byte[16384];
+            int n;
+            while (!canceled && (n = in.read(b, 0, b.length)) != -1) {
+                if (!canceled) {
+                    out.write(b, 0, n);
+                    onData(b, 0, n);
+                }
             }
+        } finally {
+            closeQuietly(in);
         }
-        closeQuietly(fos);
+
         if (canceled) {
             onCancel();
         } else {
@@ -132,6 +213,16 @@ public class OKHTTPClient extends AbstractHttpClient {
         }
     }
 
+    /**
+     * Besides flagging the transfer as canceled, aborts any request made by
+     * this instance that is still waiting for its response.
+     */
+    @Override
+    public void cancel() {
+        super.cancel();
+        sharedClient.cancel(this);
+    }
+
     private void onHeaders(Headers headers) {
         if (getListener() != null) {
             try {
@@ -153,26 +244,26 @@ public class OKHTTPClient extends AbstractHttpClient {
     }
 
     private String post(String url, int timeout, String userAgent, String postContentType, byte[] postData, boolean gzip) throws IOException {
-        canceled = false;
         final OkHttpClient okHttpClient = newOkHttpClient();
         final Request.Builder builder = prepareRequestBuilder(okHttpClient, url, timeout, userAgent, null, null);
         final RequestBody requestBody = RequestBody.create(MediaType.parse(postContentType), postData);
         prepareOkHttpClientForPost(okHttpClient, gzip);
         builder.post(requestBody);
-        return getPostSyncResponse(builder);
+        return getPostSyncResponse(okHttpClient, builder);
     }
 
-    private String getPostSyncResponse(Request.Builder builder) throws IOException {
+    private String getPostSyncResponse(OkHttpClient okHttpClient, Request.Builder builder) throws IOException {
         String result = null;
-        final OkHttpClient okHttpClient = newOkHttpClient();
         final Response response = this.getSyncResponse(okHttpClient, builder);
         int httpResponseCode = response.code();
 
         if ((httpResponseCode != HttpURLConnection.HTTP_OK) && (httpResponseCode != HttpURLConnection.HTTP_PARTIAL)) {
+            closeQuietly(response.body());
             throw new ResponseCodeNotSupportedException(httpResponseCode);
         }
 
         if (canceled) {
+            closeQuietly(response.body());
             onCancel();
         } else {
             result = response.body().string();
@@ -219,6 +310,7 @@ public class OKHTTPClient extends AbstractHttpClient {
         okHttpClient.interceptors().clear();
         Request.Builder builder = new Request.Builder();
         builder.url(url);
+        builder.tag(this);
         if (!StringUtils.isNullOrEmpty(userAgent)) {
             builder.header("User-Agent", userAgent);
         }
@@ -244,22 +336,41 @@ public class OKHTTPClient extends AbstractHttpClient {
     }
 
     private Response getSyncResponse(OkHttpClient okHttpClient, Request.Builder builder) throws IOException {
-        final Request request = builder.build();
-        return okHttpClient.newCall(request).execute();
+        return execute(okHttpClient, builder.build());
+    }
+
+    /**
+     * Runs the call holding a permit of the host until the response headers
+     * arrive, see {@link HostLimiter}. A cancel while waiting for the permit
+     * fails the call like a cancel of the call itself.
+     */
+    private Response execute(OkHttpClient okHttpClient, Request request) throws IOException {
+        final Semaphore permit = hostLimiter.acquire(request.urlString(), this);
+        try {
+            if (canceled) {
+                throw new InterruptedIOException("Request canceled: " + request.urlString());
+            }
+            return okHttpClient.newCall(request).execute();
+        } finally {
+            hostLimiter.release(permit);
+        }
     }
 
+    /**
+     * Per request copy of the shared client, timeouts and interceptors can be
+     * changed freely while the connection pool and dispatcher stay shared.
+     */
     private OkHttpClient newOkHttpClient() {
-        return newOkHttpClient(pool);
+        return sharedClient.clone();
     }
 
-    public static OkHttpClient newOkHttpClient(ThreadPool pool) {
+    public static OkHttpClient newOkHttpClient(ThreadPool pool, ConnectionPool connectionPool) {
         OkHttpClient searchClient = new OkHttpClient();
         searchClient.setDispatcher(new Dispatcher(pool));
+        searchClient.setConnectionPool(connectionPool);
         searchClient.setFollowRedirects(true);
         searchClient.setFollowSslRedirects(true);
         searchClient.setConnectTimeout(DEFAULT_TIMEOUT, TimeUnit.MILLISECONDS);
-        // Maybe we should use a custom connection pool here. Using default.
-        //searchClient.setConnectionPool(?);
         return searchClient;
     }
 
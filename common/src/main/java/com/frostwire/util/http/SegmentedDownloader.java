@@ -0,0 +1,599 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.util.http;
+
+import com.frostwire.logging.Logger;
+import com.frostwire.util.HttpClientFactory;
+import com.frostwire.util.ThreadPool;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Downloads a single HTTP resource over several connections at once.
+ * <p>
+ * The file is split in ranges that are fetched in parallel and written in
+ * place into a preallocated file. A connection that finishes its range takes
+ * over half of the biggest range still pending, so a slow connection doesn't
+ * hold back the end of the download. The ranges progress is saved next to the
+ * file, allowing a later resume.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class SegmentedDownloader {
+
+    private static final Logger LOG = Logger.getLogger(SegmentedDownloader.class);
+
+    private static final int STATE_VERSION = 1;
+
+    private static final int DEFAULT_MAX_SEGMENTS = 4;
+    private static final long MIN_SEGMENTED_SIZE = 4 * 1024 * 1024; // 4MB
+    private static final long MIN_SPLIT_SIZE = 1024 * 1024; // 1MB
+    private static final int MAX_REDIRECTS = 5;
+    private static final int MAX_ATTEMPTS_PER_SEGMENT = 3;
+    private static final int TIMEOUT = 10000;
+    private static final int STATE_SAVE_INTERVAL = 2000; // milliseconds
+
+    private static final ExecutorService executor = ThreadPool.newThreadPool("SegmentedDownloader", true);
+
+    private final File file;
+    private final File stateFile;
+    private final int maxSegments;
+    private final Listener listener;
+
+    // guarded by itself
+    private final List<Segment> segments;
+    // guarded by itself
+    private final List<HttpClient> clients;
+
+    private String url;
+    private long size;
+    private volatile boolean canceled;
+
+    public SegmentedDownloader(String url, File file, int maxSegments, Listener listener) {
+        this.url = url;
+        this.file = file;
+        this.stateFile = getStateFile(file);
+        this.maxSegments = maxSegments;
+        this.listener = listener;
+        this.segments = new ArrayList<Segment>();
+        this.clients = new ArrayList<HttpClient>();
+        this.size = -1;
+    }
+
+    public SegmentedDownloader(String url, File file, Listener listener) {
+        this(url, file, DEFAULT_MAX_SEGMENTS, listener);
+    }
+
+    /**
+     * Checks with a HEAD request (following redirects) that the server
+     * accepts byte ranges and reports a size worth splitting.
+     */
+    public boolean probe() {
+        try {
+            HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
+            for (int i = 0; i < MAX_REDIRECTS; i++) {
+                Map<String, List<String>> headers = new HashMap<String, List<String>>();
+                int code = client.head(url, TIMEOUT, headers);
+
+                if (isRedirect(code)) {
+                    String location = header(headers, "Location");
+                    if (location == null) {
+                        return false;
+                    }
+                    url = new URL(new URL(url), location).toString();
+                    continue;
+                }
+
+                if (code != HttpURLConnection.HTTP_OK) {
+                    return false;
+                }
+
+                String acceptRanges = header(headers, "Accept-Ranges");
+                String contentLength = header(headers, "Content-Length");
+                if (acceptRanges == null || !acceptRanges.contains("bytes") || contentLength == null) {
+                    return false;
+                }
+
+                size = Long.parseLong(contentLength.trim());
+                return size >= MIN_SEGMENTED_SIZE;
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to probe for segmented download: " + url + ", e=" + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * @return the size reported by {@link #probe()}, -1 if unknown
+     */
+    public long getSize() {
+        return size;
+    }
+
+    public long getBytesDownloaded() {
+        long r = 0;
+        synchronized (segments) {
+            for (Segment s : segments) {
+                r += s.downloaded();
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return the length of the fully written prefix of the file, useful to
+     * consume the data sequentially while the download is in progress
+     */
+    public long getContiguousBytes() {
+        long prefix = 0;
+        synchronized (segments) {
+            boolean advanced = true;
+            while (advanced) {
+                advanced = false;
+                for (Segment s : segments) {
+                    if (s.start == prefix && s.position > prefix) {
+                        prefix = s.position;
+                        advanced = s.isDone();
+                        break;
+                    }
+                }
+            }
+        }
+        return prefix;
+    }
+
+    /**
+     * Downloads the file, blocking until it's done, canceled or failed. It
+     * must be called after a successful {@link #probe()}.
+     *
+     * @param resume continue from the saved ranges, if there are any
+     * @return true if the file was completely downloaded, false if canceled
+     */
+    public boolean download(boolean resume) throws IOException {
+        if (size <= 0) {
+            throw new IllegalStateException("Segmented download without a known size, call probe() first");
+        }
+
+        if (!(resume && loadState())) {
+            createSegments();
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            if (raf.length() != size) {
+                raf.setLength(size);
+            }
+            FileChannel channel = raf.getChannel();
+
+            List<Future<?>> workers = new ArrayList<Future<?>>();
+            synchronized (segments) {
+                for (Segment s : segments) {
+                    if (!s.isDone()) {
+                        s.owned = true;
+                        workers.add(executor.submit(new Worker(s, channel)));
+                    }
+                }
+            }
+
+            IOException error = null;
+            boolean interrupted = false;
+            for (int i = 0; i < workers.size() && !interrupted; ) {
+                try {
+                    workers.get(i).get(STATE_SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+                    i++;
+                } catch (TimeoutException e) {
+                    saveState();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e.getCause());
+                    }
+                    // no point in downloading the rest, the state is saved for a later resume
+                    cancel();
+                    i++;
+                } catch (InterruptedException e) {
+                    cancel();
+                    interrupted = true;
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            try {
+                raf.close();
+            } finally {
+                saveState();
+            }
+        }
+
+        if (canceled) {
+            return false;
+        }
+
+        synchronized (segments) {
+            for (Segment s : segments) {
+                if (!s.isDone()) {
+                    throw new IOException("Segmented download finished with missing data: " + url);
+                }
+            }
+        }
+
+        deleteState();
+        return true;
+    }
+
+    public void cancel() {
+        canceled = true;
+        synchronized (clients) {
+            for (HttpClient c : clients) {
+                c.cancel();
+            }
+        }
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public void deleteState() {
+        if (stateFile.exists() && !stateFile.delete()) {
+            stateFile.deleteOnExit();
+        }
+    }
+
+    /**
+     * The file, next to the download, where the ranges progress is saved.
+     */
+    public static File getStateFile(File file) {
+        return new File(file.getParentFile(), file.getName() + ".segments");
+    }
+
+    private void createSegments() {
+        int n = (int) Math.max(1, Math.min(maxSegments, size / MIN_SPLIT_SIZE));
+        long length = size / n;
+
+        synchronized (segments) {
+            segments.clear();
+            for (int i = 0; i < n; i++) {
+                long start = i * length;
+                long end = (i == n - 1) ? size - 1 : start + length - 1;
+                segments.add(new Segment(start, start, end));
+            }
+        }
+    }
+
+    /**
+     * Picks a range nobody is working on or, if there's none, splits the
+     * biggest range in progress and takes its second half.
+     */
+    private Segment nextSegment() {
+        synchronized (segments) {
+            Segment biggest = null;
+            long biggestRemaining = 0;
+
+            for (Segment s : segments) {
+                if (s.isDone()) {
+                    continue;
+                }
+                if (!s.owned) {
+                    s.owned = true;
+                    return s;
+                }
+                long remaining = s.remaining();
+                if (remaining > biggestRemaining) {
+                    biggest = s;
+                    biggestRemaining = remaining;
+                }
+            }
+
+            if (biggest != null && biggestRemaining >= 2 * MIN_SPLIT_SIZE) {
+                Segment stolen = biggest.split();
+                if (stolen != null) {
+                    stolen.owned = true;
+                    segments.add(stolen);
+                    return stolen;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    private void downloadSegment(Segment s, FileChannel channel) throws IOException {
+        int attempts = 0;
+
+        while (!canceled && !s.isDone()) {
+            HttpClient client = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
+            synchronized (clients) {
+                clients.add(client);
+            }
+
+            try {
+                long position = s.position;
+                client.save(url, new SegmentOutputStream(s, channel), s.position, s.end, TIMEOUT, null);
+
+                if (!canceled && !s.isDone() && s.position == position) {
+                    throw new IOException("No data received for range " + position + "-" + s.end);
+                }
+            } catch (StopException e) {
+                // range shortened by a split or download canceled
+            } catch (HttpClient.HttpRangeException e) {
+                throw e;
+            } catch (IOException e) {
+                if (canceled) {
+                    break;
+                }
+                if (++attempts >= MAX_ATTEMPTS_PER_SEGMENT) {
+                    throw e;
+                }
+                LOG.info("Retrying range " + s.position + "-" + s.end + " of " + url + ", e=" + e.getMessage());
+            } finally {
+                synchronized (clients) {
+                    clients.remove(client);
+                }
+            }
+        }
+    }
+
+    private boolean loadState() {
+        if (!stateFile.exists() || !file.exists() || file.length() != size) {
+            return false;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(stateFile)));
+
+            if (in.readInt() != STATE_VERSION || in.readLong() != size) {
+                return false;
+            }
+
+            int n = in.readInt();
+            List<Segment> list = new ArrayList<Segment>(n);
+            for (int i = 0; i < n; i++) {
+                long start = in.readLong();
+                long position = in.readLong();
+                long end = in.readLong();
+                if (start < 0 || position < start || end >= size) {
+                    return false;
+                }
+                list.add(new Segment(start, position, end));
+            }
+
+            synchronized (segments) {
+                segments.clear();
+                segments.addAll(list);
+            }
+            return true;
+        } catch (Throwable e) {
+            LOG.warn("Unable to load segmented download state: " + stateFile + ", e=" + e.getMessage());
+            return false;
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private void saveState() {
+        File tmp = new File(stateFile.getParentFile(), stateFile.getName() + ".tmp");
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)));
+
+            out.writeInt(STATE_VERSION);
+            out.writeLong(size);
+            synchronized (segments) {
+                out.writeInt(segments.size());
+                for (Segment s : segments) {
+                    synchronized (s) {
+                        out.writeLong(s.start);
+                        out.writeLong(s.position);
+                        out.writeLong(s.end);
+                    }
+                }
+            }
+            out.close();
+            out = null;
+
+            if (stateFile.exists() && !stateFile.delete()) {
+                LOG.warn("Unable to replace segmented download state: " + stateFile);
+            }
+            if (!tmp.renameTo(stateFile)) {
+                LOG.warn("Unable to save segmented download state: " + stateFile);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to save segmented download state: " + stateFile + ", e=" + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+        }
+    }
+
+    private static boolean isRedirect(int code) {
+        return code == HttpURLConnection.HTTP_MOVED_PERM ||
+                code == HttpURLConnection.HTTP_MOVED_TEMP ||
+                code == HttpURLConnection.HTTP_SEE_OTHER ||
+                code == 307 || code == 308;
+    }
+
+    private static String header(Map<String, List<String>> headers, String name) {
+        for (Map.Entry<String, List<String>> e : headers.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey()) && e.getValue() != null && !e.getValue().isEmpty()) {
+                return e.getValue().get(0);
+            }
+        }
+        return null;
+    }
+
+    public interface Listener {
+
+        /**
+         * Called from the connection threads every time data is written to the file.
+         */
+        void onData(SegmentedDownloader downloader, int length);
+    }
+
+    /**
+     * A byte range of the file, start and end are inclusive. The end of a
+     * range in progress can move backwards when another connection splits it.
+     */
+    private static final class Segment {
+
+        private final long start;
+        private volatile long position;
+        private volatile long end;
+
+        // guarded by the downloader segments list
+        private boolean owned;
+
+        public Segment(long start, long position, long end) {
+            this.start = start;
+            this.position = position;
+            this.end = end;
+        }
+
+        public boolean isDone() {
+            return position > end;
+        }
+
+        public long remaining() {
+            return end - position + 1;
+        }
+
+        public long downloaded() {
+            return position - start;
+        }
+
+        public synchronized Segment split() {
+            long remaining = remaining();
+            if (remaining < 2 * MIN_SPLIT_SIZE) {
+                return null;
+            }
+            long mid = position + remaining / 2;
+            Segment s = new Segment(mid, mid, end);
+            end = mid - 1;
+            return s;
+        }
+
+        /**
+         * Writes at the current position and returns the number of bytes that
+         * fit in the range.
+         */
+        public synchronized int write(FileChannel channel, byte[] b, int off, int len) throws IOException {
+            int n = (int) Math.min(len, remaining());
+            if (n > 0) {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, n);
+                long p = position;
+                while (buffer.hasRemaining()) {
+                    p += channel.write(buffer, p);
+                }
+                position = p;
+            }
+            return n;
+        }
+    }
+
+    private final class SegmentOutputStream extends OutputStream {
+
+        private final Segment segment;
+        private final FileChannel channel;
+
+        public SegmentOutputStream(Segment segment, FileChannel channel) {
+            this.segment = segment;
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (canceled) {
+                throw new StopException();
+            }
+
+            int n = segment.write(channel, b, off, len);
+            if (n > 0 && listener != null) {
+                try {
+                    listener.onData(SegmentedDownloader.this, n);
+                } catch (Throwable e) {
+                    LOG.warn("Error notifying segmented download data: " + e.getMessage());
+                }
+            }
+
+            if (n < len || segment.isDone()) {
+                throw new StopException();
+            }
+        }
+    }
+
+    private final class Worker implements Callable<Void> {
+
+        private final Segment first;
+        private final FileChannel channel;
+
+        public Worker(Segment first, FileChannel channel) {
+            this.first = first;
+            this.channel = channel;
+        }
+
+        @Override
+        public Void call() throws IOException {
+            Segment s = first;
+            while (s != null && !canceled) {
+                downloadSegment(s, channel);
+                s = nextSegment();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Thrown from the output stream to stop a connection early.
+     */
+    private static final class StopException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+    }
+}
@@ -25,8 +25,11 @@ import org.limewire.util.FileUtils;
 import java.io.File;
 import java.sql.*;
 import java.util.ArrayList;
-import java.util.LinkedList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public class LibraryDatabase {
 
@@ -34,13 +37,41 @@ public class LibraryDatabase {
     public static final int OBJECT_INVALID_ID = -2;
     public static final int STARRED_PLAYLIST_ID = -3;
     public static final int LIBRARY_DATABASE_VERSION = 4;
+
+    /**
+     * Number of extra connections used to run queries concurrently with the
+     * main connection.
+     */
+    private static final int READER_CONNECTIONS = 2;
+
+    private static final RowMapper<List<Object>> ROW_LIST_MAPPER = new RowMapper<List<Object>>() {
+        @Override
+        public List<Object> map(ResultSet resultSet) throws SQLException {
+            int numColumns = resultSet.getMetaData().getColumnCount();
+            List<Object> row = new ArrayList<>(numColumns);
+            for (int i = 1; i <= numColumns; i++) {
+                row.add(resultSet.getObject(i));
+            }
+            return row;
+        }
+    };
     
     private final File _databaseFile;
     private final String _name;
     
     private Connection _connection;
 
-    private boolean _closed;
+    /**
+     * Prepared statements of the main connection, keyed by their sql.
+     */
+    private final Map<String, PreparedStatement> _statements = new HashMap<>();
+
+    /**
+     * Idle reader connections, empty if the database doesn't support them.
+     */
+    private final Queue<Reader> _readers = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean _closed;
 
     static {
         try {
@@ -59,6 +90,7 @@ public class LibraryDatabase {
             _databaseFile = databaseFile;
             _name = databaseFile.getName();
             _connection = openOrCreateDatabase(databaseFile, _name);
+            openReaders(databaseFile, _name);
         } else
             throw new IllegalArgumentException("Invalid database file parameter received: " + databaseFile.getAbsolutePath());
     }
@@ -71,12 +103,38 @@ public class LibraryDatabase {
         return _closed;
     }
 
-    public synchronized List<List<Object>> query(String statementSql, Object... arguments) {
+    public List<List<Object>> query(String statementSql, Object... arguments) {
+        return query(ROW_LIST_MAPPER, statementSql, arguments);
+    }
+
+    /**
+     * Runs the query mapping each row as it's read. When a reader connection is idle
+     * the query runs on it without waiting for the database lock, seeing only committed
+     * data; otherwise, or if the calling thread holds the lock (i.e. inside
+     * {@link #runInTransaction(Runnable)}), it runs on the main connection.
+     */
+    public <T> List<T> query(RowMapper<T> mapper, String statementSql, Object... arguments) {
         if (isClosed()) {
             return new ArrayList<>();
         }
 
-        return query(_connection, statementSql, arguments);
+        Reader reader = Thread.holdsLock(this) ? null : _readers.poll();
+
+        if (reader == null) {
+            synchronized (this) {
+                if (isClosed()) {
+                    return new ArrayList<>();
+                }
+
+                return query(_connection, _statements, mapper, statementSql, arguments);
+            }
+        }
+
+        try {
+            return query(reader.connection, reader.statements, mapper, statementSql, arguments);
+        } finally {
+            releaseReader(reader);
+        }
     }
 
     /**
@@ -100,15 +158,154 @@ public class LibraryDatabase {
             return OBJECT_INVALID_ID;
         }
 
-        if (!statementSql.toUpperCase().startsWith("INSERT")) {
+        if (!isInsert(statementSql)) {
             return OBJECT_INVALID_ID;
         }
 
-        if (update(statementSql, arguments) != -1) {
-            return getIdentity();
+        return insert(_connection, statementSql, arguments);
+    }
+
+    /**
+     * Inserts one row per element of <code>rows</code> with a single JDBC batch and
+     * returns the generated ids in the same order, or <code>null</code> if the batch
+     * failed. If no transaction is in progress the batch runs in its own.
+     * <p>
+     * The H2 driver only reports the key of the last row of a batch, so the ids are
+     * read back with <code>idsQuery</code>, which must return the ids of the inserted
+     * rows in the order of <code>rows</code>.
+     */
+    public synchronized int[] insertBatch(String statementSql, List<Object[]> rows, String idsQuery, Object... idsArguments) {
+        if (isClosed() || !isInsert(statementSql)) {
+            return null;
         }
 
-        return OBJECT_INVALID_ID;
+        if (rows.isEmpty()) {
+            return new int[0];
+        }
+
+        PreparedStatement statement = null;
+        boolean transaction = false;
+        int[] result = null;
+
+        try {
+            transaction = beginTransaction();
+            statement = prepareStatement(_connection, _statements, statementSql);
+
+            for (Object[] arguments : rows) {
+                setArguments(statement, arguments);
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+
+            int[] ids = new int[rows.size()];
+            int n = 0;
+
+            ResultSet keys = statement.getGeneratedKeys();
+            try {
+                while (n < ids.length && keys.next()) {
+                    ids[n++] = keys.getInt(1);
+                }
+            } finally {
+                keys.close();
+            }
+
+            if (n != ids.length) {
+                List<List<Object>> inserted = query(_connection, idsQuery, idsArguments);
+                if (inserted.size() != ids.length) {
+                    throw new SQLException("Inserted " + ids.length + " rows but read back " + inserted.size() + " ids");
+                }
+                for (int i = 0; i < ids.length; i++) {
+                    ids[i] = ((Number) inserted.get(i).get(0)).intValue();
+                }
+            }
+
+            result = ids;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseStatement(_statements, statementSql, statement, result == null);
+            if (!endTransaction(transaction, result != null)) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Executes the statement once per element of <code>rows</code> with a single
+     * JDBC batch and returns the update counts, or <code>null</code> if the batch
+     * failed. If no transaction is in progress the batch runs in its own.
+     */
+    public synchronized int[] updateBatch(String statementSql, List<Object[]> rows) {
+        if (isClosed()) {
+            return null;
+        }
+
+        if (rows.isEmpty()) {
+            return new int[0];
+        }
+
+        PreparedStatement statement = null;
+        boolean transaction = false;
+        int[] result = null;
+
+        try {
+            transaction = beginTransaction();
+            statement = prepareStatement(_connection, _statements, statementSql);
+
+            for (Object[] arguments : rows) {
+                setArguments(statement, arguments);
+                statement.addBatch();
+            }
+
+            result = statement.executeBatch();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseStatement(_statements, statementSql, statement, result == null);
+            if (!endTransaction(transaction, result != null)) {
+                result = null;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Runs the task holding the database lock inside a single transaction. The
+     * transaction is committed when the task returns and rolled back if it throws.
+     * Nested calls join the outer transaction.
+     *
+     * @return <code>true</code> if the task completed and the transaction was committed
+     */
+    public synchronized boolean runInTransaction(Runnable task) {
+        if (isClosed()) {
+            return false;
+        }
+
+        boolean transaction = false;
+        boolean failed = true;
+
+        try {
+            transaction = beginTransaction();
+            task.run();
+            failed = false;
+        } catch (RuntimeException e) {
+            if (!transaction) {
+                throw e; // let the outer transaction roll back
+            }
+            e.printStackTrace();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        } finally {
+            if (!endTransaction(transaction, !failed)) {
+                failed = true;
+            }
+        }
+
+        return !failed;
     }
 
     public synchronized void close() {
@@ -118,6 +315,13 @@ public class LibraryDatabase {
 
         _closed = true;
 
+        Reader reader;
+        while ((reader = _readers.poll()) != null) {
+            reader.close();
+        }
+
+        closeStatements(_statements);
+
         try {
             Statement statement = _connection.createStatement();
             statement.execute("SHUTDOWN");
@@ -218,23 +422,6 @@ public class LibraryDatabase {
         return connection;
     }
 
-    private List<List<Object>> convertResultSetToList(ResultSet resultSet) throws SQLException {
-        ResultSetMetaData meta = resultSet.getMetaData();
-        int numColums = meta.getColumnCount();
-        int i;
-
-        List<List<Object>> result = new LinkedList<>();
-
-        while (resultSet.next()) {
-            List<Object> row = new ArrayList<>(numColums);
-            for (i = 1; i <= numColums; i++) {
-                row.add(resultSet.getObject(i));
-            }
-            result.add(row);
-        }
-        return result;
-    }
-
     private int getIdentity() {
         if (isClosed()) {
             return OBJECT_INVALID_ID;
@@ -265,61 +452,249 @@ public class LibraryDatabase {
     }
 
     private List<List<Object>> query(Connection connection, String statementSql, Object... arguments) {
+        return query(connection, statementCache(connection), ROW_LIST_MAPPER, statementSql, arguments);
+    }
+
+    private <T> List<T> query(Connection connection, Map<String, PreparedStatement> cache, RowMapper<T> mapper, String statementSql, Object... arguments) {
         PreparedStatement statement = null;
-        ResultSet resultSet;
+        boolean failed = true;
 
         try {
-            statement = connection.prepareStatement(statementSql);
-
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
+            statement = prepareStatement(connection, cache, statementSql);
+            setArguments(statement, arguments);
+
+            ResultSet resultSet = statement.executeQuery();
+            try {
+                List<T> result = new ArrayList<>();
+                while (resultSet.next()) {
+                    T obj = mapper.map(resultSet);
+                    if (obj != null) {
+                        result.add(obj);
+                    }
                 }
+                failed = false;
+                return result;
+            } finally {
+                resultSet.close();
             }
-
-            resultSet = statement.executeQuery();
-
-            return convertResultSetToList(resultSet);
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ignored) {
-                }
-            }
+            releaseStatement(cache, statementSql, statement, failed);
         }
 
         return new ArrayList<>();
     }
 
     private int update(Connection connection, String statementSql, Object... arguments) {
-
         PreparedStatement statement = null;
+        boolean failed = true;
 
         try {
-            statement = connection.prepareStatement(statementSql);
+            statement = prepareStatement(connection, statementCache(connection), statementSql);
+            setArguments(statement, arguments);
+
+            int count = statement.executeUpdate();
+            failed = false;
+            return count;
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            releaseStatement(statementCache(connection), statementSql, statement, failed);
+        }
+
+        return -1;
+    }
+
+    private int insert(Connection connection, String statementSql, Object... arguments) {
+        PreparedStatement statement = null;
+        boolean failed = true;
 
-            if (arguments != null) {
-                for (int i = 0; i < arguments.length; i++) {
-                    statement.setObject(i + 1, arguments[i]);
+        try {
+            statement = prepareStatement(connection, statementCache(connection), statementSql);
+            setArguments(statement, arguments);
+            statement.executeUpdate();
+            failed = false;
+
+            ResultSet keys = statement.getGeneratedKeys();
+            try {
+                if (keys.next()) {
+                    return keys.getInt(1);
                 }
+            } finally {
+                keys.close();
             }
 
-            return statement.executeUpdate();
+            return getIdentity();
         } catch (Exception e) {
             e.printStackTrace();
         } finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                } catch (SQLException ignored) {
-                }
+            releaseStatement(statementCache(connection), statementSql, statement, failed);
+        }
+
+        return OBJECT_INVALID_ID;
+    }
+
+    /**
+     * Statements of the main connection are cached and reused, connections opened
+     * while creating or upgrading the database have no cache.
+     */
+    private Map<String, PreparedStatement> statementCache(Connection connection) {
+        return connection == _connection ? _statements : null;
+    }
+
+    /**
+     * Returns the cached statement for the sql, preparing and caching it if needed.
+     * Without a cache the statement is new and {@link #releaseStatement} closes it.
+     */
+    private PreparedStatement prepareStatement(Connection connection, Map<String, PreparedStatement> cache, String statementSql) throws SQLException {
+        if (cache == null) {
+            return newStatement(connection, statementSql);
+        }
+
+        PreparedStatement statement = cache.get(statementSql);
+        if (statement == null) {
+            statement = newStatement(connection, statementSql);
+            cache.put(statementSql, statement);
+        }
+
+        return statement;
+    }
+
+    private PreparedStatement newStatement(Connection connection, String statementSql) throws SQLException {
+        if (isInsert(statementSql)) {
+            return connection.prepareStatement(statementSql, Statement.RETURN_GENERATED_KEYS);
+        } else {
+            return connection.prepareStatement(statementSql);
+        }
+    }
+
+    /**
+     * Keeps a cached statement for the next use, unless it failed, in which case
+     * it's dropped from the cache and closed like any uncached statement.
+     */
+    private static void releaseStatement(Map<String, PreparedStatement> cache, String statementSql, PreparedStatement statement, boolean failed) {
+        if (statement == null) {
+            return;
+        }
+
+        if (cache != null) {
+            if (!failed) {
+                return;
             }
+            cache.remove(statementSql);
         }
 
-        return -1;
+        try {
+            statement.close();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private static void closeStatements(Map<String, PreparedStatement> cache) {
+        for (PreparedStatement statement : cache.values()) {
+            try {
+                statement.close();
+            } catch (SQLException ignored) {
+            }
+        }
+        cache.clear();
+    }
+
+    /**
+     * Opens the reader connections, only if the database uses multi-version concurrency,
+     * otherwise the table locks of a write transaction would make them wait anyway.
+     */
+    private void openReaders(File path, String name) {
+        if (_connection == null || !isMultiVersion(_connection)) {
+            return;
+        }
+
+        for (int i = 0; i < READER_CONNECTIONS; i++) {
+            Connection connection = openConnection(path, name, false);
+            if (connection != null) {
+                _readers.add(new Reader(connection));
+            }
+        }
+    }
+
+    private boolean isMultiVersion(Connection connection) {
+        List<List<Object>> result = query(connection, "SELECT VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE NAME = 'MVCC'");
+        return result.size() > 0 && "TRUE".equalsIgnoreCase(String.valueOf(result.get(0).get(0)));
+    }
+
+    private void releaseReader(Reader reader) {
+        if (isClosed()) {
+            reader.close();
+            return;
+        }
+
+        _readers.add(reader);
+
+        // close() could have drained the queue in the meantime
+        if (isClosed() && _readers.remove(reader)) {
+            reader.close();
+        }
+    }
+
+    private static void setArguments(PreparedStatement statement, Object[] arguments) throws SQLException {
+        if (arguments != null) {
+            for (int i = 0; i < arguments.length; i++) {
+                statement.setObject(i + 1, arguments[i]);
+            }
+        }
+    }
+
+    private static boolean isInsert(String statementSql) {
+        return statementSql.toUpperCase().startsWith("INSERT");
+    }
+
+    /**
+     * @return <code>true</code> if a new transaction was started, <code>false</code> if
+     * one was already in progress
+     */
+    private boolean beginTransaction() throws SQLException {
+        if (_connection.getAutoCommit()) {
+            _connection.setAutoCommit(false);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Commits or rolls back a transaction started by {@link #beginTransaction()}, does
+     * nothing if <code>started</code> is <code>false</code>.
+     *
+     * @return <code>false</code> if the transaction was rolled back or the commit failed
+     */
+    private boolean endTransaction(boolean started, boolean commit) {
+        if (!started) {
+            return commit;
+        }
+
+        try {
+            if (commit) {
+                _connection.commit();
+                return true;
+            } else {
+                _connection.rollback();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+            try {
+                _connection.rollback();
+            } catch (SQLException ignored) {
+            }
+        } finally {
+            try {
+                _connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+
+        return false;
     }
 
     private int getDatabaseVersion(Connection connection) {
@@ -351,4 +726,27 @@ public class LibraryDatabase {
             }
         }
     }
+
+    /**
+     * A connection used for queries by one thread at a time, with its own statement cache.
+     */
+    private static final class Reader {
+
+        private final Connection connection;
+        private final Map<String, PreparedStatement> statements;
+
+        Reader(Connection connection) {
+            this.connection = connection;
+            this.statements = new HashMap<>();
+        }
+
+        void close() {
+            closeStatements(statements);
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
 }
@@ -86,19 +86,16 @@ public class PlaylistDB {
     public static Playlist getStarredPlaylist(LibraryDatabase db) {
         String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred " + "FROM PlaylistItems WHERE starred = ?";
 
-        List<List<Object>> result = db.query(query, true);
-
         Playlist playlist = new Playlist(db, LibraryDatabase.STARRED_PLAYLIST_ID, "starred", "starred");
 
+        List<PlaylistItem> result = db.query(PlaylistItemDB.newMapper(playlist), query, true);
+
         List<PlaylistItem> items = new ArrayList<>(result.size());
         Set<String> paths = new HashSet<>();
 
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            if (!paths.contains(item.getFilePath())) {
+        for (PlaylistItem item : result) {
+            if (paths.add(item.getFilePath())) {
                 items.add(item);
-                paths.add(item.getFilePath());
             }
         }
 
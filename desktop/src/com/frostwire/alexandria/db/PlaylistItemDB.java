@@ -21,8 +21,12 @@ package com.frostwire.alexandria.db;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 public class PlaylistItemDB {
 
@@ -77,6 +81,49 @@ public class PlaylistItemDB {
         obj.setSortIndex(sortIndex);
     }
 
+    /**
+     * Fills the item from the current row of a result set with the columns of
+     * {@link #fill(List, PlaylistItem)}, sortIndex being optional.
+     */
+    public static void fill(ResultSet resultSet, PlaylistItem obj) throws SQLException {
+        obj.setId(resultSet.getInt(1));
+        obj.setFilePath(resultSet.getString(2));
+        obj.setFileName(resultSet.getString(3));
+        obj.setFileSize(resultSet.getLong(4));
+        obj.setFileExtension(resultSet.getString(5));
+        obj.setTrackTitle(resultSet.getString(6));
+        obj.setTrackDurationInSecs(resultSet.getFloat(7));
+        obj.setTrackArtist(resultSet.getString(8));
+        obj.setTrackAlbum(resultSet.getString(9));
+        obj.setCoverArtPath(resultSet.getString(10));
+        obj.setTrackBitrate(resultSet.getString(11));
+        obj.setTrackComment(resultSet.getString(12));
+        obj.setTrackGenre(resultSet.getString(13));
+        obj.setTrackNumber(resultSet.getString(14));
+        obj.setTrackYear(resultSet.getString(15));
+        obj.setStarred(resultSet.getBoolean(16));
+
+        int sortIndex = 0;
+        if (resultSet.getMetaData().getColumnCount() >= 17) {
+            sortIndex = resultSet.getInt(17); // 0 if null
+        }
+        obj.setSortIndex(sortIndex);
+    }
+
+    /**
+     * @return a mapper creating the items of the given playlist straight from the rows
+     */
+    public static RowMapper<PlaylistItem> newMapper(final Playlist playlist) {
+        return new RowMapper<PlaylistItem>() {
+            @Override
+            public PlaylistItem map(ResultSet resultSet) throws SQLException {
+                PlaylistItem item = new PlaylistItem(playlist);
+                fill(resultSet, item);
+                return item;
+            }
+        };
+    }
+
     public static void save(LibraryDatabase db, PlaylistItem obj) {
         if (obj.getId() == LibraryDatabase.OBJECT_INVALID_ID || obj.getPlaylist() == null) {
             return;
@@ -97,6 +144,73 @@ public class PlaylistItemDB {
         }
     }
 
+    /**
+     * Inserts new items into a playlist in a single transaction. The items take the
+     * positions starting at the 0-based <code>index</code>, or go to the end of the
+     * playlist if it's -1, and the sort indexes of the following items are shifted
+     * with one update. As with {@link #save(LibraryDatabase, PlaylistItem)}, the starred
+     * state is shared by all items with the same file path.
+     *
+     * @return <code>false</code> if nothing was inserted
+     */
+    public static boolean insertAll(final LibraryDatabase db, final Playlist playlist, final List<PlaylistItem> items, final int index) {
+        if (items.isEmpty()) {
+            return true;
+        }
+
+        return db.runInTransaction(new Runnable() {
+            @Override
+            public void run() {
+                int n = items.size();
+                int sortIndex;
+
+                if (index >= 0) {
+                    if (db.update("UPDATE PlaylistItems SET sortIndex = sortIndex + ? WHERE playlistId = ? AND sortIndex > ?", n, playlist.getId(), index) == -1) {
+                        throw new IllegalStateException("Unable to shift sort indexes of playlist " + playlist.getId());
+                    }
+                    sortIndex = index + 1;
+                } else {
+                    sortIndex = getMaxSortIndex(db, playlist) + 1;
+                }
+
+                Set<String> starredPaths = getStarredFilePaths(db);
+
+                List<Object[]> rows = new ArrayList<>(n);
+                List<Object[]> starredRows = new ArrayList<>();
+
+                for (int i = 0; i < n; i++) {
+                    PlaylistItem item = items.get(i);
+                    item.setSortIndex(sortIndex + i);
+
+                    if (starredPaths.contains(item.getFilePath())) {
+                        item.setStarred(true);
+                    } else if (item.isStarred()) {
+                        starredPaths.add(item.getFilePath());
+                        starredRows.add((Object[]) updateStarred(item)[1]);
+                    }
+
+                    rows.add((Object[]) createPlaylistItemInsert(item)[1]);
+                }
+
+                // the new items are the ones after the current last id, in the order of their sort indexes
+                int lastId = getMaxId(db);
+                int[] ids = db.insertBatch((String) createPlaylistItemInsert(items.get(0))[0], rows,
+                        "SELECT playlistItemId FROM PlaylistItems WHERE playlistId = ? AND playlistItemId > ? ORDER BY sortIndex ASC", playlist.getId(), lastId);
+                if (ids == null) {
+                    throw new IllegalStateException("Unable to insert items of playlist " + playlist.getId());
+                }
+
+                if (!starredRows.isEmpty() && db.updateBatch((String) updateStarred(items.get(0))[0], starredRows) == null) {
+                    throw new IllegalStateException("Unable to update starred items of playlist " + playlist.getId());
+                }
+
+                for (int i = 0; i < n; i++) {
+                    items.get(i).setId(ids[i]);
+                }
+            }
+        });
+    }
+
     public static void delete(LibraryDatabase db, PlaylistItem obj) {
         db.update("DELETE FROM PlaylistItems WHERE playlistItemId = ?", obj.getId());
     }
@@ -105,17 +219,7 @@ public class PlaylistItemDB {
         String query = "SELECT playlistItemId, filePath, fileName, fileSize, fileExtension, trackTitle, trackDurationInSecs, trackArtist, trackAlbum, coverArtPath, trackBitrate, trackComment, trackGenre, trackNumber, trackYear, starred, sortIndex "
                 + "FROM PlaylistItems WHERE playlistId = ? ORDER BY sortIndex ASC";
 
-        List<List<Object>> result = db.query(query, playlist.getId());
-
-        List<PlaylistItem> items = new ArrayList<>(result.size());
-
-        for (List<Object> row : result) {
-            PlaylistItem item = new PlaylistItem(playlist);
-            PlaylistItemDB.fill(row, item);
-            items.add(item);
-        }
-
-        return items;
+        return db.query(newMapper(playlist), query, playlist.getId());
     }
     
     private static Object[] createPlaylistItemInsert(PlaylistItem item) {
@@ -147,6 +251,35 @@ public class PlaylistItemDB {
         return new Object[] { sql, values };
     }
     
+    private static int getMaxSortIndex(LibraryDatabase db, Playlist playlist) {
+        List<List<Object>> result = db.query("SELECT MAX(sortIndex) FROM PlaylistItems WHERE playlistId = ?", playlist.getId());
+        if (result.size() > 0 && result.get(0).get(0) != null) {
+            return (Integer) result.get(0).get(0);
+        }
+
+        return 0;
+    }
+
+    private static int getMaxId(LibraryDatabase db) {
+        List<List<Object>> result = db.query("SELECT MAX(playlistItemId) FROM PlaylistItems");
+        if (result.size() > 0 && result.get(0).get(0) != null) {
+            return (Integer) result.get(0).get(0);
+        }
+
+        return -1;
+    }
+
+    private static Set<String> getStarredFilePaths(LibraryDatabase db) {
+        List<List<Object>> result = db.query("SELECT DISTINCT filePath FROM PlaylistItems WHERE starred = TRUE");
+
+        Set<String> paths = new HashSet<>(result.size());
+        for (List<Object> row : result) {
+            paths.add((String) row.get(0));
+        }
+
+        return paths;
+    }
+
     private static boolean isStarred(LibraryDatabase db, PlaylistItem item) {
         List<List<Object>> result = db
                 .query("SELECT starred FROM PlaylistItems WHERE filePath = ? LIMIT 1", item.getFilePath());
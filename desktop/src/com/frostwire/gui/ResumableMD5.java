@@ -0,0 +1,253 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.gui;
+
+import org.apache.commons.io.IOUtils;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * MD5 computed incrementally whose intermediate state can be saved to disk
+ * and loaded back, something {@link java.security.MessageDigest} can't do.
+ * It lets a download hash the data as it arrives and continue after a
+ * restart without reading the prefix of the file again.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public final class ResumableMD5 {
+
+    private static final int STATE_VERSION = 1;
+
+    private static final int[] S = {
+            7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22, 7, 12, 17, 22,
+            5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20, 5, 9, 14, 20,
+            4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23, 4, 11, 16, 23,
+            6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21, 6, 10, 15, 21};
+
+    private static final int[] K = new int[64];
+
+    static {
+        for (int i = 0; i < 64; i++) {
+            K[i] = (int) (long) ((1L << 32) * Math.abs(Math.sin(i + 1)));
+        }
+    }
+
+    private final int[] h;
+    private final byte[] buffer;
+    private final int[] x;
+    private long count;
+
+    public ResumableMD5() {
+        this.h = new int[]{0x67452301, 0xefcdab89, 0x98badcfe, 0x10325476};
+        this.buffer = new byte[64];
+        this.x = new int[16];
+        this.count = 0;
+    }
+
+    /**
+     * @return the number of bytes hashed so far
+     */
+    public long getCount() {
+        return count;
+    }
+
+    public void update(byte[] b, int off, int len) {
+        int index = (int) (count & 63);
+        count += len;
+
+        if (index > 0) {
+            int n = Math.min(64 - index, len);
+            System.arraycopy(b, off, buffer, index, n);
+            off += n;
+            len -= n;
+            if (index + n < 64) {
+                return;
+            }
+            transform(buffer, 0);
+        }
+
+        while (len >= 64) {
+            transform(b, off);
+            off += 64;
+            len -= 64;
+        }
+
+        if (len > 0) {
+            System.arraycopy(b, off, buffer, 0, len);
+        }
+    }
+
+    /**
+     * Hashes the bytes of the file from {@link #getCount()} up to <code>length</code>.
+     */
+    public void update(File file, long length) throws IOException {
+        if (length <= count) {
+            return;
+        }
+
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            raf.seek(count);
+            byte[] b = new byte[64 * 1024];
+            long remaining = length - count;
+            while (remaining > 0) {
+                int n = raf.read(b, 0, (int) Math.min(b.length, remaining));
+                if (n == -1) {
+                    throw new IOException("Unexpected end of file: " + file);
+                }
+                update(b, 0, n);
+                remaining -= n;
+            }
+        } finally {
+            IOUtils.closeQuietly(raf);
+        }
+    }
+
+    /**
+     * @return the digest of the data so far as 32 lowercase hex chars, the
+     * state is not modified so more data can be added after
+     */
+    public String getHexDigest() {
+        ResumableMD5 md = copy();
+
+        byte[] padding = new byte[72];
+        padding[0] = (byte) 0x80;
+        int index = (int) (count & 63);
+        int padLength = index < 56 ? 56 - index : 120 - index;
+        long bits = count << 3;
+        for (int i = 0; i < 8; i++) {
+            padding[padLength + i] = (byte) (bits >>> (8 * i));
+        }
+        md.update(padding, 0, padLength + 8);
+
+        StringBuilder sb = new StringBuilder(32);
+        for (int v : md.h) {
+            for (int i = 0; i < 4; i++) {
+                int b = (v >>> (8 * i)) & 0xff;
+                sb.append(Character.forDigit(b >>> 4, 16));
+                sb.append(Character.forDigit(b & 0x0f, 16));
+            }
+        }
+        return sb.toString();
+    }
+
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp));
+        try {
+            out.writeInt(STATE_VERSION);
+            out.writeLong(count);
+            for (int v : h) {
+                out.writeInt(v);
+            }
+            out.write(buffer, 0, (int) (count & 63));
+        } finally {
+            IOUtils.closeQuietly(out);
+        }
+        if ((file.exists() && !file.delete()) || !tmp.renameTo(file)) {
+            throw new IOException("Unable to save digest state to " + file);
+        }
+    }
+
+    /**
+     * @return the saved state, or null if the file is missing or invalid
+     */
+    public static ResumableMD5 load(File file) {
+        if (!file.exists()) {
+            return null;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new FileInputStream(file));
+            if (in.readInt() != STATE_VERSION) {
+                return null;
+            }
+            ResumableMD5 md = new ResumableMD5();
+            md.count = in.readLong();
+            if (md.count < 0) {
+                return null;
+            }
+            for (int i = 0; i < 4; i++) {
+                md.h[i] = in.readInt();
+            }
+            in.readFully(md.buffer, 0, (int) (md.count & 63));
+            return md;
+        } catch (IOException e) {
+            return null;
+        } finally {
+            IOUtils.closeQuietly(in);
+        }
+    }
+
+    private ResumableMD5 copy() {
+        ResumableMD5 md = new ResumableMD5();
+        System.arraycopy(h, 0, md.h, 0, 4);
+        System.arraycopy(buffer, 0, md.buffer, 0, 64);
+        md.count = count;
+        return md;
+    }
+
+    private void transform(byte[] block, int off) {
+        for (int i = 0; i < 16; i++) {
+            int j = off + i * 4;
+            x[i] = (block[j] & 0xff) | ((block[j + 1] & 0xff) << 8) |
+                    ((block[j + 2] & 0xff) << 16) | ((block[j + 3] & 0xff) << 24);
+        }
+
+        int a = h[0];
+        int b = h[1];
+        int c = h[2];
+        int d = h[3];
+
+        for (int i = 0; i < 64; i++) {
+            int f;
+            int g;
+            if (i < 16) {
+                f = (b & c) | (~b & d);
+                g = i;
+            } else if (i < 32) {
+                f = (d & b) | (~d & c);
+                g = (5 * i + 1) & 15;
+            } else if (i < 48) {
+                f = b ^ c ^ d;
+                g = (3 * i + 5) & 15;
+            } else {
+                f = c ^ (b | ~d);
+                g = (7 * i) & 15;
+            }
+            int t = d;
+            d = c;
+            c = b;
+            b = b + Integer.rotateLeft(a + f + K[i] + x[g], S[i]);
+            a = t;
+        }
+
+        h[0] += a;
+        h[1] += b;
+        h[2] += c;
+        h[3] += d;
+    }
+}
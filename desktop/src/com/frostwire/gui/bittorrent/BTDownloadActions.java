@@ -97,7 +97,8 @@ final class BTDownloadActions {
 
         public final void actionPerformed(ActionEvent e) {
             performAction(e);
-            BTDownloadMediator.instance().doRefresh();
+            BTDownloadMediator.instance().refreshLines();
+            GUIMediator.requestRefresh();
         }
 
         protected abstract void performAction(ActionEvent e);
@@ -81,6 +81,12 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
     private String license;
     private boolean notificationShown;
     private PaymentOptions paymentOptions;
+    private String displayName;
+
+    /**
+     * If the last update changed any of the values displayed.
+     */
+    private boolean changed;
     private static final List<LimeTableColumn> columns;
     private static final int COLUMN_COUNT;
     static final LimeTableColumn ACTIONS_COLUMN;
@@ -330,6 +336,23 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
      */
     @Override
     public void update() {
+        TransferState oldTransferState = transferState;
+        int oldProgress = progress;
+        long oldDownload = download;
+        long oldUpload = upload;
+        double oldDownloadSpeed = downloadSpeed;
+        double oldUploadSpeed = uploadSpeed;
+        long oldTimeLeft = timeLeft;
+        String oldSeeds = seeds;
+        String oldPeers = peers;
+        String oldShareRatio = shareRatio;
+        String oldSeedToPeerRatio = seedToPeerRatio;
+        long oldSize = size;
+        String oldDisplayName = displayName;
+        String oldLicense = license;
+        PaymentOptions oldPaymentOptions = paymentOptions;
+
+        displayName = initializer.getDisplayName();
         transferState = initializer.getState();
         progress = initializer.getProgress();
         download = initializer.getBytesReceived();
@@ -355,11 +378,31 @@ final class BTDownloadDataLine extends AbstractDataLine<BTDownload> {
             paymentOptions = initializer.getPaymentOptions();
         }
 
+        changed = transferState != oldTransferState || progress != oldProgress ||
+                download != oldDownload || upload != oldUpload ||
+                downloadSpeed != oldDownloadSpeed || uploadSpeed != oldUploadSpeed || timeLeft != oldTimeLeft ||
+                !equals(seeds, oldSeeds) || !equals(peers, oldPeers) ||
+                !equals(shareRatio, oldShareRatio) || !equals(seedToPeerRatio, oldSeedToPeerRatio) ||
+                size != oldSize || !equals(displayName, oldDisplayName) ||
+                !equals(license, oldLicense) || paymentOptions != oldPaymentOptions;
+
         if (getInitializeObject().isCompleted()) {
             showNotification();
         }
     }
 
+    /**
+     * Returns whether the last {@link #update()} changed any of the values
+     * displayed by this line.
+     */
+    public boolean hasChanged() {
+        return changed;
+    }
+
+    private static boolean equals(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equals(s2);
+    }
+
     private void showNotification() {
         if (!notificationShown) {
             notificationShown = true;
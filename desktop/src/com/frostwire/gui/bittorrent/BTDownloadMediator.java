@@ -102,6 +102,12 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
 
     private PlaySingleMediaFileAction playSingleMediaFileAction;
 
+    /**
+     * Set when the last refresh didn't change any row, the resort that
+     * follows it is skipped.
+     */
+    private boolean skipResort;
+
     /**
      * Overriden to have different default values for tooltips.
      */
@@ -206,10 +212,34 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
 
     /**
      * Override the default refreshing so that we can
-     * set the clear button appropriately.
+     * set the clear button appropriately, and skip the resort
+     * if no row changed.
      */
     public void doRefresh() {
-        DATA_MODEL.refresh();
+        int changed = refreshLines();
+        skipResort = changed == 0;
+        if (changed > 0) {
+            GUIMediator.requestRefresh();
+        }
+    }
+
+    @Override
+    public void resort() {
+        boolean skip = skipResort;
+        skipResort = false;
+        if (!skip) {
+            super.resort();
+        }
+    }
+
+    /**
+     * Updates the lines and the actions.
+     *
+     * @return the number of rows changed
+     */
+    int refreshLines() {
+        Object result = DATA_MODEL.refresh();
+        int changed = result instanceof Integer ? (Integer) result : DATA_MODEL.getRowCount();
 
         int[] selRows = TABLE.getSelectedRows();
 
@@ -237,6 +267,8 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
         }
 
         clearInactiveAction.setEnabled(anyClearable);
+
+        return changed;
     }
 
     public int getActiveDownloads() {
@@ -713,7 +745,7 @@ public final class BTDownloadMediator extends AbstractTableMediator<BTDownloadRo
                 public void run() {
                     if (isDownloading(sr.getDownloadUrl())) {
                         DATA_MODEL.remove(sr.getDownloadUrl());
-                        doRefresh();
+                        refreshLines();
                         return;
                     }
                     BTDownload downloader = new SoundcloudDownload(sr);
@@ -75,19 +75,38 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
     }
 
     /**
-     * Over-ride the default refresh so that we can
-     * set the CLEAR_BUTTON as appropriate.
+     * Over-ride the default refresh so that only the rows that changed
+     * are repainted.
+     *
+     * @return the number of rows that changed, or <tt>Boolean.FALSE</tt>
+     * if the refresh failed
      */
     public Object refresh() {
         try {
             int size = getRowCount();
+            int changed = 0;
+            int first = -1;
 
             for (int i = 0; i < size; i++) {
                 BTDownloadDataLine ud = get(i);
                 ud.update();
+
+                if (ud.hasChanged()) {
+                    changed++;
+                    if (first < 0) {
+                        first = i;
+                    }
+                } else if (first >= 0) {
+                    fireTableRowsUpdated(first, i - 1);
+                    first = -1;
+                }
+            }
+
+            if (first >= 0) {
+                fireTableRowsUpdated(first, size - 1);
             }
 
-            fireTableRowsUpdated(0, size);
+            return changed;
         } catch (Exception e) {
             System.out.println("ATTENTION: Send the following output to the FrostWire Development team.");
             System.out.println("===============================START COPY & PASTE=======================================");
@@ -95,8 +114,6 @@ public class BTDownloadModel extends BasicDataLineModel<BTDownloadDataLine, BTDo
             System.out.println("===============================END COPY & PASTE=======================================");
             return Boolean.FALSE;
         }
-
-        return Boolean.TRUE;
     }
 
     @Override
@@ -324,6 +324,8 @@ public class BittorrentDownload implements com.frostwire.gui.bittorrent.BTDownlo
             size = calculateSize(dl);
             items = calculateItems(dl);
             partial = dl.isPartial();
+
+            GUIMediator.requestRefresh();
         }
 
         @Override
@@ -351,11 +353,15 @@ public class BittorrentDownload implements com.frostwire.gui.bittorrent.BTDownlo
                     BTDownloadMediator.instance().updateTableFilters();
                 }
             });
+
+            GUIMediator.requestRefresh();
         }
 
         @Override
         public void removed(BTDownload dl, Set<File> incompleteFiles) {
             finalCleanup(incompleteFiles);
+
+            GUIMediator.requestRefresh();
         }
     }
 
@@ -20,7 +20,6 @@ package com.frostwire.gui.bittorrent;
 import com.frostwire.gui.theme.ThemeMediator;
 import com.frostwire.jlibtorrent.Entry;
 import com.frostwire.jlibtorrent.swig.create_torrent;
-import com.frostwire.jlibtorrent.swig.error_code;
 import com.frostwire.jlibtorrent.swig.file_storage;
 import com.frostwire.jlibtorrent.swig.libtorrent;
 import com.frostwire.bittorrent.CopyrightLicenseBroker;
@@ -34,6 +33,7 @@ import com.limegroup.gnutella.settings.SharingSettings;
 import com.limegroup.gnutella.util.FrostWireUtils;
 import net.miginfocom.swing.MigLayout;
 import org.gudy.azureus2.core3.util.Debug;
+import org.limewire.util.CommonUtils;
 
 import javax.swing.*;
 import javax.swing.event.ChangeEvent;
@@ -591,8 +591,15 @@ public class CreateTorrentDialog extends JDialog {
                 if (addAvailableWebSeeds(torrent, create_from_dir)) {
                     reportCurrentTask(I18n.tr("Calculating piece hashes..."));
                     _saveDir = f.getParentFile();
-                    error_code ec = new error_code();
-                    libtorrent.set_piece_hashes(torrent, _saveDir.getAbsolutePath(), ec);
+                    TorrentUtil.setPieceHashes(torrent, _saveDir, new PieceHasher.Listener() {
+                        @Override
+                        public void onProgress(long hashed, long total, long bytesPerSecond, long eta) {
+                            reportProgress(total > 0 ? (int) (hashed * 100 / total) : 100);
+                            String speed = GUIUtils.rate2speed(bytesPerSecond / 1024.0);
+                            String left = eta >= 0 ? CommonUtils.seconds2time(eta) : "?";
+                            reportCurrentTask(I18n.tr("Calculating piece hashes... {0}, {1} left", speed, left));
+                        }
+                    });
                     reportCurrentTask(I18n.tr("Generating torrent entry..."));
 
                     Entry entry = new Entry(torrent.generate());
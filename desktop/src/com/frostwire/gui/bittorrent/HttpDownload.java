@@ -26,6 +26,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReentrantLock;
 
 import com.frostwire.transfers.TransferState;
 
@@ -33,9 +34,11 @@ import com.frostwire.bittorrent.CopyrightLicenseBroker;
 import com.frostwire.bittorrent.PaymentOptions;
 import com.frostwire.gui.DigestUtils;
 import com.frostwire.gui.DigestUtils.DigestProgressListener;
+import com.frostwire.gui.ResumableMD5;
 import com.frostwire.util.http.HttpClient;
 import com.frostwire.util.http.HttpClient.HttpClientListener;
 import com.frostwire.util.http.HttpClient.RangeNotSupportedException;
+import com.frostwire.util.http.SegmentedDownloader;
 import com.frostwire.util.HttpClientFactory;
 import com.limegroup.gnutella.settings.SharingSettings;
 import org.apache.commons.io.FilenameUtils;
@@ -52,6 +55,9 @@ public class HttpDownload implements BTDownload {
 
     private static final int SPEED_AVERAGE_CALCULATION_INTERVAL_MILLISECONDS = 1000;
 
+    private static final long DIGEST_CHECKPOINT_INTERVAL = 4 * 1024 * 1024;
+    private static final long DIGEST_MIN_CATCH_UP = 1024 * 1024;
+
     private final String url;
     private final String title;
     private final String saveAs;
@@ -82,6 +88,13 @@ public class HttpDownload implements BTDownload {
     private boolean isResumable;
     private boolean deleteDataWhenRemoved;
 
+    private volatile SegmentedDownloader segmentedDownloader;
+
+    // md5 of the incomplete file prefix, computed as the data arrives
+    private final ReentrantLock digestLock;
+    private ResumableMD5 digest;
+    private long digestCheckpoint;
+
     public HttpDownload(String theURL, String theTitle, String saveFileAs, long fileSize, String md5hash, boolean shouldResume, boolean deleteFileWhenTransferCancelled) {
         url = theURL;
         title = theTitle;
@@ -97,6 +110,7 @@ public class HttpDownload implements BTDownload {
         bytesReceived = 0;
         dateCreated = new Date();
 
+        digestLock = new ReentrantLock();
         httpClientListener = new HttpDownloadListenerImpl();
 
         httpClient = HttpClientFactory.getInstance(HttpClientFactory.HttpContext.DOWNLOAD);
@@ -145,7 +159,7 @@ public class HttpDownload implements BTDownload {
     public void remove() {
         if (state != TransferState.FINISHED) {
             state = TransferState.CANCELING;
-            httpClient.cancel();
+            cancelTransfer();
         }
 
         if (deleteDataWhenRemoved) {
@@ -167,7 +181,15 @@ public class HttpDownload implements BTDownload {
             } else {
                 state = TransferState.CANCELING;
             }
-            httpClient.cancel();
+            cancelTransfer();
+        }
+    }
+
+    private void cancelTransfer() {
+        httpClient.cancel();
+        SegmentedDownloader downloader = segmentedDownloader;
+        if (downloader != null) {
+            downloader.cancel();
         }
     }
 
@@ -285,9 +307,16 @@ public class HttpDownload implements BTDownload {
                         return;
                     }
 
+                    if (downloadSegmented(resume)) {
+                        return;
+                    }
+
+                    prepareDigest(resume);
+
                     if (resume) {
                         if (incompleteFile.exists()) {
                             bytesReceived = incompleteFile.length();
+                            updateDigest(bytesReceived);
                         }
                     }
 
@@ -300,6 +329,158 @@ public class HttpDownload implements BTDownload {
         });
     }
 
+    /**
+     * Downloads over several connections when the server supports byte ranges.
+     *
+     * @return false if the server doesn't allow it, and the regular download should be used
+     */
+    private boolean downloadSegmented(boolean resume) throws IOException {
+        if (resume && incompleteFile.exists() && !SegmentedDownloader.getStateFile(incompleteFile).exists()) {
+            // partial data from a single connection download, keep resuming it that way
+            return false;
+        }
+
+        SegmentedDownloader downloader = new SegmentedDownloader(url, incompleteFile, new SegmentedDownloader.Listener() {
+            @Override
+            public void onData(SegmentedDownloader downloader, int length) {
+                // one connection at a time hashes the completed prefix, the others keep downloading
+                if (md5 != null && digestLock.tryLock()) {
+                    try {
+                        long contiguous = downloader.getContiguousBytes();
+                        if (digest != null && contiguous - digest.getCount() >= DIGEST_MIN_CATCH_UP) {
+                            updateDigest(contiguous);
+                        }
+                    } finally {
+                        digestLock.unlock();
+                    }
+                }
+
+                synchronized (HttpDownload.this) {
+                    if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
+                        bytesReceived = downloader.getBytesDownloaded();
+                        updateAverageDownloadSpeed();
+                        state = TransferState.DOWNLOADING;
+                    }
+                }
+            }
+        });
+        segmentedDownloader = downloader;
+
+        try {
+            if (!downloader.probe()) {
+                return false;
+            }
+
+            size = downloader.getSize();
+            isResumable = true;
+
+            prepareDigest(resume);
+
+            if (state.equals(TransferState.PAUSING) || state.equals(TransferState.CANCELING)) {
+                httpClientListener.onCancel(httpClient);
+                return true;
+            }
+
+            if (downloader.download(resume)) {
+                httpClientListener.onComplete(httpClient);
+            } else {
+                httpClientListener.onCancel(httpClient);
+            }
+            return true;
+        } finally {
+            segmentedDownloader = null;
+        }
+    }
+
+    private File getDigestStateFile() {
+        return new File(incompleteFile.getParentFile(), incompleteFile.getName() + ".md5");
+    }
+
+    private void prepareDigest(boolean resume) {
+        digestLock.lock();
+        try {
+            digest = null;
+            if (md5 == null) {
+                return;
+            }
+
+            ResumableMD5 d = resume ? ResumableMD5.load(getDigestStateFile()) : null;
+            if (d == null || d.getCount() > incompleteFile.length()) {
+                d = new ResumableMD5();
+            }
+            digest = d;
+            digestCheckpoint = d.getCount();
+        } finally {
+            digestLock.unlock();
+        }
+    }
+
+    /**
+     * Hashes the data already written to the incomplete file up to <code>length</code>.
+     */
+    private void updateDigest(long length) {
+        digestLock.lock();
+        try {
+            if (digest != null && length > digest.getCount()) {
+                digest.update(incompleteFile, length);
+                checkpointDigest(false);
+            }
+        } catch (IOException e) {
+            // the final check will read the file instead
+            digest = null;
+        } finally {
+            digestLock.unlock();
+        }
+    }
+
+    private void updateDigest(byte[] buffer, int offset, int length) {
+        digestLock.lock();
+        try {
+            if (digest != null) {
+                digest.update(buffer, offset, length);
+                checkpointDigest(false);
+            }
+        } finally {
+            digestLock.unlock();
+        }
+    }
+
+    private void checkpointDigest(boolean force) {
+        digestLock.lock();
+        try {
+            if (digest != null && (force || digest.getCount() - digestCheckpoint >= DIGEST_CHECKPOINT_INTERVAL)) {
+                digest.save(getDigestStateFile());
+                digestCheckpoint = digest.getCount();
+            }
+        } catch (IOException e) {
+            // not fatal, a resume will hash the file again
+        } finally {
+            digestLock.unlock();
+        }
+    }
+
+    /**
+     * Verifies the complete incomplete file using the streamed digest, only
+     * the part not hashed while downloading is read from disk.
+     */
+    private boolean verifyMD5() {
+        digestLock.lock();
+        try {
+            if (digest != null) {
+                state = TransferState.CHECKING;
+                digest.update(incompleteFile, incompleteFile.length());
+                md5CheckingProgress = 100;
+                return DigestUtils.compareMD5(digest.getHexDigest(), md5);
+            }
+        } catch (IOException e) {
+            digest = null;
+        } finally {
+            digestLock.unlock();
+        }
+
+        return checkMD5(incompleteFile);
+    }
+
     private void cleanupFile(File f) {
         if (f.exists()) {
             boolean delete = f.delete();
@@ -311,6 +492,8 @@ public class HttpDownload implements BTDownload {
 
     private void cleanupIncomplete() {
         cleanupFile(incompleteFile);
+        cleanupFile(SegmentedDownloader.getStateFile(incompleteFile));
+        cleanupFile(getDigestStateFile());
     }
 
     private void cleanupComplete() {
@@ -398,6 +581,8 @@ public class HttpDownload implements BTDownload {
 
         @Override
         public void onData(HttpClient client, byte[] buffer, int offset, int length) {
+            updateDigest(buffer, offset, length);
+
             if (!state.equals(TransferState.PAUSING) && !state.equals(TransferState.CANCELING)) {
                 bytesReceived += length;
                 updateAverageDownloadSpeed();
@@ -407,7 +592,7 @@ public class HttpDownload implements BTDownload {
 
         @Override
         public void onComplete(HttpClient client) {
-            if (md5 != null && !checkMD5(incompleteFile)) {
+            if (md5 != null && !verifyMD5()) {
                 state = TransferState.ERROR_HASH_MD5;
                 cleanupIncomplete();
                 return;
@@ -432,6 +617,7 @@ public class HttpDownload implements BTDownload {
                 }
                 state = TransferState.CANCELED;
             } else if (state.equals(TransferState.PAUSING)) {
+                checkpointDigest(true);
                 state = TransferState.PAUSED;
                 isResumable = true;
             } else {
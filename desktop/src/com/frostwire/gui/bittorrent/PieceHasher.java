@@ -0,0 +1,291 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.bittorrent;
+
+import org.limewire.concurrent.ExecutorsHelper;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Computes the SHA-1 piece hashes of the files of a torrent.
+ * <p>
+ * The files are read sequentially, as if they were a single stream, into
+ * piece sized buffers, and the pieces are hashed on all the cores. Only a
+ * bounded window of pieces is in memory at any time, the reads wait for the
+ * hashing when the window is full.
+ */
+public final class PieceHasher {
+
+    /**
+     * Maximum memory used by the buffers of the pieces being hashed.
+     */
+    private static final int MAX_WINDOW_BYTES = 64 * 1024 * 1024;
+
+    private static final long PROGRESS_INTERVAL = 500;
+
+    private static final ThreadLocal<MessageDigest> sha1 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    private final List<File> files;
+    private final long[] sizes;
+    private final int pieceLength;
+    private final long totalSize;
+    private final int numPieces;
+
+    /**
+     * @param files       the files, in torrent order, <code>null</code> for pad files
+     * @param sizes       the sizes of the files, as declared in the torrent
+     * @param pieceLength the piece length of the torrent
+     */
+    public PieceHasher(List<File> files, long[] sizes, int pieceLength) {
+        if (files.size() != sizes.length) {
+            throw new IllegalArgumentException("Files and sizes don't match");
+        }
+        if (pieceLength <= 0) {
+            throw new IllegalArgumentException("Invalid piece length: " + pieceLength);
+        }
+
+        this.files = files;
+        this.sizes = sizes;
+        this.pieceLength = pieceLength;
+
+        long total = 0;
+        for (long size : sizes) {
+            total += size;
+        }
+        this.totalSize = total;
+        this.numPieces = (int) ((total + pieceLength - 1) / pieceLength);
+    }
+
+    public int getNumPieces() {
+        return numPieces;
+    }
+
+    /**
+     * Hashes all the pieces, blocking until done.
+     *
+     * @param listener notified of the progress from the calling thread, can be <code>null</code>
+     * @return the 20 bytes SHA-1 hash of every piece
+     * @throws IOException if a file can't be read or is shorter than declared
+     */
+    public byte[][] hash(Listener listener) throws IOException {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors());
+        int window = Math.max(2, Math.min(threads * 2, MAX_WINDOW_BYTES / pieceLength));
+
+        final byte[][] hashes = new byte[numPieces][];
+        final BlockingQueue<byte[]> buffers = new ArrayBlockingQueue<byte[]>(window);
+        final AtomicLong hashed = new AtomicLong();
+        final AtomicReference<Throwable> error = new AtomicReference<Throwable>();
+
+        Progress progress = new Progress(listener, totalSize);
+        ExecutorService executor = ExecutorsHelper.newFixedSizeThreadPool(threads, "PieceHasher");
+
+        Reader reader = new Reader();
+        int allocated = 0;
+
+        try {
+            for (int piece = 0; piece < numPieces; piece++) {
+                byte[] buffer = buffers.poll();
+                while (buffer == null) {
+                    if (allocated < window) {
+                        buffer = new byte[pieceLength];
+                        allocated++;
+                    } else {
+                        buffer = buffers.poll(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                        progress.update(hashed.get(), false);
+                    }
+                }
+
+                checkError(error);
+
+                final int index = piece;
+                final byte[] data = buffer;
+                final int length = (int) Math.min(pieceLength, totalSize - (long) piece * pieceLength);
+                reader.read(data, length);
+
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            MessageDigest md = sha1.get();
+                            md.update(data, 0, length);
+                            hashes[index] = md.digest();
+                            hashed.addAndGet(length);
+                        } catch (Throwable e) {
+                            error.compareAndSet(null, e);
+                        } finally {
+                            buffers.offer(data);
+                        }
+                    }
+                });
+
+                progress.update(hashed.get(), false);
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS)) {
+                progress.update(hashed.get(), false);
+            }
+            checkError(error);
+
+            progress.update(hashed.get(), true);
+
+            return hashes;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Piece hashing interrupted");
+        } finally {
+            executor.shutdownNow();
+            reader.close();
+        }
+    }
+
+    private static void checkError(AtomicReference<Throwable> error) throws IOException {
+        Throwable e = error.get();
+        if (e != null) {
+            throw new IOException("Error hashing pieces", e);
+        }
+    }
+
+    /**
+     * Reads the files as a single stream, one file open at a time.
+     */
+    private final class Reader {
+
+        private int fileIndex = -1;
+        private long fileRemaining;
+        private FileInputStream in;
+        private FileChannel channel;
+
+        void read(byte[] data, int length) throws IOException {
+            int offset = 0;
+            while (offset < length) {
+                while (fileRemaining == 0) {
+                    next();
+                }
+
+                int n = (int) Math.min(length - offset, fileRemaining);
+                if (channel == null) {
+                    // pad file
+                    Arrays.fill(data, offset, offset + n, (byte) 0);
+                } else {
+                    ByteBuffer bb = ByteBuffer.wrap(data, offset, n);
+                    while (bb.hasRemaining()) {
+                        if (channel.read(bb) < 0) {
+                            throw new EOFException("File shorter than expected: " + files.get(fileIndex));
+                        }
+                    }
+                }
+
+                offset += n;
+                fileRemaining -= n;
+            }
+        }
+
+        private void next() throws IOException {
+            close();
+
+            fileIndex++;
+            fileRemaining = sizes[fileIndex];
+
+            File file = files.get(fileIndex);
+            if (file != null && fileRemaining > 0) {
+                in = new FileInputStream(file);
+                channel = in.getChannel();
+            }
+        }
+
+        void close() {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    // ignore
+                }
+            }
+            in = null;
+            channel = null;
+        }
+    }
+
+    private static final class Progress {
+
+        private final Listener listener;
+        private final long totalSize;
+        private final long started;
+
+        private long lastUpdate;
+
+        Progress(Listener listener, long totalSize) {
+            this.listener = listener;
+            this.totalSize = totalSize;
+            this.started = System.currentTimeMillis();
+        }
+
+        void update(long hashed, boolean done) {
+            if (listener == null) {
+                return;
+            }
+
+            long now = System.currentTimeMillis();
+            if (!done && now - lastUpdate < PROGRESS_INTERVAL) {
+                return;
+            }
+            lastUpdate = now;
+
+            long elapsed = Math.max(1, now - started);
+            long bytesPerSecond = hashed * 1000 / elapsed;
+            long eta = bytesPerSecond > 0 ? (totalSize - hashed) / bytesPerSecond : -1;
+
+            listener.onProgress(hashed, totalSize, bytesPerSecond, eta);
+        }
+    }
+
+    public interface Listener {
+
+        /**
+         * @param eta the estimated seconds left, or -1 if unknown yet
+         */
+        void onProgress(long hashed, long total, long bytesPerSecond, long eta);
+    }
+}
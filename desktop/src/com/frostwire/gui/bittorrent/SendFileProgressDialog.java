@@ -17,7 +17,6 @@
 
 package com.frostwire.gui.bittorrent;
 
-import com.frostwire.jlibtorrent.swig.error_code;
 import com.frostwire.logging.Logger;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.GUIUtils;
@@ -171,11 +170,21 @@ public class SendFileProgressDialog extends JDialog {
 
     private class TorrentMakerListener implements TorrentUtil.UITorrentMakerListener {
         @Override
-        public void onCreateTorrentError(final error_code ec) {
+        public void onCreateTorrentError(final String message) {
             GUIMediator.safeInvokeLater(new Runnable() {
                 @Override
                 public void run() {
-                    _progressBar.setString("Error: " + ec.message());
+                    _progressBar.setString("Error: " + message);
+                }
+            });
+        }
+
+        @Override
+        public void onPieceHashingProgress(final long hashed, final long total, long bytesPerSecond, long eta) {
+            GUIMediator.safeInvokeLater(new Runnable() {
+                @Override
+                public void run() {
+                    _progressBar.setValue(total > 0 ? (int) (hashed * 100 / total) : 100);
                 }
             });
         }
@@ -60,6 +60,8 @@ import javax.swing.*;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -67,7 +69,8 @@ import java.util.Set;
 public final class TorrentUtil {
 
     public interface UITorrentMakerListener {
-        void onCreateTorrentError(final error_code ec);
+        void onCreateTorrentError(final String message);
+        void onPieceHashingProgress(long hashed, long total, long bytesPerSecond, long eta);
         void beforeOpenForSeedInUIThread();
         void onException();
     }
@@ -187,6 +190,33 @@ public final class TorrentUtil {
         return allowedToResume;
     }
 
+    /**
+     * Sets the piece hashes of the torrent reading the files from the given
+     * directory, same as <code>libtorrent.set_piece_hashes</code> but hashing
+     * on all the cores.
+     */
+    public static void setPieceHashes(create_torrent torrent, File saveDir, PieceHasher.Listener listener) throws IOException {
+        file_storage fs = torrent.files();
+        int numFiles = fs.num_files();
+
+        List<File> files = new ArrayList<File>(numFiles);
+        long[] sizes = new long[numFiles];
+        for (int i = 0; i < numFiles; i++) {
+            files.add(fs.pad_file_at(i) ? null : new File(saveDir, fs.file_path(i)));
+            sizes[i] = fs.file_size(i);
+        }
+
+        PieceHasher hasher = new PieceHasher(files, sizes, torrent.piece_length());
+        if (hasher.getNumPieces() != torrent.num_pieces()) {
+            throw new IOException("Unexpected number of pieces: " + hasher.getNumPieces() + " != " + torrent.num_pieces());
+        }
+
+        byte[][] hashes = hasher.hash(listener);
+        for (int i = 0; i < hashes.length; i++) {
+            torrent.set_hash(i, new sha1_hash(Vectors.bytes2char_vector(hashes[i])));
+        }
+    }
+
     public static void makeTorrentAndDownload(final File file, final UITorrentMakerListener uiTorrentMakerListener, final boolean showShareTorrentDialog) {
         try {
             file_storage fs = new file_storage();
@@ -203,10 +233,19 @@ public final class TorrentUtil {
             torrentCreator.set_priv(false);
             torrentCreator.set_creator("FrostWire " + FrostWireUtils.getFrostWireJarPath() + " build " + FrostWireUtils.getBuildNumber());
             final File torrentFile = new File(SharingSettings.TORRENTS_DIR_SETTING.getValue(), file.getName() + ".torrent");
-            final error_code ec = new error_code();
-            libtorrent.set_piece_hashes(torrentCreator,file.getParentFile().getAbsolutePath(), ec);
-            if (ec.value() != 0 && uiTorrentMakerListener != null) {
-                uiTorrentMakerListener.onCreateTorrentError(ec);
+            try {
+                setPieceHashes(torrentCreator, file.getParentFile(), new PieceHasher.Listener() {
+                    @Override
+                    public void onProgress(long hashed, long total, long bytesPerSecond, long eta) {
+                        if (uiTorrentMakerListener != null) {
+                            uiTorrentMakerListener.onPieceHashingProgress(hashed, total, bytesPerSecond, eta);
+                        }
+                    }
+                });
+            } catch (IOException e) {
+                if (uiTorrentMakerListener != null) {
+                    uiTorrentMakerListener.onCreateTorrentError(e.getMessage());
+                }
                 return;
             }
 
@@ -65,6 +65,8 @@ abstract class AbstractLibraryTableMediator<T extends DataLineModel<E, I>, E ext
 
     private static final LibraryActionsRenderer ACTION_RENDERER = new LibraryActionsRenderer();
 
+    private static final int COVER_ART_PREFETCH_ROWS = 3;
+
     protected Action SEND_TO_FRIEND_ACTION;
     protected Action OPTIONS_ACTION;
 
@@ -139,6 +141,29 @@ abstract class AbstractLibraryTableMediator<T extends DataLineModel<E, I>, E ext
         return setItemSelected(getItemAt(row));
     }
 
+    /**
+     * Shows the cover art of the file at the given row, and prefetches the
+     * cover art of the rows around it.
+     * 
+     * @param row
+     */
+    protected void showCoverArt(int row) {
+        LibraryCoverArt coverArt = LibraryMediator.instance().getLibraryCoverArt();
+        coverArt.setFile(DATA_MODEL.get(row).getFile());
+
+        List<File> files = new ArrayList<File>(2 * COVER_ART_PREFETCH_ROWS);
+        int count = DATA_MODEL.getRowCount();
+        for (int i = 1; i <= COVER_ART_PREFETCH_ROWS; i++) {
+            if (row + i < count) {
+                files.add(DATA_MODEL.get(row + i).getFile());
+            }
+            if (row - i >= 0) {
+                files.add(DATA_MODEL.get(row - i).getFile());
+            }
+        }
+        coverArt.prefetch(files);
+    }
+
     @Override
     protected JComponent getScrolledTablePane() {
         JComponent comp = super.getScrolledTablePane();
@@ -27,10 +27,11 @@ import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
 import java.awt.image.BufferedImage;
 import java.io.File;
+import java.util.List;
 
 import javax.swing.JPanel;
 
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.ArtworkCache;
 import com.limegroup.gnutella.gui.GUIMediator;
 
 /**
@@ -59,7 +60,7 @@ public final class LibraryCoverArt extends JPanel {
     }
 
     /**
-     * Async
+     * Async, the cover art is read from the {@link ArtworkCache}.
      * @param file
      */
     public void setFile(final File file) {
@@ -67,26 +68,31 @@ public final class LibraryCoverArt extends JPanel {
             return;
         }
         this.file = file;
-        Thread t = new Thread(new Runnable() {
-            public void run() {
-                Image image = retrieveImage(file);
-                if (file != null && file.equals(LibraryCoverArt.this.file)) {
+        if (file == null) {
+            setPrivateImage(defaultCoverArt);
+            return;
+        }
+        ArtworkCache.instance().request(file, new ArtworkCache.ArtworkListener() {
+            public void onArtwork(File f, BufferedImage image) {
+                if (f.equals(LibraryCoverArt.this.file)) {
                     setPrivateImage(image);
                 }
             }
-        }, "Cover Art extract");
-        t.setDaemon(true);
-        t.start();
+        });
+    }
+
+    /**
+     * Loads the cover art of the files in the background, so it's ready if
+     * they are selected next.
+     * @param files
+     */
+    public void prefetch(List<File> files) {
+        ArtworkCache.instance().prefetch(files);
     }
 
     public void setDefault() {
         this.file = null;
-        new Thread(new Runnable() {
-            public void run() {
-                Image image = retrieveImage(file);
-                setPrivateImage(image);
-            }
-        }).start();
+        setPrivateImage(defaultCoverArt);
     }
 
     @Override
@@ -95,20 +101,6 @@ public final class LibraryCoverArt extends JPanel {
         g.drawImage(background, 0, 0, null);
     }
 
-    /**
-     * Synchronous.
-     * @param file
-     * @return
-     */
-    private Image retrieveImage(File file) {
-        if (file == null) {
-            return defaultCoverArt;
-        }
-        Image image = new TagsReader(file).getArtwork();
-
-        return image;
-    }
-
     private void setPrivateImage(Image image) {
         coverArtImage = image;
 
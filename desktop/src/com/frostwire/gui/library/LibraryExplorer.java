@@ -74,7 +74,9 @@ public class LibraryExplorer extends AbstractLibraryListPanel {
 
     @Override
     public void refresh() {
-        tree.repaint();
+        if (tree.isShowing()) {
+            tree.repaint();
+        }
     }
 
     public void refreshSelection(boolean clearCache) {
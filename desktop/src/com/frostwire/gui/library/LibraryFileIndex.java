@@ -0,0 +1,800 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library;
+
+import com.frostwire.logging.Logger;
+import com.limegroup.gnutella.settings.LibrarySettings;
+import com.limegroup.gnutella.settings.SharingSettings;
+import org.limewire.collection.CharSequenceKeyAnalyzer;
+import org.limewire.collection.PatriciaTrie;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Index of the files under the library folders, so that searching them doesn't
+ * walk the directories on every query.
+ * <p>
+ * A folder is indexed in the background the first time it's searched, and kept
+ * up to date with a {@link WatchService}. The index is saved to disk and loaded
+ * on the next start, then the indexed folders are walked again in the background
+ * to pick up the changes made while the application was closed.
+ * <p>
+ * At most {@link #MAX_WATCHED_FOLDERS} folders are watched, the indexed folders
+ * with subfolders left out (or all of them, if changes can't be watched at all)
+ * are walked again every {@link #RESCAN_INTERVAL} instead. The folders removed
+ * from the library are dropped from the index.
+ * <p>
+ * The words of the paths are indexed too, a search intersects the files of
+ * each query token instead of scanning every file of the folder.
+ */
+public final class LibraryFileIndex {
+
+    private static final Logger LOG = Logger.getLogger(LibraryFileIndex.class);
+
+    private static final int VERSION = 1;
+
+    /**
+     * Minimum time between saves of a modified index.
+     */
+    private static final long SAVE_INTERVAL = 30000;
+
+    /**
+     * Maximum number of folders registered with the watch service, each one
+     * takes a kernel resource (an inotify watch on Linux) with a per user limit.
+     */
+    private static final int MAX_WATCHED_FOLDERS = 4096;
+
+    /**
+     * Time between walks of the indexed folders that are not fully watched.
+     */
+    static final long RESCAN_INTERVAL = 10 * 60 * 1000;
+
+    /**
+     * Paths longer than this are not saved, to stay within the limits of
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static final int MAX_SAVED_PATH_LENGTH = 16384;
+
+    private static final Pattern COMBINING_DIACRITICAL_MARKS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+    private static final Pattern WORD_SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final Comparator<Entry> ENTRY_PATH_ORDER = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry a, Entry b) {
+            return a.path.compareTo(b.path);
+        }
+    };
+
+    private static LibraryFileIndex instance;
+
+    private final File indexFile;
+    private final ExecutorService executor;
+
+    // guarded by this
+    private final PatriciaTrie<String, Entry> files;
+    private final PatriciaTrie<String, Set<Entry>> words;
+    private final Set<File> roots;
+    private final Set<File> pending;
+    private final Set<File> rescanned;
+
+    private final Map<WatchKey, Path> watchKeys;
+    private final WatchService watcher;
+
+    private volatile boolean dirty;
+
+    public static synchronized LibraryFileIndex instance() {
+        if (instance == null) {
+            instance = new LibraryFileIndex(new File(CommonUtils.getUserSettingsDir(), "library.idx"));
+            instance.start();
+        }
+        return instance;
+    }
+
+    private LibraryFileIndex(File indexFile) {
+        this.indexFile = indexFile;
+        this.executor = ExecutorsHelper.newProcessingQueue("LibraryFileIndex");
+        this.files = new PatriciaTrie<String, Entry>(new CharSequenceKeyAnalyzer());
+        this.words = new PatriciaTrie<String, Set<Entry>>(new CharSequenceKeyAnalyzer());
+        this.roots = new HashSet<>();
+        this.pending = new HashSet<>();
+        this.rescanned = new HashSet<>();
+        this.watchKeys = new ConcurrentHashMap<>();
+        this.watcher = newWatchService();
+    }
+
+    /**
+     * Returns the files under the directory whose normalized absolute path has a word
+     * starting with each of the tokens, see {@link #matches(String, String[])}. Hidden
+     * files and the files of hidden folders are not indexed.
+     *
+     * @return the matching files, or <code>null</code> if the directory is not indexed
+     * yet, in which case it's scheduled for indexing
+     */
+    public List<File> search(File dir, String[] tokens) {
+        synchronized (this) {
+            if (!isIndexed(dir)) {
+                if (pending.add(dir)) {
+                    submitBuild(dir);
+                }
+                return null;
+            }
+
+            String prefix = dir.getAbsolutePath() + File.separator;
+            Set<Entry> candidates = candidates(tokens);
+
+            List<File> result = new ArrayList<>();
+
+            if (candidates == null) {
+                for (Entry e : files.getPrefixedBy(prefix).values()) {
+                    result.add(e.file);
+                }
+            } else {
+                List<Entry> entries = new ArrayList<>();
+                for (Entry e : candidates) {
+                    if (e.path.startsWith(prefix)) {
+                        entries.add(e);
+                    }
+                }
+                // same order as a scan of the folder
+                Collections.sort(entries, ENTRY_PATH_ORDER);
+                for (Entry e : entries) {
+                    result.add(e.file);
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * @return true if changes to the folder are only picked up by the periodic
+     * walks, see {@link #RESCAN_INTERVAL}
+     */
+    public synchronized boolean isRescanned(File dir) {
+        if (watcher == null) {
+            return isIndexed(dir);
+        }
+        File root = findRoot(dir);
+        return root != null && rescanned.contains(root);
+    }
+
+    /**
+     * Drops the indexed folders that are no longer in the library, with their
+     * files and watches.
+     */
+    public void removeUnsharedRoots() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                retainRoots(sharedFolders());
+            }
+        });
+    }
+
+    /**
+     * @param normalized a path normalized with {@link #normalize(String)}
+     * @param tokens     normalized query tokens
+     * @return true if, for each token, a word of the path starts with it
+     */
+    static boolean matches(String normalized, String[] tokens) {
+        String[] pathWords = words(normalized);
+        for (String token : tokens) {
+            for (String tokenWord : words(token)) {
+                if (!hasWordStartingWith(pathWords, tokenWord)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Normalization applied to the indexed paths and expected in the search tokens,
+     * removes the diacritical marks and lower cases the string.
+     */
+    static String normalize(String s) {
+        String norm = Normalizer.normalize(s, Normalizer.Form.NFKD);
+        norm = COMBINING_DIACRITICAL_MARKS.matcher(norm).replaceAll("");
+        return norm.toLowerCase(Locale.US);
+    }
+
+    /**
+     * Intersects the files of each token word, smallest first.
+     *
+     * @return the matching files, or <code>null</code> if there is no token to
+     * match and every file matches
+     */
+    // guarded by this
+    private Set<Entry> candidates(String[] tokens) {
+        List<Set<Entry>> postings = new ArrayList<>();
+        for (String token : tokens) {
+            for (String tokenWord : words(token)) {
+                postings.add(postings(tokenWord));
+            }
+        }
+
+        if (postings.isEmpty()) {
+            return null;
+        }
+
+        Collections.sort(postings, new Comparator<Set<Entry>>() {
+            @Override
+            public int compare(Set<Entry> a, Set<Entry> b) {
+                return a.size() - b.size();
+            }
+        });
+
+        Set<Entry> result = new HashSet<>(postings.get(0));
+        for (int i = 1; i < postings.size() && !result.isEmpty(); i++) {
+            result.retainAll(postings.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * @return the files with a word starting with the given one
+     */
+    // guarded by this
+    private Set<Entry> postings(String word) {
+        Collection<Set<Entry>> sets = words.getPrefixedBy(word).values();
+        if (sets.size() == 1) {
+            return sets.iterator().next();
+        }
+        Set<Entry> union = new HashSet<>();
+        for (Set<Entry> set : sets) {
+            union.addAll(set);
+        }
+        return union;
+    }
+
+    // guarded by this
+    private void addEntry(Entry e) {
+        removeEntry(e.path);
+        files.put(e.path, e);
+        for (String word : e.words) {
+            Set<Entry> set = words.get(word);
+            if (set == null) {
+                set = new HashSet<>();
+                words.put(word, set);
+            }
+            set.add(e);
+        }
+    }
+
+    // guarded by this
+    private void removeEntry(String path) {
+        Entry e = files.remove(path);
+        if (e == null) {
+            return;
+        }
+        for (String word : e.words) {
+            Set<Entry> set = words.get(word);
+            if (set != null) {
+                set.remove(e);
+                if (set.isEmpty()) {
+                    words.remove(word);
+                }
+            }
+        }
+    }
+
+    private void start() {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+
+        Thread t = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "LibraryFileIndex-Watcher");
+        t.setDaemon(true);
+        t.start();
+    }
+
+    // guarded by this
+    private boolean isIndexed(File dir) {
+        String path = dir.getAbsolutePath();
+
+        for (File root : roots) {
+            String rootPath = root.getAbsolutePath();
+            if (path.equals(rootPath) || path.startsWith(rootPath + File.separator)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private void submitBuild(final File root) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                build(root);
+            }
+        });
+    }
+
+    /**
+     * Walks the root and replaces its entries in the index.
+     */
+    private void build(File root) {
+        long start = System.currentTimeMillis();
+
+        synchronized (this) {
+            // set again by the walk if a folder can't be watched
+            rescanned.remove(root);
+        }
+
+        List<Entry> entries = walk(root.toPath(), root);
+
+        synchronized (this) {
+            removeTree(root.getAbsolutePath());
+            for (Entry e : entries) {
+                addEntry(e);
+            }
+            roots.add(root);
+            pending.remove(root);
+        }
+
+        LOG.info("Indexed " + entries.size() + " files of " + root + " in " + (System.currentTimeMillis() - start) + "ms");
+
+        save();
+    }
+
+    private List<Entry> walk(Path dir, final File root) {
+        final List<Entry> entries = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<Path>() {
+
+                private boolean top = true;
+
+                @Override
+                public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                    if (!top && isHidden(d)) {
+                        return FileVisitResult.SKIP_SUBTREE;
+                    }
+                    top = false;
+                    if (!register(d)) {
+                        rescan(root);
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (attrs.isRegularFile() && !isHidden(file)) {
+                        entries.add(new Entry(file.toFile()));
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    // unreadable files and symbolic link loops are skipped
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            LOG.warn("Error walking " + dir + ": " + e.getMessage());
+        }
+
+        return entries;
+    }
+
+    // guarded by this
+    private void removeTree(String path) {
+        removeEntry(path);
+        List<String> keys = new ArrayList<>(files.getPrefixedBy(path + File.separator).keySet());
+        for (String key : keys) {
+            removeEntry(key);
+        }
+    }
+
+    /**
+     * @return false if the folder is not watched
+     */
+    private boolean register(Path dir) {
+        if (watcher == null || watchKeys.size() >= MAX_WATCHED_FOLDERS) {
+            return false;
+        }
+
+        try {
+            WatchKey key = dir.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            watchKeys.put(key, dir);
+            return true;
+        } catch (IOException e) {
+            LOG.warn("Unable to watch " + dir + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void rescan(File root) {
+        boolean added;
+        synchronized (this) {
+            added = root != null && watcher != null && rescanned.add(root);
+        }
+        if (added) {
+            LOG.warn("Not all the folders of " + root + " can be watched (limit " + MAX_WATCHED_FOLDERS + "), it will be walked again every " + TimeUnit.MILLISECONDS.toMinutes(RESCAN_INTERVAL) + " minutes");
+        }
+    }
+
+    private void watch() {
+        long lastSave = System.currentTimeMillis();
+        long lastRescan = lastSave;
+
+        while (true) {
+            WatchKey key = null;
+            try {
+                if (watcher != null) {
+                    key = watcher.poll(SAVE_INTERVAL, TimeUnit.MILLISECONDS);
+                } else {
+                    Thread.sleep(SAVE_INTERVAL);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+
+            if (key != null) {
+                Path dir = watchKeys.get(key);
+                if (dir != null) {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        onEvent(dir, event);
+                    }
+                }
+                if (!key.reset()) {
+                    watchKeys.remove(key);
+                }
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastRescan >= RESCAN_INTERVAL) {
+                lastRescan = now;
+                for (File root : rescanRoots()) {
+                    submitBuild(root);
+                }
+            }
+            if (dirty && now - lastSave >= SAVE_INTERVAL) {
+                lastSave = now;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        save();
+                    }
+                });
+            }
+        }
+    }
+
+    private void onEvent(Path dir, WatchEvent<?> event) {
+        WatchEvent.Kind<?> kind = event.kind();
+
+        if (kind == StandardWatchEventKinds.OVERFLOW) {
+            // events were lost, walk the whole root again
+            File root = findRoot(dir.toFile());
+            if (root != null) {
+                submitBuild(root);
+            }
+            return;
+        }
+
+        final Path child = dir.resolve((Path) event.context());
+
+        if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+            synchronized (this) {
+                removeTree(child.toFile().getAbsolutePath());
+            }
+            dirty = true;
+        } else if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+            if (Files.isDirectory(child)) {
+                // files can be moved inside before the new folder is watched
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        addTree(child);
+                    }
+                });
+            } else if (Files.isRegularFile(child) && !isHidden(child)) {
+                Entry e = new Entry(child.toFile());
+                synchronized (this) {
+                    addEntry(e);
+                }
+                dirty = true;
+            }
+        }
+    }
+
+    private void addTree(Path dir) {
+        if (isHidden(dir)) {
+            return;
+        }
+
+        List<Entry> entries = walk(dir, findRoot(dir.toFile()));
+
+        synchronized (this) {
+            for (Entry e : entries) {
+                addEntry(e);
+            }
+        }
+
+        dirty = true;
+    }
+
+    private synchronized List<File> rescanRoots() {
+        return new ArrayList<>(watcher != null ? rescanned : roots);
+    }
+
+    /**
+     * Removes the roots not equal to or inside of one of the folders.
+     */
+    private void retainRoots(Set<File> folders) {
+        List<File> removed = new ArrayList<>();
+
+        synchronized (this) {
+            Iterator<File> it = roots.iterator();
+            while (it.hasNext()) {
+                File root = it.next();
+                if (!isInside(root, folders)) {
+                    it.remove();
+                    pending.remove(root);
+                    rescanned.remove(root);
+                    removeTree(root.getAbsolutePath());
+                    removed.add(root);
+                }
+            }
+        }
+
+        if (removed.isEmpty()) {
+            return;
+        }
+
+        for (Map.Entry<WatchKey, Path> e : watchKeys.entrySet()) {
+            if (isInside(e.getValue().toFile(), removed)) {
+                e.getKey().cancel();
+                watchKeys.remove(e.getKey());
+            }
+        }
+
+        LOG.info("Removed " + removed + " from the library index");
+
+        save();
+    }
+
+    private static boolean isInside(File dir, Collection<File> folders) {
+        String path = dir.getAbsolutePath();
+
+        for (File folder : folders) {
+            String folderPath = folder.getAbsolutePath();
+            if (path.equals(folderPath) || path.startsWith(folderPath + File.separator)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * The folders searched by the library, see {@link LibrarySearch}.
+     */
+    private static Set<File> sharedFolders() {
+        Set<File> folders = new HashSet<>(LibrarySettings.DIRECTORIES_TO_INCLUDE.getValue());
+        folders.removeAll(LibrarySettings.DIRECTORIES_NOT_TO_INCLUDE.getValue());
+        folders.add(SharingSettings.TORRENT_DATA_DIR_SETTING.getValue());
+        folders.remove(null);
+        return folders;
+    }
+
+    private synchronized File findRoot(File dir) {
+        String path = dir.getAbsolutePath();
+
+        for (File root : roots) {
+            String rootPath = root.getAbsolutePath();
+            if (path.equals(rootPath) || path.startsWith(rootPath + File.separator)) {
+                return root;
+            }
+        }
+
+        return null;
+    }
+
+    private void load() {
+        if (!indexFile.exists()) {
+            return;
+        }
+
+        List<File> loadedRoots = new ArrayList<>();
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            int numRoots = in.readInt();
+            for (int i = 0; i < numRoots; i++) {
+                loadedRoots.add(new File(in.readUTF()));
+            }
+
+            int numFiles = in.readInt();
+            List<Entry> entries = new ArrayList<>(numFiles);
+            for (int i = 0; i < numFiles; i++) {
+                String path = in.readUTF();
+                String normalized = in.readUTF();
+                entries.add(new Entry(new File(path), path, normalized));
+            }
+
+            synchronized (this) {
+                for (Entry e : entries) {
+                    if (!files.containsKey(e.path)) {
+                        addEntry(e);
+                    }
+                }
+                roots.addAll(loadedRoots);
+                pending.addAll(loadedRoots);
+            }
+
+            LOG.info("Loaded " + numFiles + " files of " + numRoots + " folders from " + indexFile);
+        } catch (Throwable e) {
+            LOG.warn("Unable to load library index " + indexFile + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+
+        // the library folders may have changed since the index was saved
+        retainRoots(sharedFolders());
+        synchronized (this) {
+            loadedRoots.retainAll(roots);
+        }
+
+        // searches are served from the loaded entries meanwhile
+        for (File root : loadedRoots) {
+            submitBuild(root);
+        }
+    }
+
+    private void save() {
+        List<File> savedRoots;
+        List<Entry> entries;
+
+        synchronized (this) {
+            dirty = false;
+            savedRoots = new ArrayList<>(roots);
+            entries = new ArrayList<>(files.size());
+            for (Entry e : files.values()) {
+                if (e.path.length() <= MAX_SAVED_PATH_LENGTH && e.normalized.length() <= MAX_SAVED_PATH_LENGTH) {
+                    entries.add(e);
+                }
+            }
+        }
+
+        File temp = new File(indexFile.getAbsolutePath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            out.writeInt(VERSION);
+
+            out.writeInt(savedRoots.size());
+            for (File root : savedRoots) {
+                out.writeUTF(root.getAbsolutePath());
+            }
+
+            out.writeInt(entries.size());
+            for (Entry e : entries) {
+                out.writeUTF(e.path);
+                out.writeUTF(e.normalized);
+            }
+
+            out.close();
+            out = null;
+
+            Files.move(temp.toPath(), indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable e) {
+            dirty = true;
+            LOG.warn("Unable to save library index " + indexFile + ": " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static String[] words(String s) {
+        List<String> list = new ArrayList<>();
+        for (String word : WORD_SEPARATORS.split(s)) {
+            if (word.length() > 0 && !list.contains(word)) {
+                list.add(word);
+            }
+        }
+        return list.toArray(new String[list.size()]);
+    }
+
+    private static boolean hasWordStartingWith(String[] words, String prefix) {
+        for (String word : words) {
+            if (word.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isHidden(Path path) {
+        try {
+            return Files.isHidden(path);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static WatchService newWatchService() {
+        try {
+            return FileSystems.getDefault().newWatchService();
+        } catch (Throwable e) {
+            LOG.warn("File system changes can't be watched, the library index will be refreshed every " + TimeUnit.MILLISECONDS.toMinutes(RESCAN_INTERVAL) + " minutes: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static final class Entry {
+
+        final File file;
+        final String path;
+        final String normalized;
+        final String[] words;
+
+        Entry(File file) {
+            this(file, file.getAbsolutePath(), normalize(file.getAbsolutePath()));
+        }
+
+        Entry(File file, String path, String normalized) {
+            this.file = file;
+            this.path = path;
+            this.normalized = normalized;
+            this.words = words(normalized);
+        }
+    }
+}
@@ -679,7 +679,7 @@ final class LibraryFilesTableMediator extends AbstractLibraryTableMediator<Libra
         }
 
         if (sel.length == 1) {
-            LibraryMediator.instance().getLibraryCoverArt().setFile(selectedFile);
+            showCoverArt(sel[0]);
         }
 
 //        boolean anyBeingShared = isAnyBeingShared();
@@ -234,6 +234,8 @@ public class LibraryMediator {
 
     public void clearDirectoryHolderCaches() {
         getLibraryExplorer().clearDirectoryHolderCaches();
+        // the library folders may have changed
+        LibraryFileIndex.instance().removeUnsharedRoots();
     }
 
     public void updateTableItems(Playlist playlist) {
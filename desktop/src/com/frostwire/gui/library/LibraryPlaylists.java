@@ -798,7 +798,9 @@ public class LibraryPlaylists extends AbstractLibraryListPanel {
 
     @Override
     public void refresh() {
-        _list.repaint();
+        if (_list.isShowing()) {
+            _list.repaint();
+        }
     }
 
     /**
@@ -592,7 +592,7 @@ final class LibraryPlaylistsTableMediator extends AbstractLibraryTableMediator<L
         }
 
         if (sel.length == 1) {
-            LibraryMediator.instance().getLibraryCoverArt().setFile(getSelectedLibraryLines()[0].getFile());
+            showCoverArt(sel[0]);
         }
     }
 
@@ -21,6 +21,7 @@ package com.frostwire.gui.library;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 import com.frostwire.alexandria.db.PlaylistItemDB;
+import com.frostwire.alexandria.db.RowMapper;
 import com.frostwire.gui.bittorrent.TorrentUtil;
 import com.frostwire.gui.searchfield.JXSearchField.SearchMode;
 import com.frostwire.gui.searchfield.SearchField;
@@ -42,9 +43,9 @@ import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
 import java.io.File;
 import java.io.FileFilter;
-import java.text.Normalizer;
 import java.util.*;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * 
@@ -254,6 +255,8 @@ public class LibrarySearch extends JPanel {
 
     private final class SearchFilesRunnable extends SearchRunnable {
 
+        private static final int RESULTS_BATCH_SIZE = 500;
+
         private final String _query;
         private final DirectoryHolder directoryHolder;
 
@@ -339,7 +342,8 @@ public class LibrarySearch extends JPanel {
         }
 
         /**
-         * It searches _query in haystackDir.
+         * It searches _query in haystackDir, using the {@link LibraryFileIndex} once
+         * the folder is indexed.
          * 
          * @param haystackDir
          * @param excludeFiles - Usually a list of incomplete files.
@@ -353,6 +357,106 @@ public class LibrarySearch extends JPanel {
                 return;
             }
 
+            SearchFileFilter searchFilter = new SearchFileFilter(_query);
+            boolean savedFiles = directoryHolder instanceof SavedFilesDirectoryHolder;
+
+            List<File> files = LibraryFileIndex.instance().search(haystackDir, savedFiles ? searchFilter.getTokens() : new String[0]);
+            if (files == null) {
+                // not indexed yet
+                walk(haystackDir, excludeFiles, exludedSubFolders);
+                return;
+            }
+
+            String haystackPath = haystackDir.getAbsolutePath() + File.separator;
+            List<String> excludedPaths = new ArrayList<String>();
+            for (File folder : exludedSubFolders) {
+                String path = folder.getAbsolutePath() + File.separator;
+                if (path.startsWith(haystackPath)) {
+                    excludedPaths.add(path);
+                }
+            }
+
+            List<File> results = new ArrayList<File>();
+
+            for (File file : files) {
+                if (canceled) {
+                    return;
+                }
+
+                if (excludeFiles.contains(file) || isExcluded(file, excludedPaths)) {
+                    continue;
+                }
+
+                // the index follows the deletions, no need to check the file system
+                if (savedFiles || directoryHolder.accept(file)) {
+                    results.add(file);
+                }
+
+                if (results.size() >= RESULTS_BATCH_SIZE) {
+                    //Stop search if the user selected another item in the library tree
+                    if (!directoryHolder.equals(LibraryMediator.instance().getLibraryExplorer().getSelectedDirectoryHolder())) {
+                        return;
+                    }
+
+                    addResults(results);
+                    results = new ArrayList<File>();
+                }
+            }
+
+            addResults(results);
+
+            if (LibraryFileIndex.instance().isRescanned(haystackDir)) {
+                GUIMediator.safeInvokeLater(new Runnable() {
+                    public void run() {
+                        setStatus(status + " (" + I18n.tr("too many folders to watch, changes show up within {0} minutes", TimeUnit.MILLISECONDS.toMinutes(LibraryFileIndex.RESCAN_INTERVAL)) + ")");
+                    }
+                });
+            }
+        }
+
+        private boolean isExcluded(File file, List<String> excludedPaths) {
+            if (excludedPaths.isEmpty()) {
+                return false;
+            }
+
+            String path = file.getAbsolutePath();
+            for (String excluded : excludedPaths) {
+                if (path.startsWith(excluded)) {
+                    return true;
+                }
+            }
+
+            return false;
+        }
+
+        private void addResults(final List<File> results) {
+            if (results.isEmpty()) {
+                return;
+            }
+
+            GUIMediator.safeInvokeLater(new Runnable() {
+                public void run() {
+                    LibraryMediator.instance().addFilesToLibraryTable(results);
+
+                    if (directoryHolder instanceof SavedFilesDirectoryHolder) {
+                        LibraryFilesTableMediator.instance().resetAudioPlayerFileView();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Searches _query walking haystackDir, used until the folder is indexed.
+         */
+        private void walk(File haystackDir, Set<File> excludeFiles, Set<File> exludedSubFolders) {
+            if (canceled) {
+                return;
+            }
+
+            if (haystackDir == null || !haystackDir.isDirectory() || !haystackDir.exists()) {
+                return;
+            }
+
             final List<File> directories = new ArrayList<File>();
             final List<File> results = new ArrayList<File>();
             SearchFileFilter searchFilter = new SearchFileFilter(_query);
@@ -403,7 +507,7 @@ public class LibrarySearch extends JPanel {
             GUIMediator.safeInvokeLater(r);
 
             for (File directory : directories) {
-                search(directory, excludeFiles, exludedSubFolders);
+                walk(directory, excludeFiles, exludedSubFolders);
             }
         }
 
@@ -454,6 +558,13 @@ public class LibrarySearch extends JPanel {
             _tokens = StringUtils.removeDoubleSpaces(normalize(query)).split(" ");
         }
 
+        /**
+         * @return the normalized tokens of the query
+         */
+        public String[] getTokens() {
+            return _tokens;
+        }
+
         public boolean accept(File pathname) {
             return accept(pathname, true);
         }
@@ -473,23 +584,12 @@ public class LibrarySearch extends JPanel {
                 return true;
             }
 
-            String name = normalize(pathname.getAbsolutePath());
-
-            for (String token : _tokens) {
-                if (!name.contains(token)) {
-                    return false;
-                }
-            }
-
-            return true;
+            // same matching as the library index
+            return LibraryFileIndex.matches(normalize(pathname.getAbsolutePath()), _tokens);
         }
 
         private String normalize(String token) {
-            String norm = Normalizer.normalize(token, Normalizer.Form.NFKD);
-            norm = norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-            norm = norm.toLowerCase(Locale.US);
-
-            return norm;
+            return LibraryFileIndex.normalize(token);
         }
     }
 
@@ -536,7 +636,7 @@ public class LibrarySearch extends JPanel {
             }
 
             String sql = null;
-            List<List<Object>> rows = null;
+            List<PlaylistItem> items = null;
 
             //Show everything
             if (StringUtils.isNullOrEmpty(query, true) || query.equals(".")) {
@@ -548,22 +648,23 @@ public class LibrarySearch extends JPanel {
                 return;
             } else {
                 String luceneQuery = com.frostwire.alexandria.LibraryUtils.wildcardLuceneQuery(query);
+                RowMapper<PlaylistItem> mapper = PlaylistItemDB.newMapper(LibraryMediator.instance().getLibraryPlaylists().getSelectedPlaylist());
                 //Full text search
                 if (!playlist.isStarred()) {
                     sql = "SELECT T.playlistItemId, T.filePath, T.fileName, T.fileSize, T.fileExtension, T.trackTitle, T.trackDurationInSecs, T.trackArtist, T.trackAlbum, T.coverArtPath, T.trackBitrate, T.trackComment, T.trackGenre, T.trackNumber, T.trackYear, T.starred, T.sortIndex FROM FTL_SEARCH_DATA(?, 0, 0) FT, PLAYLISTITEMS T WHERE FT.TABLE='PLAYLISTITEMS' AND T.playlistItemId = FT.KEYS[0] AND T.playlistId = ?";
-                    rows = LibraryMediator.getLibrary().getLibraryDatabase().query(sql, luceneQuery, playlist.getId());
+                    items = LibraryMediator.getLibrary().getLibraryDatabase().query(mapper, sql, luceneQuery, playlist.getId());
                 }
                 //Starred playlist search
                 else {
                     sql = "SELECT T.playlistItemId, T.filePath, T.fileName, T.fileSize, T.fileExtension, T.trackTitle, T.trackDurationInSecs, T.trackArtist, T.trackAlbum, T.coverArtPath, T.trackBitrate, T.trackComment, T.trackGenre, T.trackNumber, T.trackYear, T.starred FROM FTL_SEARCH_DATA(?, 1000, 0) FT, PLAYLISTITEMS T WHERE FT.TABLE='PLAYLISTITEMS' AND T.playlistItemId = FT.KEYS[0] AND T.starred = TRUE";
-                    rows = LibraryMediator.getLibrary().getLibraryDatabase().query(sql, luceneQuery);
+                    items = LibraryMediator.getLibrary().getLibraryDatabase().query(mapper, sql, luceneQuery);
                 }
 
             }
 
             final List<PlaylistItem> results = new ArrayList<PlaylistItem>();
 
-            for (List<Object> row : rows) {
+            for (PlaylistItem item : items) {
                 if (canceled) {
                     return;
                 }
@@ -576,8 +677,6 @@ public class LibrarySearch extends JPanel {
                 }
                 /////
 
-                PlaylistItem item = new PlaylistItem(currentPlaylist);
-                PlaylistItemDB.fill(row, item);
                 results.add(item);
 
                 if (results.size() > 100) {
@@ -21,10 +21,11 @@ package com.frostwire.gui.library;
 import com.frostwire.alexandria.Playlist;
 import com.frostwire.alexandria.PlaylistItem;
 import com.frostwire.alexandria.db.LibraryDatabase;
+import com.frostwire.alexandria.db.PlaylistItemDB;
 import com.frostwire.gui.bittorrent.TorrentUtil;
 import com.frostwire.gui.library.LibraryPlaylistsTableTransferable.Item;
 import com.frostwire.gui.library.tags.TagsData;
-import com.frostwire.gui.library.tags.TagsReader;
+import com.frostwire.gui.library.tags.TagsExtractor;
 import com.frostwire.gui.player.MediaPlayer;
 import com.frostwire.gui.theme.DialogFinishedListener;
 import com.frostwire.gui.theme.FrostwireInputDialog;
@@ -72,34 +73,60 @@ public class LibraryUtils {
         executor = ExecutorsHelper.newProcessingQueue("LibraryUtils-Executor");
     }
 
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred) {
-        addPlaylistItem(playlist, file, starred, -1);
-    }
+    /**
+     * Imports the files into the playlist. The tags are read in parallel and all the
+     * items are inserted in a single transaction, at the 0-based <code>index</code> or
+     * at the end of the playlist if it's -1.
+     *
+     * @return the number of items added
+     */
+    private static int addPlaylistItems(Playlist playlist, List<File> files, boolean starred, int index) {
+        if (files.isEmpty() || playlist.isDeleted()) {
+            return 0;
+        }
+
+        List<PlaylistItem> newItems = new ArrayList<>(files.size());
 
-    private static void addPlaylistItem(Playlist playlist, File file, boolean starred, int index) {
         try {
-            LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
-            TagsData mt = new TagsReader(file).parse();
-            PlaylistItem item = playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FilenameUtils.getExtension(file.getName()), mt.getTitle(), mt.getDuration(), mt.getArtist(), mt.getAlbum(), "",// TODO: cover art path
-                    mt.getBitrate(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear(), starred);
+            TagsExtractor tags = new TagsExtractor(files);
 
-            List<PlaylistItem> items = playlist.getItems();
-            if (index != -1 && index < items.size()) {
+            for (File file : files) {
+                if (playlist.isDeleted()) {
+                    tags.cancel();
+                    return 0;
+                }
 
-                // insert item
-                items.add(index, item);
+                LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Importing") + " " + file.getName());
 
-                // update all sort indexes from insertion point onwards
-                for (int i = index; i < items.size(); i++) {
-                    PlaylistItem cur_item = items.get(i);
-                    cur_item.setSortIndex(i + 1); //set index 1-based
-                    cur_item.save();
+                TagsData mt = tags.next();
+                if (mt == null) {
+                    continue;
                 }
 
+                newItems.add(playlist.newItem(file.getAbsolutePath(), file.getName(), file.length(), FilenameUtils.getExtension(file.getName()), mt.getTitle(), mt.getDuration(), mt.getArtist(), mt.getAlbum(), "",// TODO: cover art path
+                        mt.getBitrate(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear(), starred));
+            }
+
+            List<PlaylistItem> items = playlist.getItems();
+            if (index >= items.size()) {
+                index = -1;
+            }
+
+            if (!PlaylistItemDB.insertAll(playlist.getLibraryDatabase(), playlist, newItems, index)) {
+                LOG.warn("Unable to import " + newItems.size() + " items into playlist " + playlist.getName());
+                return 0;
+            }
+
+            if (index != -1) {
+                // mirror the shift of the sort indexes made in the database
+                for (PlaylistItem item : items) {
+                    if (item.getSortIndex() > index) {
+                        item.setSortIndex(item.getSortIndex() + newItems.size());
+                    }
+                }
+                items.addAll(index, newItems);
             } else {
-                items.add(item);
-                item.setSortIndex(items.size()); // set sort index to 1-based size
-                item.save();
+                items.addAll(newItems);
             }
 
             if (isPlaylistSelected(playlist)) {
@@ -109,6 +136,8 @@ public class LibraryUtils {
         } finally {
             LibraryMediator.instance().getLibrarySearch().revertStatus();
         }
+
+        return newItems.size();
     }
 
     public static String getSecondsInDDHHMMSS(int s) {
@@ -474,12 +503,13 @@ public class LibraryUtils {
     }
 
     private static void addToPlaylist(Playlist playlist, List<? extends AbstractLibraryTableDataLine<?>> lines) {
-        for (int i = 0; i < lines.size() && !playlist.isDeleted(); i++) {
-            AbstractLibraryTableDataLine<?> line = lines.get(i);
+        List<File> files = new ArrayList<>(lines.size());
+        for (AbstractLibraryTableDataLine<?> line : lines) {
             if (MediaPlayer.isPlayableFile(line.getFile())) {
-                LibraryUtils.addPlaylistItem(playlist, line.getFile(), false);
+                files.add(line.getFile());
             }
         }
+        addPlaylistItems(playlist, files, false, -1);
     }
 
     private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, Set<File> ignore) {
@@ -487,17 +517,23 @@ public class LibraryUtils {
     }
 
     private static int addToPlaylist(Playlist playlist, File[] files, boolean starred, int index, Set<File> ignore) {
-        int count = 0;
-        for (int i = 0; i < files.length && !playlist.isDeleted(); i++) {
-            if (MediaPlayer.isPlayableFile(files[i]) && !ignore.contains(files[i])) {
-                LibraryUtils.addPlaylistItem(playlist, files[i], starred, index + count);
-                count++;
-            } else if (files[i].isDirectory()) {
-                count += addToPlaylist(playlist, files[i].listFiles(), starred, index + count, ignore);
-            }
+        List<File> playableFiles = new ArrayList<>();
+        collectPlayableFiles(files, ignore, playableFiles);
+        return addPlaylistItems(playlist, playableFiles, starred, index);
+    }
+
+    private static void collectPlayableFiles(File[] files, Set<File> ignore, List<File> result) {
+        if (files == null) {
+            return;
         }
 
-        return count;
+        for (File file : files) {
+            if (MediaPlayer.isPlayableFile(file) && !ignore.contains(file)) {
+                result.add(file);
+            } else if (file.isDirectory()) {
+                collectPlayableFiles(file.listFiles(), ignore, result);
+            }
+        }
     }
 
     private static void addToPlaylist(Playlist playlist, PlaylistItem[] playlistItems) {
@@ -622,9 +658,17 @@ public class LibraryUtils {
         HistoHashMap<String> albumNames = new HistoHashMap<String>();
         HistoHashMap<String> genres = new HistoHashMap<String>();
 
+        List<File> playableFiles = new ArrayList<>(mediaFiles.length);
         for (File mf : mediaFiles) {
             if (MediaPlayer.isPlayableFile(mf)) {
-                TagsData mt = new TagsReader(mf).parse();
+                playableFiles.add(mf);
+            }
+        }
+
+        TagsExtractor tags = new TagsExtractor(playableFiles);
+        while (tags.hasNext()) {
+            TagsData mt = tags.next();
+            if (mt != null) {
                 artistNames.update(mt.getArtist());
                 artistsAlbums.update(mt.getArtist() + " - " + mt.getAlbum());
                 albumNames.update(mt.getAlbum());
@@ -703,12 +747,22 @@ public class LibraryUtils {
     public static void refreshID3Tags(final Playlist playlist, final List<PlaylistItem> items) {
         executor.execute(new Runnable() {
             public void run() {
+                List<PlaylistItem> existing = new ArrayList<>(items.size());
+                List<File> files = new ArrayList<>(items.size());
                 for (PlaylistItem item : items) {
+                    File file = new File(item.getFilePath());
+                    if (file.exists()) {
+                        existing.add(item);
+                        files.add(file);
+                    }
+                }
+
+                TagsExtractor tags = new TagsExtractor(files);
+                for (PlaylistItem item : existing) {
                     try {
                         LibraryMediator.instance().getLibrarySearch().pushStatus(I18n.tr("Refreshing") + " " + item.getTrackAlbum() + " - " + item.getTrackTitle());
-                        File file = new File(item.getFilePath());
-                        if (file.exists()) {
-                            TagsData mt = new TagsReader(file).parse();
+                        TagsData mt = tags.next();
+                        if (mt != null) {
                             LibraryMediator.getLibrary().updatePlaylistItemProperties(item.getFilePath(), mt.getTitle(), mt.getArtist(), mt.getAlbum(), mt.getComment(), mt.getGenre(), mt.getTrack(), mt.getYear());
                         }
                     } catch (Exception e) {
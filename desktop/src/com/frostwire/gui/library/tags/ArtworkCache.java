@@ -0,0 +1,360 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import com.frostwire.logging.Logger;
+import com.frostwire.util.ByteUtils;
+import com.limegroup.gnutella.gui.GUIMediator;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Two level cache of the cover art of the files, scaled down to the size it's
+ * displayed at.
+ * <p>
+ * The most recently used thumbnails are kept in memory, bounded by the total
+ * number of pixels. All thumbnails are also stored on disk, keyed by path, size
+ * and last modified time, so the full embedded image is decoded only once per
+ * version of the file. Files without cover art are remembered too.
+ * <p>
+ * The requests are served by a single background thread. Only the latest
+ * request is kept, so browsing quickly through a list doesn't queue the
+ * artwork of every file passed by; prefetching runs when there is nothing
+ * else to do.
+ */
+public final class ArtworkCache {
+
+    private static final Logger LOG = Logger.getLogger(ArtworkCache.class);
+
+    public static final int THUMBNAIL_SIZE = 350;
+
+    private static final long MAX_MEMORY_PIXELS = 64L * THUMBNAIL_SIZE * THUMBNAIL_SIZE;
+
+    private static final int MAX_DISK_ENTRIES = 10000;
+
+    /**
+     * Number of thumbnails written between checks of the size of the store.
+     */
+    private static final int PRUNE_INTERVAL = 500;
+
+    /**
+     * Marks the files known to have no cover art.
+     */
+    private static final BufferedImage NO_ARTWORK = new BufferedImage(1, 1, BufferedImage.TYPE_INT_ARGB);
+
+    private static ArtworkCache instance;
+
+    private final File storeDir;
+    private final ExecutorService executor;
+
+    // guarded by this
+    private final LinkedHashMap<String, BufferedImage> images;
+    private long pixels;
+    private File pendingFile;
+    private ArtworkListener pendingListener;
+    private final LinkedList<File> prefetchQueue;
+    private boolean running;
+
+    // only accessed by the worker thread
+    private int writes;
+
+    public static synchronized ArtworkCache instance() {
+        if (instance == null) {
+            instance = new ArtworkCache(new File(CommonUtils.getUserSettingsDir(), "artwork"));
+        }
+        return instance;
+    }
+
+    private ArtworkCache(File storeDir) {
+        this.storeDir = storeDir;
+        this.executor = ExecutorsHelper.newProcessingQueue("ArtworkCache");
+        this.images = new LinkedHashMap<String, BufferedImage>(16, 0.75f, true);
+        this.prefetchQueue = new LinkedList<File>();
+        this.writes = PRUNE_INTERVAL;
+    }
+
+    /**
+     * Requests the cover art of the file, replacing any previous request not
+     * served yet.
+     * <p>
+     * Must be called from the event dispatch thread. The listener is called in
+     * that same thread, right away if the thumbnail is in memory.
+     */
+    public void request(File file, ArtworkListener listener) {
+        String key = key(file);
+        BufferedImage image;
+
+        synchronized (this) {
+            image = images.get(key);
+            if (image == null) {
+                pendingFile = file;
+                pendingListener = listener;
+                prefetchQueue.remove(file);
+                schedule();
+                return;
+            }
+        }
+
+        listener.onArtwork(file, image != NO_ARTWORK ? image : null);
+    }
+
+    /**
+     * Loads the cover art of the files in the background, in order, dropping
+     * the files of any previous prefetch not done yet.
+     */
+    public void prefetch(List<File> files) {
+        synchronized (this) {
+            prefetchQueue.clear();
+            prefetchQueue.addAll(files);
+            schedule();
+        }
+    }
+
+    // guarded by this
+    private void schedule() {
+        if (!running) {
+            running = true;
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    process();
+                }
+            });
+        }
+    }
+
+    private void process() {
+        while (true) {
+            File file;
+            ArtworkListener listener;
+
+            synchronized (this) {
+                if (pendingFile != null) {
+                    file = pendingFile;
+                    listener = pendingListener;
+                    pendingFile = null;
+                    pendingListener = null;
+                } else if (!prefetchQueue.isEmpty()) {
+                    file = prefetchQueue.removeFirst();
+                    listener = null;
+                } else {
+                    running = false;
+                    return;
+                }
+            }
+
+            BufferedImage image = null;
+            try {
+                image = load(file);
+            } catch (Throwable e) {
+                LOG.error("Error loading cover art of file: " + file, e);
+            }
+
+            if (listener != null) {
+                deliver(file, image, listener);
+            }
+        }
+    }
+
+    private void deliver(final File file, final BufferedImage image, final ArtworkListener listener) {
+        GUIMediator.safeInvokeLater(new Runnable() {
+            @Override
+            public void run() {
+                listener.onArtwork(file, image);
+            }
+        });
+    }
+
+    private BufferedImage load(File file) {
+        String key = key(file);
+
+        synchronized (this) {
+            BufferedImage image = images.get(key);
+            if (image != null) {
+                return image != NO_ARTWORK ? image : null;
+            }
+        }
+
+        File stored = new File(storeDir, digest(key));
+
+        BufferedImage image = readStored(stored);
+        if (image == null) {
+            BufferedImage artwork = new TagsReader(file).getArtwork();
+            image = artwork != null ? scale(artwork) : NO_ARTWORK;
+            writeStored(stored, image);
+        }
+
+        putMemory(key, image);
+
+        return image != NO_ARTWORK ? image : null;
+    }
+
+    private synchronized void putMemory(String key, BufferedImage image) {
+        BufferedImage old = images.put(key, image);
+        if (old != null) {
+            pixels -= pixels(old);
+        }
+        pixels += pixels(image);
+
+        Iterator<BufferedImage> it = images.values().iterator();
+        while (pixels > MAX_MEMORY_PIXELS && it.hasNext()) {
+            pixels -= pixels(it.next());
+            it.remove();
+        }
+    }
+
+    private BufferedImage readStored(File stored) {
+        if (!stored.exists()) {
+            return null;
+        }
+
+        // keeps the most recently used thumbnails out of the pruning
+        stored.setLastModified(System.currentTimeMillis());
+
+        if (stored.length() == 0) {
+            return NO_ARTWORK;
+        }
+
+        try {
+            return ImageIO.read(stored);
+        } catch (Throwable e) {
+            LOG.warn("Unable to read stored cover art " + stored + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeStored(File stored, BufferedImage image) {
+        if (!storeDir.isDirectory() && !storeDir.mkdirs()) {
+            return;
+        }
+
+        if (++writes >= PRUNE_INTERVAL) {
+            writes = 0;
+            prune();
+        }
+
+        try {
+            if (image == NO_ARTWORK) {
+                if (!stored.createNewFile()) {
+                    stored.setLastModified(System.currentTimeMillis());
+                }
+            } else {
+                // jpeg is several times smaller, but can't hold the alpha channel
+                boolean alpha = image.getColorModel().hasAlpha();
+                ImageIO.write(image, alpha ? "png" : "jpg", stored);
+            }
+        } catch (Throwable e) {
+            LOG.warn("Unable to store cover art " + stored + ": " + e.getMessage());
+            stored.delete();
+        }
+    }
+
+    /**
+     * Removes the least recently used thumbnails once the store is full.
+     */
+    private void prune() {
+        File[] files = storeDir.listFiles();
+        if (files == null || files.length < MAX_DISK_ENTRIES) {
+            return;
+        }
+
+        final Map<File, Long> times = new HashMap<File, Long>();
+        for (File f : files) {
+            times.put(f, f.lastModified());
+        }
+
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File f1, File f2) {
+                return times.get(f1).compareTo(times.get(f2));
+            }
+        });
+
+        int n = files.length - MAX_DISK_ENTRIES * 3 / 4;
+        for (int i = 0; i < n; i++) {
+            files[i].delete();
+        }
+    }
+
+    /**
+     * Scales the image down to fit the thumbnail size, keeping the aspect ratio.
+     */
+    private static BufferedImage scale(BufferedImage image) {
+        int w = image.getWidth();
+        int h = image.getHeight();
+        int type = image.getColorModel().hasAlpha() ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+
+        double ratio = Math.min(1.0, (double) THUMBNAIL_SIZE / Math.max(w, h));
+        int targetW = Math.max(1, (int) (w * ratio));
+        int targetH = Math.max(1, (int) (h * ratio));
+
+        // halving at each step avoids the aliasing of a single bilinear pass
+        BufferedImage result = image;
+        do {
+            w = Math.max(targetW, w / 2);
+            h = Math.max(targetH, h / 2);
+
+            BufferedImage step = new BufferedImage(w, h, type);
+            Graphics2D g2 = step.createGraphics();
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g2.drawImage(result, 0, 0, w, h, null);
+            g2.dispose();
+
+            result = step;
+        } while (w != targetW || h != targetH);
+
+        return result;
+    }
+
+    private static long pixels(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight();
+    }
+
+    private static String key(File file) {
+        return file.getAbsolutePath() + ":" + file.length() + ":" + file.lastModified();
+    }
+
+    private static String digest(String key) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-1");
+            return ByteUtils.encodeHex(md.digest(key.getBytes("UTF-8")));
+        } catch (Exception e) {
+            // SHA-1 and UTF-8 are always available
+            throw new RuntimeException(e);
+        }
+    }
+
+    public interface ArtworkListener {
+
+        /**
+         * @param image the thumbnail, or <code>null</code> if the file has no cover art
+         */
+        void onArtwork(File file, BufferedImage image);
+    }
+}
@@ -20,14 +20,12 @@ package com.frostwire.gui.library.tags;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
-import java.io.IOException;
 import java.util.List;
 
 import javax.imageio.IIOException;
 import javax.imageio.ImageIO;
 
 import com.frostwire.mp4.*;
-import org.apache.commons.io.IOUtils;
 
 import com.frostwire.logging.Logger;
 
@@ -49,40 +47,22 @@ class MP4Parser extends AbstractTagParser {
         TagsData data = null;
 
         try {
-            BoxParser parser = new PropertyBoxParserImpl() {
-                @Override
-                public Box parseBox(DataSource byteChannel, Container parent) throws IOException {
-                    Box box = super.parseBox(byteChannel, parent);
+            Mp4MetadataReader mp4 = Mp4MetadataReader.read(file, false);
 
-                    if (box instanceof AbstractBox) {
-                        ((AbstractBox) box).parseDetails();
-                    }
-
-                    return box;
-                }
-            };
-            IsoFile iso = new IsoFile(new FileDataSourceImpl(file), parser);
-
-            try {
+            int duration = getDuration(mp4.getMovieHeaderBox());
+            String bitrate = getBitRate();
 
-                int duration = getDuration(iso);
-                String bitrate = getBitRate(iso);
+            AppleItemListBox ilst = mp4.getItemListBox();
 
-                AppleItemListBox ilst = (AppleItemListBox) Path.getPath(iso.getMovieBox(), "/moov/udta/meta/ilst");
-                
-                String title = getBoxValue(ilst, AppleNameBox.class);
-                String artist = getBoxValue(ilst, AppleArtistBox.class);
-                String album = getBoxValue(ilst, AppleAlbumBox.class);
-                String comment = getBoxValue(ilst, AppleCommentBox.class);
-                String genre = getGenre(ilst);
-                String track = getTrackNumberValue(ilst);
-                String year = getBoxValue(ilst, AppleRecordingYear2Box.class);
+            String title = getBoxValue(ilst, AppleNameBox.class);
+            String artist = getBoxValue(ilst, AppleArtistBox.class);
+            String album = getBoxValue(ilst, AppleAlbumBox.class);
+            String comment = getBoxValue(ilst, AppleCommentBox.class);
+            String genre = getGenre(ilst);
+            String track = getTrackNumberValue(ilst);
+            String year = getBoxValue(ilst, AppleRecordingYear2Box.class);
 
-                data = sanitize(duration, bitrate, title, artist, album, comment, genre, track, year);
-
-            } finally {
-                IOUtils.closeQuietly(iso);
-            }
+            data = sanitize(duration, bitrate, title, artist, album, comment, genre, track, year);
 
         } catch (Exception e) {
             LOG.warn("Unable to parse file using mp4parser: " + file);
@@ -100,38 +80,19 @@ class MP4Parser extends AbstractTagParser {
         BufferedImage image = null;
 
         try {
-            BoxParser parser = new PropertyBoxParserImpl() {
-                @Override
-                public Box parseBox(DataSource byteChannel, Container parent) throws IOException {
-                    Box box = super.parseBox(byteChannel, parent);
-
-                    if (box instanceof AbstractBox) {
-                        ((AbstractBox) box).parseDetails();
-                    }
-
-                    return box;
-                }
-            };
-            IsoFile iso = new IsoFile(new FileDataSourceImpl(file), parser);
-
-            try {
-
-                AppleCoverBox data = (AppleCoverBox) Path.getPath(iso.getMovieBox(), "/moov/udta/meta/ilst/covr");
+            AppleCoverBox data = Mp4MetadataReader.read(file, true).getCoverBox();
+            if (data != null) {
                 data.parseDetails();
-                if (data != null) {
-                    byte[] imageData = data.getCoverData();
-                    if (data.getDataType() == 13) { // jpg
-                        image = imageFromData(imageData);
-                    } else if (data.getDataType() == 14) { // png
-                        try {
-                            image = ImageIO.read(new ByteArrayInputStream(imageData, 0, imageData.length));
-                        } catch (IIOException e) {
-                            LOG.warn("Unable to decode png image from data tag");
-                        }
+                byte[] imageData = data.getCoverData();
+                if (data.getDataType() == 13) { // jpg
+                    image = imageFromData(imageData);
+                } else if (data.getDataType() == 14) { // png
+                    try {
+                        image = ImageIO.read(new ByteArrayInputStream(imageData, 0, imageData.length));
+                    } catch (IIOException e) {
+                        LOG.warn("Unable to decode png image from data tag");
                     }
                 }
-            } finally {
-                IOUtils.closeQuietly(iso);
             }
         } catch (Throwable e) {
             //LOG.error("Unable to read cover art from mp4 file: " + file);
@@ -140,17 +101,19 @@ class MP4Parser extends AbstractTagParser {
         return image;
     }
 
-    private int getDuration(IsoFile iso) {
-        MovieHeaderBox mvhd = iso.getMovieBox().getMovieHeaderBox();
+    private int getDuration(MovieHeaderBox mvhd) {
         return (int) (mvhd.getDuration() / mvhd.getTimescale());
     }
 
-    private String getBitRate(IsoFile iso) {
+    private String getBitRate() {
         return ""; // deep research of atoms per codec
     }
 
     private <T extends Utf8AppleDataBox> String getBoxValue(AppleItemListBox ilst, Class<T> clazz) {
         String value = "";
+        if (ilst == null) {
+            return value;
+        }
         List<T> boxes = ilst.getBoxes(clazz);
         if (boxes != null && !boxes.isEmpty()) {
             value = boxes.get(0).getValue();
@@ -160,6 +123,9 @@ class MP4Parser extends AbstractTagParser {
     
     private String getTrackNumberValue(AppleItemListBox ilst) {
         String value = "";
+        if (ilst == null) {
+            return value;
+        }
         List<AppleTrackNumberBox> boxes = ilst.getBoxes(AppleTrackNumberBox.class);
         if (boxes != null && !boxes.isEmpty()) {
             value = String.valueOf(boxes.get(0).getA());
@@ -169,6 +135,9 @@ class MP4Parser extends AbstractTagParser {
     
     private <T extends AppleVariableSignedIntegerBox> long getBoxLongValue(AppleItemListBox ilst, Class<T> clazz) {
         long value = -1;
+        if (ilst == null) {
+            return value;
+        }
         List<T> boxes = ilst.getBoxes(clazz);
         if (boxes != null && !boxes.isEmpty()) {
             value = boxes.get(0).getValue();
@@ -0,0 +1,321 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import com.frostwire.logging.Logger;
+import org.limewire.concurrent.ExecutorsHelper;
+import org.limewire.util.CommonUtils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Persistent cache of the parsed tags of the files, so revisiting folders or
+ * importing the same files again doesn't parse them again.
+ * <p>
+ * The entries are keyed by absolute path and are valid only while the size and
+ * the last modified time of the file don't change. The least recently used
+ * entries are dropped once the cache is full.
+ * <p>
+ * The cache is loaded in the background. Until it's loaded every lookup
+ * misses and the tags are parsed from the files.
+ */
+public final class TagsCache {
+
+    private static final Logger LOG = Logger.getLogger(TagsCache.class);
+
+    private static final int VERSION = 1;
+
+    private static final int MAX_ENTRIES = 100000;
+
+    /**
+     * Minimum time between saves of a modified cache.
+     */
+    private static final long SAVE_INTERVAL = 30000;
+
+    /**
+     * Entries with longer strings are not cached, to stay within the limits of
+     * {@link DataOutputStream#writeUTF(String)}.
+     */
+    private static final int MAX_STRING_LENGTH = 16384;
+
+    private static TagsCache instance;
+
+    private final File cacheFile;
+    private final ExecutorService executor;
+
+    // guarded by this
+    private final LinkedHashMap<String, Entry> entries;
+    private boolean loadScheduled;
+    private boolean loaded;
+    private boolean dirty;
+    private boolean saveScheduled;
+    private long lastSave;
+
+    public static synchronized TagsCache instance() {
+        if (instance == null) {
+            instance = new TagsCache(new File(CommonUtils.getUserSettingsDir(), "tags.dat"));
+        }
+        return instance;
+    }
+
+    private TagsCache(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.executor = ExecutorsHelper.newProcessingQueue("TagsCache");
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached tags of the file, or <code>null</code> if they are not
+     * cached, the file changed since they were or the cache is still loading.
+     */
+    public TagsData get(File file) {
+        String path = file.getAbsolutePath();
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        synchronized (this) {
+            startLoading();
+            if (!loaded) {
+                return null;
+            }
+
+            Entry e = entries.get(path);
+            if (e == null) {
+                return null;
+            }
+            if (e.lastModified != lastModified || e.length != length) {
+                entries.remove(path);
+                dirty = true;
+                return null;
+            }
+            return e.data;
+        }
+    }
+
+    public void put(File file, TagsData data) {
+        if (data == null || !isSavable(data)) {
+            return;
+        }
+
+        Entry e = new Entry(file.lastModified(), file.length(), data);
+
+        synchronized (this) {
+            startLoading();
+
+            entries.put(file.getAbsolutePath(), e);
+            dirty = true;
+
+            if (!saveScheduled && System.currentTimeMillis() - lastSave >= SAVE_INTERVAL) {
+                scheduleSave();
+            }
+        }
+    }
+
+    /**
+     * Saves the cache in the background if it was modified since the last save.
+     */
+    public synchronized void flush() {
+        if (dirty && !saveScheduled) {
+            scheduleSave();
+        }
+    }
+
+    // guarded by this
+    private void scheduleSave() {
+        saveScheduled = true;
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                save();
+            }
+        });
+    }
+
+    /**
+     * Loads the cache in the background, called at startup so it's ready by
+     * the time the library is browsed.
+     */
+    public synchronized void startLoading() {
+        if (!loadScheduled) {
+            loadScheduled = true;
+            // queued before any save, so a save never misses the loaded entries
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    load();
+                }
+            });
+        }
+    }
+
+    private void load() {
+        LinkedHashMap<String, Entry> loadedEntries = new LinkedHashMap<String, Entry>();
+        try {
+            read(loadedEntries);
+        } finally {
+            synchronized (this) {
+                // the entries put while loading are newer, they are kept as
+                // the most recently used
+                LinkedHashMap<String, Entry> added = new LinkedHashMap<String, Entry>(entries);
+                entries.clear();
+                entries.putAll(loadedEntries);
+                entries.putAll(added);
+                loaded = true;
+            }
+        }
+    }
+
+    private void read(Map<String, Entry> readEntries) {
+        if (!cacheFile.exists()) {
+            return;
+        }
+
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(cacheFile)));
+
+            if (in.readInt() != VERSION) {
+                return;
+            }
+
+            int numEntries = in.readInt();
+            for (int i = 0; i < numEntries; i++) {
+                String path = in.readUTF();
+                long lastModified = in.readLong();
+                long length = in.readLong();
+                int duration = in.readInt();
+                TagsData data = new TagsData(duration, readString(in), readString(in), readString(in), readString(in), readString(in), readString(in), readString(in), readString(in));
+                readEntries.put(path, new Entry(lastModified, length, data));
+            }
+
+            LOG.info("Loaded tags of " + numEntries + " files from " + cacheFile);
+        } catch (Throwable e) {
+            LOG.warn("Unable to load tags cache " + cacheFile + ": " + e.getMessage());
+        } finally {
+            if (in != null) {
+                try {
+                    in.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private void save() {
+        List<String> paths;
+        List<Entry> saved;
+
+        synchronized (this) {
+            dirty = false;
+            saveScheduled = false;
+            lastSave = System.currentTimeMillis();
+            paths = new ArrayList<String>(entries.keySet());
+            saved = new ArrayList<Entry>(entries.values());
+        }
+
+        File temp = new File(cacheFile.getAbsolutePath() + ".tmp");
+
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+
+            out.writeInt(VERSION);
+
+            // least recently used first, so the load keeps the same order
+            out.writeInt(saved.size());
+            for (int i = 0; i < saved.size(); i++) {
+                Entry e = saved.get(i);
+                TagsData data = e.data;
+                out.writeUTF(paths.get(i));
+                out.writeLong(e.lastModified);
+                out.writeLong(e.length);
+                out.writeInt(data.getDuration());
+                writeString(out, data.getBitrate());
+                writeString(out, data.getTitle());
+                writeString(out, data.getArtist());
+                writeString(out, data.getAlbum());
+                writeString(out, data.getComment());
+                writeString(out, data.getGenre());
+                writeString(out, data.getTrack());
+                writeString(out, data.getYear());
+            }
+
+            out.close();
+            out = null;
+
+            Files.move(temp.toPath(), cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (Throwable e) {
+            synchronized (this) {
+                dirty = true;
+            }
+            LOG.warn("Unable to save tags cache " + cacheFile + ": " + e.getMessage());
+        } finally {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    private static boolean isSavable(TagsData data) {
+        return isSavable(data.getBitrate()) && isSavable(data.getTitle()) && isSavable(data.getArtist()) && isSavable(data.getAlbum()) && isSavable(data.getComment()) && isSavable(data.getGenre()) && isSavable(data.getTrack()) && isSavable(data.getYear());
+    }
+
+    private static boolean isSavable(String s) {
+        return s == null || s.length() <= MAX_STRING_LENGTH;
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeUTF(s);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static final class Entry {
+
+        final long lastModified;
+        final long length;
+        final TagsData data;
+
+        Entry(long lastModified, long length, TagsData data) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2014, FrostWire(R). All rights reserved.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.frostwire.gui.library.tags;
+
+import com.frostwire.logging.Logger;
+import org.limewire.concurrent.ExecutorsHelper;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Reads the tags of a list of files on a small shared pool of threads and
+ * hands them back in order.
+ * <p>
+ * Only a window of files ahead of the consumer is read at any time, so a slow
+ * consumer (or a slow disk) doesn't end up with the whole list queued in the
+ * pool. The tags go through {@link TagsReader}, so they are served from the
+ * {@link TagsCache} when the files didn't change.
+ */
+public final class TagsExtractor {
+
+    private static final Logger LOG = Logger.getLogger(TagsExtractor.class);
+
+    private static final int THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Maximum number of files read ahead of the consumer.
+     */
+    private static final int WINDOW = THREADS * 4;
+
+    private static final ExecutorService executor = ExecutorsHelper.newFixedSizeThreadPool(THREADS, "TagsExtractor");
+
+    private final List<File> files;
+    private final ArrayDeque<Future<TagsData>> pending;
+
+    private int submitted;
+    private int consumed;
+
+    public TagsExtractor(List<File> files) {
+        this.files = files;
+        this.pending = new ArrayDeque<Future<TagsData>>(WINDOW);
+    }
+
+    public boolean hasNext() {
+        return consumed < files.size();
+    }
+
+    /**
+     * Waits for the tags of the next file of the list.
+     *
+     * @return the tags, or <code>null</code> if they could not be read
+     */
+    public TagsData next() {
+        while (submitted < files.size() && submitted - consumed < WINDOW) {
+            pending.add(submit(files.get(submitted++)));
+        }
+
+        File file = files.get(consumed++);
+        Future<TagsData> future = pending.poll();
+
+        TagsData data = null;
+        try {
+            data = future.get();
+            if (data == null) {
+                LOG.warn("Unable to read tags of file: " + file);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOG.error("Error reading tags of file: " + file, e.getCause());
+        }
+
+        if (!hasNext()) {
+            TagsCache.instance().flush();
+        }
+
+        return data;
+    }
+
+    /**
+     * Stops reading the remaining files.
+     */
+    public void cancel() {
+        for (Future<TagsData> f : pending) {
+            f.cancel(false);
+        }
+        pending.clear();
+        consumed = submitted = files.size();
+        TagsCache.instance().flush();
+    }
+
+    private static Future<TagsData> submit(final File file) {
+        return executor.submit(new Callable<TagsData>() {
+            @Override
+            public TagsData call() throws Exception {
+                return new TagsReader(file).parse();
+            }
+        });
+    }
+}
@@ -37,8 +37,17 @@ public class TagsReader {
         this.file = file;
     }
 
+    /**
+     * Returns the tags of the file, from the {@link TagsCache} if the file
+     * didn't change since they were parsed.
+     */
     public TagsData parse() {
-        TagsData data = null;
+        TagsCache cache = TagsCache.instance();
+
+        TagsData data = cache.get(file);
+        if (data != null) {
+            return data;
+        }
 
         TagsParser parser = new TagsParserFactory().getInstance(file);
 
@@ -53,6 +62,8 @@ public class TagsReader {
             LOG.warn("Unable to create tags parser for file: " + file);
         }
 
+        cache.put(file, data);
+
         return data;
     }
 
@@ -24,8 +24,6 @@ import com.frostwire.gui.library.LibraryMediator;
 import com.frostwire.gui.library.tags.TagsReader;
 import com.frostwire.gui.mplayer.MPlayer;
 import com.frostwire.mp4.*;
-import com.frostwire.mp4.Box;
-import com.frostwire.mp4.Container;
 import com.frostwire.mplayer.IcyInfoListener;
 import com.frostwire.mplayer.MediaPlaybackState;
 import com.frostwire.mplayer.PositionListener;
@@ -36,7 +34,6 @@ import com.limegroup.gnutella.gui.MPlayerMediator;
 import com.limegroup.gnutella.gui.RefreshListener;
 import com.limegroup.gnutella.settings.PlayerSettings;
 import org.apache.commons.io.FilenameUtils;
-import org.apache.commons.io.IOUtils;
 import org.limewire.concurrent.ExecutorsHelper;
 import org.limewire.util.FileUtils;
 import org.limewire.util.OSUtils;
@@ -45,7 +42,6 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyEvent;
 import java.io.File;
-import java.io.IOException;
 import java.lang.Math;
 import java.util.*;
 import java.util.List;
@@ -120,6 +116,7 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
         });
         mplayer.addStateListener(new StateListener() {
             public void stateChanged(MediaPlaybackState newState) {
+                GUIMediator.requestRefresh();
                 if (newState == MediaPlaybackState.Closed) { // This is the case
                                                              // mplayer is
                                                              // done with the
@@ -285,25 +282,8 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
 
     private long getDurationFromM4A(File f) {
         try {
-            BoxParser parser = new PropertyBoxParserImpl() {
-                @Override
-                public Box parseBox(DataSource byteChannel, Container parent) throws IOException {
-                    Box box = super.parseBox(byteChannel, parent);
-
-                    if (box instanceof AbstractBox) {
-                        ((AbstractBox) box).parseDetails();
-                    }
-
-                    return box;
-                }
-            };
-            IsoFile isoFile = new IsoFile(new FileDataSourceImpl(f), parser);
-
-            try {
-                return isoFile.getMovieBox().getMovieHeaderBox().getDuration() / isoFile.getMovieBox().getMovieHeaderBox().getTimescale();
-            } finally {
-                IOUtils.closeQuietly(isoFile);
-            }
+            MovieHeaderBox mvhd = Mp4MetadataReader.read(f, false).getMovieHeaderBox();
+            return mvhd.getDuration() / mvhd.getTimescale();
         } catch (Throwable e) {
             return -1;
         }
@@ -503,6 +483,8 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      * @param state
      */
     protected void notifyState(final MediaPlaybackState state) {
+        // the playing indicators are repainted by the gui refresh
+        GUIMediator.requestRefresh();
 
         if (stateNotificationsEnabled) {
             SwingUtilities.invokeLater(new Runnable() {
@@ -518,6 +500,7 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      * off of the player thread while using a lock on the input stream
      */
     protected void notifyProgress(final float currentTimeInSecs) {
+        GUIMediator.requestRefresh();
         SwingUtilities.invokeLater(new Runnable() {
             public void run() {
                 fireProgress(currentTimeInSecs);
@@ -584,7 +567,10 @@ public abstract class MediaPlayer implements RefreshListener, MPlayerUIEventList
      * played
      */
     public void refresh() {
-        notifyState(getState());
+        // not a change, publishing it would keep the gui refresh from idling
+        if (stateNotificationsEnabled) {
+            fireState(getState());
+        }
     }
 
     public void playNextMedia() {
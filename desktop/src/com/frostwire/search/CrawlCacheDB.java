@@ -18,6 +18,7 @@
 
 package com.frostwire.search;
 
+import java.io.File;
 import java.io.IOException;
 
 import com.frostwire.logging.Logger;
@@ -51,7 +52,7 @@ public final class CrawlCacheDB {
 
     private static final String DATABASE_NAME = "crawldb";
 
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 2;
 
     private static final String TABLE_NAME = "CacheData";
 
@@ -100,7 +101,7 @@ public final class CrawlCacheDB {
             values = new ContentValues();
         }
 
-        Long now = Long.valueOf(System.currentTimeMillis() / 1000);
+        Long now = Long.valueOf(System.currentTimeMillis());
 
         if (values.containsKey(Columns.DATE_ADDED) == false) {
             values.put(Columns.DATE_ADDED, now);
@@ -111,6 +112,101 @@ public final class CrawlCacheDB {
         return db.insert(TABLE_NAME, "", values);
     }
 
+    /**
+     * Inserts the entry, or replaces the data of the existing row with the same key.
+     *
+     * @return the size of the data replaced, 0 if the key is new
+     */
+    public synchronized long merge(String key, byte[] data, long dateAdded, long expires) {
+        long replaced = sizeOf(key);
+
+        SQLiteDatabase db = databaseHelper.getWritableDatabase();
+
+        db.execSQL("MERGE INTO " + TABLE_NAME + " (" + Columns.KEY + "," + Columns.DATA + "," + Columns.SIZE + "," + Columns.DATE_ADDED + "," + Columns.EXPIRES + ") KEY (" + Columns.KEY + ") VALUES (?,?,?,?,?)",
+                new Object[] { key, data, Long.valueOf(data.length), Long.valueOf(dateAdded), Long.valueOf(expires) });
+
+        return replaced;
+    }
+
+    /**
+     * Deletes the entry with the given key.
+     *
+     * @return the size of the data deleted, 0 if there was none
+     */
+    public synchronized long deleteKey(String key) {
+        long deleted = sizeOf(key);
+
+        delete(Columns.KEY + " = ?", new String[] { key });
+
+        return deleted;
+    }
+
+    private long sizeOf(String key) {
+        return queryLong("SELECT " + Columns.SIZE + " FROM " + TABLE_NAME + " WHERE " + Columns.KEY + " = ?", key);
+    }
+
+    public int deleteExpired(long now) {
+        return delete(Columns.EXPIRES + " < ?", new String[] { String.valueOf(now) });
+    }
+
+    public long count() {
+        return queryLong("SELECT COUNT(*) FROM " + TABLE_NAME);
+    }
+
+    /**
+     * @return the sum of the data sizes, in bytes
+     */
+    public long totalSize() {
+        return queryLong("SELECT SUM(" + Columns.SIZE + ") FROM " + TABLE_NAME);
+    }
+
+    /**
+     * Deletes the oldest entries until at least the given amount of data bytes is released.
+     *
+     * @return the number of bytes released
+     */
+    public long evictOldest(long bytes) {
+        long released = 0;
+        long threshold = -1;
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+        Cursor c = db.rawQueryWithFactory(null, "SELECT " + Columns.SIZE + "," + Columns.DATE_ADDED + " FROM " + TABLE_NAME + " ORDER BY " + Columns.DATE_ADDED + " ASC", null, TABLE_NAME);
+        if (c != null) {
+            try {
+                while (released < bytes && c.moveToNext()) {
+                    released += c.getLong(1);
+                    threshold = c.getLong(2);
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        if (threshold >= 0) {
+            delete(Columns.DATE_ADDED + " <= ?", new String[] { String.valueOf(threshold) });
+        }
+
+        return released;
+    }
+
+    private long queryLong(String sql, String... selectionArgs) {
+        long r = 0;
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+        Cursor c = db.rawQueryWithFactory(null, sql, selectionArgs, TABLE_NAME);
+        if (c != null) {
+            try {
+                if (c.moveToNext()) {
+                    r = c.getLong(1);
+                }
+            } finally {
+                c.close();
+            }
+        }
+
+        return r;
+    }
+
     public int delete(String where, String[] whereArgs) {
         SQLiteDatabase db = databaseHelper.getWritableDatabase();
 
@@ -136,7 +232,11 @@ public final class CrawlCacheDB {
         public static final String ID = "id";
         public static final String KEY = "key";
         public static final String DATA = "data";
+        public static final String SIZE = "size";
+        /** milliseconds */
         public static final String DATE_ADDED = "dateAdded";
+        /** milliseconds */
+        public static final String EXPIRES = "expires";
     }
 
     /**
@@ -149,6 +249,19 @@ public final class CrawlCacheDB {
             super(context, DATABASE_NAME, null, DATABASE_VERSION, "CACHE_SIZE=4096;CACHE_TYPE=SOFT_TQ");
         }
 
+        private static void deleteOldVersions() {
+            for (int version = 1; version < DATABASE_VERSION; version++) {
+                File folder = new File(new Context().getDatabasePath(DATABASE_NAME).getAbsolutePath() + "." + version);
+                if (folder.exists()) {
+                    try {
+                        FileUtils.deleteDirectory(folder);
+                    } catch (IOException e) {
+                        LOG.warn("Unable to delete old crawl cache database version " + version);
+                    }
+                }
+            }
+        }
+
         @Override
         public void onCreate(SQLiteDatabase db) {
             if (SearchSettings.SMART_SEARCH_DATABASE_FOLDER.getValue().exists()) {
@@ -159,12 +272,16 @@ public final class CrawlCacheDB {
                 }
             }
 
+            deleteOldVersions();
+
             db.execSQL("SET IGNORECASE TRUE");
 
-            db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.KEY + " VARCHAR," + Columns.DATA + " BINARY," + Columns.DATE_ADDED + " BIGINT" + ");");
+            db.execSQL("CREATE TABLE " + TABLE_NAME + " (" + Columns.ID + " INTEGER IDENTITY," + Columns.KEY + " VARCHAR," + Columns.DATA + " BINARY," + Columns.SIZE + " INTEGER," + Columns.DATE_ADDED + " BIGINT," + Columns.EXPIRES + " BIGINT" + ");");
 
             db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.ID + " ON " + TABLE_NAME + " (" + Columns.ID + ")");
-            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.KEY + " ON " + TABLE_NAME + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE UNIQUE INDEX idx_" + TABLE_NAME + "_" + Columns.KEY + " ON " + TABLE_NAME + " (" + Columns.KEY + ")");
+            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.DATE_ADDED + " ON " + TABLE_NAME + " (" + Columns.DATE_ADDED + ")");
+            db.execSQL("CREATE INDEX idx_" + TABLE_NAME + "_" + Columns.EXPIRES + " ON " + TABLE_NAME + " (" + Columns.EXPIRES + ")");
         }
 
         @Override
@@ -0,0 +1,325 @@
+/*
+ * Created by Angel Leon (@gubatron), Alden Torres (aldenml)
+ * Copyright (c) 2011-2015, FrostWire(R). All rights reserved.
+
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.frostwire.search;
+
+import com.frostwire.database.Cursor;
+import com.frostwire.logging.Logger;
+import com.frostwire.search.CrawlCacheDB.Columns;
+import com.frostwire.util.ThreadPool;
+import com.limegroup.gnutella.settings.SearchSettings;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Crawl cache with a small in-memory LRU in front of the H2 database.
+ * <p>
+ * Entries in the database expire after a TTL (much shorter for the
+ * <code>failed:</code> negative entries) and the total data size is kept
+ * under a byte budget by evicting the oldest entries. The in-memory entries
+ * keep the expiration time of the database row, so a memory hit never serves
+ * data the database would have expired.
+ *
+ * @author gubatron
+ * @author aldenml
+ */
+public class TieredCrawlCache implements CrawlCache {
+
+    private static final Logger LOG = Logger.getLogger(TieredCrawlCache.class);
+
+    private static final String FAILED_KEY_PREFIX = "failed:";
+
+    private static final long DEFAULT_TTL = TimeUnit.DAYS.toMillis(30);
+    private static final long FAILED_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private static final long MAX_MEMORY_BYTES = 8 * 1024 * 1024; // 8MB
+    private static final long MAX_DATABASE_BYTES = 512 * 1024 * 1024; // 512MB
+    private static final long DATABASE_BYTES_LOW_MARK = MAX_DATABASE_BYTES * 9 / 10;
+
+    private static final int PUTS_PER_MAINTENANCE = 500;
+
+    private final CrawlCacheDB db;
+
+    // access ordered, guarded by itself
+    private final LinkedHashMap<String, Entry> memory;
+    private long memoryBytes;
+
+    private final AtomicLong databaseBytes;
+    private final AtomicLong memoryHits;
+    private final AtomicLong databaseHits;
+    private final AtomicLong misses;
+
+    private final AtomicInteger putsSinceMaintenance;
+    private final AtomicBoolean maintenanceScheduled;
+    private final ExecutorService maintenanceExecutor;
+
+    public TieredCrawlCache() {
+        this.db = CrawlCacheDB.instance();
+        this.memory = new LinkedHashMap<String, Entry>(128, 0.75f, true);
+        this.memoryBytes = 0;
+        this.databaseBytes = new AtomicLong();
+        this.memoryHits = new AtomicLong();
+        this.databaseHits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.putsSinceMaintenance = new AtomicInteger();
+        this.maintenanceScheduled = new AtomicBoolean();
+        this.maintenanceExecutor = ThreadPool.newThreadPool("TieredCrawlCache-maintenance", 1, true);
+
+        // expire old entries and load the real database size
+        scheduleMaintenance();
+    }
+
+    @Override
+    public byte[] get(String key) {
+        byte[] data = memoryGet(key);
+        if (data != null) {
+            memoryHits.incrementAndGet();
+            return data;
+        }
+
+        Entry e = databaseGet(key);
+        if (e != null) {
+            databaseHits.incrementAndGet();
+            memoryPut(key, e);
+            return e.data;
+        }
+
+        misses.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void put(String key, byte[] data) {
+        if (!SearchSettings.SMART_SEARCH_ENABLED.getValue() || data == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        long expires = now + ttl(key);
+
+        memoryPut(key, new Entry(data, expires));
+
+        try {
+            long replaced = db.merge(key, data, now, expires);
+            databaseBytes.addAndGet(data.length - replaced);
+        } catch (Throwable e) {
+            LOG.warn("Error putting value to crawl cache: " + e.getMessage());
+        }
+
+        if (putsSinceMaintenance.incrementAndGet() >= PUTS_PER_MAINTENANCE || databaseBytes.get() > MAX_DATABASE_BYTES) {
+            scheduleMaintenance();
+        }
+    }
+
+    @Override
+    public void remove(String key) {
+        memoryRemove(key);
+
+        try {
+            databaseBytes.addAndGet(-db.deleteKey(key));
+        } catch (Throwable e) {
+            LOG.warn("Error deleting value from crawl cache: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void clear() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+
+        try {
+            db.delete("", new String[] {});
+            databaseBytes.set(0);
+        } catch (Throwable e) {
+            LOG.warn("Error deleting crawl cache: " + e.getMessage());
+        }
+    }
+
+    /**
+     * @return the number of entries in the database
+     */
+    @Override
+    public long size() {
+        try {
+            return db.count();
+        } catch (Throwable e) {
+            LOG.warn("Failed to get the crawl cache size", e);
+            return 0;
+        }
+    }
+
+    /**
+     * @return the bytes of cached data in the database
+     */
+    public long getBytes() {
+        return databaseBytes.get();
+    }
+
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public long getHits() {
+        return memoryHits.get() + databaseHits.get();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public float getHitRate() {
+        long hits = getHits();
+        long total = hits + misses.get();
+        return total > 0 ? (float) hits / total : 0f;
+    }
+
+    private byte[] memoryGet(String key) {
+        synchronized (memory) {
+            Entry e = memory.get(key);
+            if (e == null) {
+                return null;
+            }
+            if (e.expires < System.currentTimeMillis()) {
+                memory.remove(key);
+                memoryBytes -= e.data.length;
+                return null;
+            }
+            return e.data;
+        }
+    }
+
+    private void memoryPut(String key, Entry e) {
+        if (e.data.length > MAX_MEMORY_BYTES / 8) {
+            // don't let a single big torrent flush the whole front tier
+            memoryRemove(key);
+            return;
+        }
+
+        synchronized (memory) {
+            Entry old = memory.put(key, e);
+            if (old != null) {
+                memoryBytes -= old.data.length;
+            }
+            memoryBytes += e.data.length;
+
+            Iterator<Map.Entry<String, Entry>> it = memory.entrySet().iterator();
+            while (memoryBytes > MAX_MEMORY_BYTES && it.hasNext()) {
+                memoryBytes -= it.next().getValue().data.length;
+                it.remove();
+            }
+        }
+    }
+
+    private void memoryRemove(String key) {
+        synchronized (memory) {
+            Entry old = memory.remove(key);
+            if (old != null) {
+                memoryBytes -= old.data.length;
+            }
+        }
+    }
+
+    private Entry databaseGet(String key) {
+        Entry e = null;
+
+        Cursor c = null;
+
+        try {
+            String[] columns = new String[] { Columns.DATA, Columns.EXPIRES };
+            String where = Columns.KEY + " = ?";
+            String[] whereArgs = new String[] { key };
+
+            c = db.query(columns, where, whereArgs, null);
+
+            if (c != null && c.moveToNext()) {
+                long expires = c.getLong(c.getColumnIndex(Columns.EXPIRES));
+                if (expires >= System.currentTimeMillis()) {
+                    e = new Entry(c.getBytes(c.getColumnIndex(Columns.DATA)), expires);
+                }
+            }
+
+        } catch (Throwable t) {
+            LOG.warn("General failure getting cache data with key: " + key, t);
+        } finally {
+            if (c != null) {
+                c.close();
+            }
+        }
+
+        return e;
+    }
+
+    private void scheduleMaintenance() {
+        if (maintenanceScheduled.compareAndSet(false, true)) {
+            putsSinceMaintenance.set(0);
+            maintenanceExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        maintenance();
+                    } catch (Throwable e) {
+                        LOG.warn("Error performing crawl cache maintenance: " + e.getMessage());
+                    } finally {
+                        maintenanceScheduled.set(false);
+                    }
+                }
+            });
+        }
+    }
+
+    private void maintenance() {
+        int expired = db.deleteExpired(System.currentTimeMillis());
+
+        long total = db.totalSize();
+        if (total > MAX_DATABASE_BYTES) {
+            total -= db.evictOldest(total - DATABASE_BYTES_LOW_MARK);
+        }
+        databaseBytes.set(total);
+
+        LOG.debug("Crawl cache maintenance, expired: " + expired + ", bytes: " + total);
+    }
+
+    private static long ttl(String key) {
+        return key.startsWith(FAILED_KEY_PREFIX) ? FAILED_TTL : DEFAULT_TTL;
+    }
+
+    private static final class Entry {
+
+        final byte[] data;
+        final long expires;
+
+        Entry(byte[] data, long expires) {
+            this.data = data;
+            this.expires = expires;
+        }
+    }
+}
@@ -39,4 +39,25 @@ public interface DownloadManager {
      * snapshots and scheduling snapshot checkpointing.
      */
     public void loadSavedDownloadsAndScheduleWriting();
+
+    /**
+     * @return true while the downloads of the previous session are being
+     * restored
+     */
+    public boolean isRestoringDownloads();
+
+    /**
+     * @return the number of downloads of the previous session restored so far
+     */
+    public int getRestoredDownloads();
+
+    /**
+     * @return the number of downloads of the previous session to restore
+     */
+    public int getDownloadsToRestore();
+
+    /**
+     * @return the time in milliseconds the restore took, or is taking so far
+     */
+    public long getRestoreTime();
 }
@@ -87,6 +87,22 @@ public final class DownloadManagerImpl implements DownloadManager {
         }
     }
 
+    public boolean isRestoringDownloads() {
+        return BTEngine.getInstance().isRestoring();
+    }
+
+    public int getRestoredDownloads() {
+        return BTEngine.getInstance().getRestoredCount();
+    }
+
+    public int getDownloadsToRestore() {
+        return BTEngine.getInstance().getRestoreTotal();
+    }
+
+    public long getRestoreTime() {
+        return BTEngine.getInstance().getRestoreTime();
+    }
+
     /*
     private void updateDownloadManagerPortableSaveLocation(org.gudy.azureus2.core3.download.DownloadManager downloadManager) {
         boolean hadToPauseIt = false;
@@ -189,6 +189,12 @@ public final class GUIMediator {
      */
     private static final List<RefreshListener> REFRESH_LIST = new ArrayList<>();
 
+    /**
+     * The timer that refreshes the <tt>RefreshListener</tt>s, <tt>null</tt>
+     * until the core is initialized.
+     */
+    private volatile RefreshTimer refreshTimer;
+
     /**
      * String to be displayed in title bar of LW client.
      */
@@ -281,8 +287,21 @@ public final class GUIMediator {
     }
 
     private final void startTimer() {
-        RefreshTimer timer = new RefreshTimer();
-        timer.startTimer();
+        refreshTimer = new RefreshTimer();
+        refreshTimer.startTimer();
+    }
+
+    /**
+     * Publishes a change that the <tt>RefreshListener</tt>s should show,
+     * bringing the next refresh forward if the gui is idle. Can be called
+     * from any thread, it does nothing if the gui isn't constructed yet.
+     */
+    public static void requestRefresh() {
+        GUIMediator mediator = _instance;
+        RefreshTimer timer = mediator != null ? mediator.refreshTimer : null;
+        if (timer != null) {
+            timer.requestRefresh();
+        }
     }
 
     /**
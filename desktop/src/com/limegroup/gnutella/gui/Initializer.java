@@ -17,6 +17,7 @@ package com.limegroup.gnutella.gui;
 
 import com.frostwire.bittorrent.BTContext;
 import com.frostwire.bittorrent.BTEngine;
+import com.frostwire.gui.library.tags.TagsCache;
 import com.frostwire.jlibtorrent.DHT;
 import com.frostwire.util.UserAgentGenerator;
 import com.limegroup.gnutella.ExternalControl;
@@ -433,6 +434,8 @@ public final class Initializer {
         GUIMediator.instance().coreInitialized();
         GUIMediator.setSplashScreenString(I18n.tr("Loading Old Downloads..."));
         limeWireCore.getDownloadManager().loadSavedDownloadsAndScheduleWriting();
+
+        TagsCache.instance().startLoading();
     }
 
     private void startBittorrentCore() {
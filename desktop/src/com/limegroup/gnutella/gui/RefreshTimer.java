@@ -1,25 +1,62 @@
 package com.limegroup.gnutella.gui;
 
+import com.frostwire.logging.Logger;
+
 import javax.swing.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
- * This class handles the timer that refreshes the gui after every 
- * specified interval.
+ * This class handles the timer that refreshes the gui.
+ * <p>
+ * The gui is refreshed every {@link #UPDATE_TIME} while there are changes to
+ * show, and the interval backs off up to {@link #MAX_UPDATE_TIME} while the
+ * refreshes find nothing new. The sources of the data call
+ * {@link #requestRefresh()} when something changes, which brings the next
+ * refresh forward. The time spent by the refreshes in the event dispatch
+ * thread is logged every {@link #STATS_INTERVAL}.
  */
 public final class RefreshTimer {
 
-	/** 
-	 * The interval between statistics updates in milliseconds. 
+	private static final Logger LOG = Logger.getLogger(RefreshTimer.class);
+
+	/**
+	 * The interval between statistics updates in milliseconds, while there
+	 * is activity.
 	 */
 	private final int UPDATE_TIME = 1000;
 
+	/**
+	 * The maximum interval between updates, while there is no activity.
+	 */
+	private final int MAX_UPDATE_TIME = 4000;
+
+	/**
+	 * The delay of a refresh brought forward by a request, so the requests
+	 * arriving together are served by the same refresh.
+	 */
+	private final int REQUEST_DELAY = 100;
+
+	private final long STATS_INTERVAL = 5 * 60 * 1000;
+
 	/**
 	 * variable for timer that updates the gui.
 	 */
 	private Timer _timer;
-	  
+
+	/**
+	 * Set when a change is published, cleared by the next refresh.
+	 */
+	private final AtomicBoolean _requested = new AtomicBoolean();
+
+	// only accessed in the event dispatch thread
+	private int _delay = UPDATE_TIME;
+	private long _ticks;
+	private long _totalTime;
+	private long _maxTime;
+	private long _statsStart;
+
 	/**
 	 * Creates the timer and the ActionListener associated with it.
 	 */
@@ -29,21 +66,74 @@ public final class RefreshTimer {
                 refreshGUI();
 			}
 		};
-		
+
 		_timer = new Timer(UPDATE_TIME, refreshGUI);
+		_timer.setRepeats(false);
 	}
 
 	/**
 	 * Starts the timer that updates the gui.
 	 */
 	public void startTimer() {
+		_statsStart = System.currentTimeMillis();
 		_timer.start();
 	}
 
-	/** 
-	 * Refreshes all of the gui elements.
+	/**
+	 * Publishes a change to show in the gui, bringing the next refresh
+	 * forward if the gui is being refreshed at the idle rate. Can be called
+	 * from any thread.
+	 */
+	public void requestRefresh() {
+		if (_requested.compareAndSet(false, true)) {
+			GUIMediator.safeInvokeLater(new Runnable() {
+				public void run() {
+					if (_delay > UPDATE_TIME) {
+						_delay = UPDATE_TIME;
+						_timer.setInitialDelay(REQUEST_DELAY);
+						_timer.restart();
+					}
+				}
+			});
+		}
+	}
+
+	/**
+	 * Refreshes all of the gui elements, and schedules the next refresh.
 	 */
 	private void refreshGUI() {
-		GUIMediator.instance().refreshGUI();
+		boolean requested = _requested.getAndSet(false);
+
+		long start = System.nanoTime();
+		try {
+			GUIMediator.instance().refreshGUI();
+		} finally {
+			updateStats(System.nanoTime() - start);
+
+			// the changes published while refreshing mean there is activity too
+			if (requested || _requested.getAndSet(false)) {
+				_delay = UPDATE_TIME;
+			} else {
+				_delay = Math.min(MAX_UPDATE_TIME, _delay * 2);
+			}
+
+			_timer.setInitialDelay(_delay);
+			_timer.restart();
+		}
+	}
+
+	private void updateStats(long time) {
+		_ticks++;
+		_totalTime += time;
+		_maxTime = Math.max(_maxTime, time);
+
+		long now = System.currentTimeMillis();
+		if (now - _statsStart >= STATS_INTERVAL) {
+			LOG.info(String.format("GUI refresh: %d ticks in %d s, EDT time avg %.2f ms, max %.2f ms", _ticks, (now - _statsStart) / 1000, _totalTime / 1e6 / _ticks, _maxTime / 1e6));
+			_ticks = 0;
+			_totalTime = 0;
+			_maxTime = 0;
+			_statsStart = now;
+		}
 	}
 }
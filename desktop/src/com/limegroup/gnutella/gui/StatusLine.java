@@ -20,6 +20,7 @@ import com.frostwire.gui.bittorrent.BTDownloadMediator;
 import com.frostwire.gui.theme.SkinCheckBoxMenuItem;
 import com.frostwire.gui.theme.SkinPopupMenu;
 import com.frostwire.jlibtorrent.Session;
+import com.limegroup.gnutella.DownloadManager;
 import com.limegroup.gnutella.gui.options.OptionsConstructor;
 import com.limegroup.gnutella.gui.util.Constants;
 import com.limegroup.gnutella.settings.ApplicationSettings;
@@ -521,8 +522,21 @@ public final class StatusLine {
             int downloads = GUIMediator.instance().getCurrentDownloads();
             int uploads = GUIMediator.instance().getCurrentUploads();
 
-            _bandwidthUsageDown.setText(downloads + " @ " + sDown);
-            _bandwidthUsageUp.setText(uploads + " @ " + sUp);
+            String textDown = downloads + " @ " + sDown;
+            String textUp = uploads + " @ " + sUp;
+
+            DownloadManager downloadManager = GuiCoreMediator.getDownloadManager();
+            if (downloadManager.isRestoringDownloads()) {
+                textDown += " (" + I18n.tr("restoring {0} of {1}", downloadManager.getRestoredDownloads(), downloadManager.getDownloadsToRestore()) + ")";
+            }
+
+            // the transfers are active, keep refreshing at the full rate
+            if (!textDown.equals(_bandwidthUsageDown.getText()) || !textUp.equals(_bandwidthUsageUp.getText())) {
+                GUIMediator.requestRefresh();
+            }
+
+            _bandwidthUsageDown.setText(textDown);
+            _bandwidthUsageUp.setText(textUp);
         } catch (Throwable ignored) {
         }
     }
@@ -12,6 +12,7 @@ import javax.swing.JOptionPane;
 
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.DialogOption;
+import com.limegroup.gnutella.gui.GUIUtils;
 import com.limegroup.gnutella.gui.I18n;
 import com.limegroup.gnutella.gui.LabeledComponent;
 import com.limegroup.gnutella.gui.search.SearchMediator;
@@ -26,6 +27,8 @@ public final class SmartSearchDBPaneItem extends AbstractPaneItem {
 
     private JLabel _numTorrentsLabel;
 
+    private JLabel _cacheSizeLabel;
+
     private JCheckBox smartSearchEnabled;
 
     private long _numTorrents = 0;
@@ -45,9 +48,13 @@ public final class SmartSearchDBPaneItem extends AbstractPaneItem {
 
         _numTorrentsLabel.setFont(font);
 
+        _cacheSizeLabel = new JLabel();
+        _cacheSizeLabel.setFont(font);
+
         smartSearchEnabled = new JCheckBox(I18n.tr("Enable Smart Search"), SearchSettings.SMART_SEARCH_ENABLED.getValue());
 
         LabeledComponent numTorrentsComp = new LabeledComponent(I18n.tr("Total torrents indexed"), _numTorrentsLabel);
+        LabeledComponent cacheSizeComp = new LabeledComponent(I18n.tr("Database size"), _cacheSizeLabel);
 
         add(getVerticalSeparator());
 
@@ -72,6 +79,8 @@ public final class SmartSearchDBPaneItem extends AbstractPaneItem {
 
         add(numTorrentsComp.getComponent());
 
+        add(cacheSizeComp.getComponent());
+
         add(getVerticalSeparator());
 
         add(resetButton);
@@ -95,14 +104,17 @@ public final class SmartSearchDBPaneItem extends AbstractPaneItem {
      */
     public void initOptions() {
         _numTorrentsLabel.setText("...");
+        _cacheSizeLabel.setText("...");
         BackgroundExecutorService.schedule(new Runnable() {
             @Override
             public void run() {
                 _numTorrents = SearchMediator.instance().getTotalTorrents();
+                final long cacheBytes = SearchMediator.instance().getCacheBytes();
                 GUIMediator.safeInvokeLater(new Runnable() {
                     @Override
                     public void run() {
                         _numTorrentsLabel.setText(String.valueOf(_numTorrents));
+                        _cacheSizeLabel.setText(GUIUtils.toUnitbytes(cacheBytes));
                         smartSearchEnabled.setSelected(SearchSettings.SMART_SEARCH_ENABLED.getValue());
                     }
                 });
@@ -16,6 +16,7 @@
 package com.limegroup.gnutella.gui.search;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import com.limegroup.gnutella.gui.tables.AbstractTableMediator;
@@ -147,6 +148,17 @@ class ResultPanelModel extends BasicDataLineModel<SearchResultDataLine, UISearch
         return addedAt;
     }
 
+    /**
+     * Maintains the indexes HashMap once for the whole batch.
+     */
+    public int addAll(List<SearchResultDataLine> lines, boolean sorted) {
+        _numResults += lines.size();
+        int first = super.addAll(lines, sorted);
+        if (first != -1)
+            remapIndexes(first);
+        return first;
+    }
+
     /**
      * Gets the row this DataLine is at.
      */
@@ -37,7 +37,6 @@ import javax.swing.*;
 import javax.swing.event.ChangeEvent;
 import javax.swing.event.ChangeListener;
 import java.io.File;
-import java.text.Normalizer;
 import java.util.*;
 
 /**
@@ -98,6 +97,8 @@ public final class SearchMediator {
 
     private final SearchManager manager;
 
+    private TieredCrawlCache crawlCache;
+
     /**
      * This instance handles the display of all search results.
      * TODO: Changed to package-protected for testing to add special results
@@ -133,14 +134,16 @@ public final class SearchMediator {
         });
 
         try {
-            CrawlPagedWebSearchPerformer.setCache(new DatabaseCrawlCache());
+            crawlCache = new TieredCrawlCache();
+            CrawlPagedWebSearchPerformer.setCache(crawlCache);
         } catch (Throwable t) {
             LOG.error("could not set database crawl cache", t);
         }
 
         CrawlPagedWebSearchPerformer.setMagnetDownloader(new LibTorrentMagnetDownloader());
 
-        this.manager = new SearchManagerImpl(SEARCH_MANAGER_NUM_THREADS);
+        // a search that doesn't end by itself in a while is ended, its late results dropped
+        this.manager = new SearchManagerImpl(SEARCH_MANAGER_NUM_THREADS, SearchManagerImpl.DEFAULT_SEARCH_DEADLINE);
         this.manager.observable().subscribe(new Action1<SearchManagerSignal>() {
             @Override
             public void call(SearchManagerSignal s) {
@@ -261,19 +264,19 @@ public final class SearchMediator {
         }
     }
 
-    private List<SearchResult> filter(List<SearchResult> results, List<String> searchTokens) {
+    private List<SearchResult> filter(List<SearchResult> results, KeywordMatcher matcher) {
         List<SearchResult> list;
 
-        if (searchTokens == null || searchTokens.isEmpty()) {
+        if (matcher == null) {
             list = Collections.emptyList();
         } else {
-            list = filter2(results, searchTokens);
+            list = filter2(results, matcher);
         }
 
         return list;
     }
 
-    private List<SearchResult> filter2(List<? extends SearchResult> results, List<String> searchTokens) {
+    private List<SearchResult> filter2(List<? extends SearchResult> results, KeywordMatcher matcher) {
         List<SearchResult> list = new LinkedList<SearchResult>();
 
         try {
@@ -282,7 +285,7 @@ public final class SearchMediator {
                     // special case for youtube
                     if (sr instanceof YouTubeCrawledSearchResult) {
                         list.add(sr);
-                    } else if (filter(new LinkedList<String>(searchTokens), sr)) {
+                    } else if (matcher.matches(sr)) {
                         list.add(sr);
                     }
                 } else {
@@ -297,73 +300,6 @@ public final class SearchMediator {
         return list;
     }
 
-    private boolean filter(List<String> tokens, SearchResult sr) {
-        StringBuilder sb = new StringBuilder();
-
-        sb.append(sr.getDisplayName());
-        if (sr instanceof CrawledSearchResult) {
-            sb.append(((CrawledSearchResult) sr).getParent().getDisplayName());
-        }
-
-        if (sr instanceof FileSearchResult) {
-            sb.append(((FileSearchResult) sr).getFilename());
-        }
-
-        String str = sanitize(sb.toString());
-        str = normalize(str);
-
-        Iterator<String> it = tokens.iterator();
-        while (it.hasNext()) {
-            String token = it.next();
-            if (str.contains(token)) {
-                it.remove();
-            }
-        }
-
-        return tokens.isEmpty();
-    }
-
-    private static String stripHtml(String str) {
-        str = str.replaceAll("\\<.*?>", "");
-        str = str.replaceAll("\\&.*?\\;", "");
-        return str;
-    }
-
-    private String sanitize(String str) {
-        str = stripHtml(str);
-        str = str.replaceAll("\\.torrent|www\\.|\\.com|\\.net|[\\\\\\/%_;\\-\\.\\(\\)\\[\\]\\n\\rÐ&~{}\\*@\\^'=!,¡|#ÀÁ]", " ");
-        str = StringUtils.removeDoubleSpaces(str);
-
-        return str.trim();
-    }
-
-    private List<String> tokenize(String keywords) {
-        keywords = sanitize(keywords);
-
-        Set<String> tokens = new HashSet<String>(Arrays.asList(keywords.toLowerCase(Locale.US).split(" ")));
-
-        return new ArrayList<String>(normalizeTokens(tokens));
-    }
-
-    private Set<String> normalizeTokens(Set<String> tokens) {
-        Set<String> normalizedTokens = new HashSet<String>();
-
-        for (String token : tokens) {
-            String norm = normalize(token);
-            normalizedTokens.add(norm);
-        }
-
-        return normalizedTokens;
-    }
-
-    private String normalize(String token) {
-        String norm = Normalizer.normalize(token, Normalizer.Form.NFKD);
-        norm = norm.replaceAll("\\p{InCombiningDiacriticalMarks}+", "");
-        norm = norm.toLowerCase(Locale.US);
-
-        return norm;
-    }
-
     private static void updateSearchIcon(final long token, final boolean active) {
         GUIMediator.safeInvokeAndWait(new Runnable() {
             public void run() {
@@ -406,8 +342,8 @@ public final class SearchMediator {
      * standard query string, and XML query string.
      */
     private static SearchResultMediator addResultTab(long token, SearchInformation info) {
-        List<String> searchTokens = instance().tokenize(info.getQuery());
-        return getSearchResultDisplayer().addResultTab(token, searchTokens, info);
+        KeywordMatcher matcher = new KeywordMatcher(info.getQuery());
+        return getSearchResultDisplayer().addResultTab(token, matcher, info);
     }
 
     /**
@@ -526,13 +462,13 @@ public final class SearchMediator {
         return SEARCH_FILTER_FACTORY;
     }
 
-    public void onResults(final long token, List<? extends SearchResult> results) {
+    public void onResults(long token, List<? extends SearchResult> results) {
 
-        final SearchResultMediator rp = getResultPanelForGUID(token);
+        SearchResultMediator rp = getResultPanelForGUID(token);
 
         if (rp != null && !rp.isStopped()) {
             @SuppressWarnings("unchecked")
-            List<SearchResult> filtered = filter((List<SearchResult>) results, rp.getSearchTokens());
+            List<SearchResult> filtered = filter((List<SearchResult>) results, rp.getKeywordMatcher());
 
             if (filtered != null && !filtered.isEmpty()) {
 
@@ -541,23 +477,21 @@ public final class SearchMediator {
                     return;
                 }
 
-                final List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
-
-                GUIMediator.safeInvokeAndWait(new Runnable() {
-                    public void run() {
-                        try {
-                            SearchFilter filter = getSearchFilterFactory().createFilter();
-                            for (UISearchResult sr : uiResults) {
-                                if (filter.allow(sr)) {
-                                    getSearchResultDisplayer().addQueryResult(token, sr, rp);
-                                }
-                            }
-                        } catch (Exception e) {
-                            LOG.error("Error adding search result to UI", e);
+                List<UISearchResult> uiResults = convertResults(filtered, se, rp.getQuery());
+
+                try {
+                    SearchFilter filter = getSearchFilterFactory().createFilter();
+                    List<UISearchResult> allowed = new ArrayList<UISearchResult>(uiResults.size());
+                    for (UISearchResult sr : uiResults) {
+                        if (filter.allow(sr)) {
+                            allowed.add(sr);
                         }
                     }
-
-                });
+                    // results are coalesced and added to the table in batches
+                    rp.enqueueResults(token, allowed);
+                } catch (Exception e) {
+                    LOG.error("Error adding search result to UI", e);
+                }
             }
         }
     }
@@ -586,4 +520,15 @@ public final class SearchMediator {
         }
         return r;
     }
+
+    /**
+     * @return the bytes used by the smart search database
+     */
+    public long getCacheBytes() {
+        return crawlCache != null ? crawlCache.getBytes() : 0;
+    }
+
+    public float getCacheHitRate() {
+        return crawlCache != null ? crawlCache.getHitRate() : 0;
+    }
 }
@@ -18,6 +18,7 @@ package com.limegroup.gnutella.gui.search;
 import com.frostwire.gui.components.slides.MultimediaSlideshowPanel;
 import com.frostwire.gui.components.slides.Slide;
 import com.frostwire.gui.components.slides.SlideshowPanel;
+import com.frostwire.search.KeywordMatcher;
 import com.limegroup.gnutella.gui.BoxPanel;
 import com.limegroup.gnutella.gui.GUIMediator;
 import com.limegroup.gnutella.gui.I18n;
@@ -178,8 +179,8 @@ public final class SearchResultDisplayer implements RefreshListener {
 //            entries.get(i).refresh();
 //    }
 
-    SearchResultMediator addResultTab(long token, List<String> searchTokens, SearchInformation info) {
-        SearchResultMediator panel = new SearchResultMediator(token, searchTokens, info);
+    SearchResultMediator addResultTab(long token, KeywordMatcher matcher, SearchInformation info) {
+        SearchResultMediator panel = new SearchResultMediator(token, matcher, info);
 
         if (MAIN_PANEL.getHeight() < SearchResultDisplayer.MIN_HEIGHT) {
             GUIMediator.instance().getMainFrame().resizeSearchTransferDivider(SearchResultDisplayer.MIN_HEIGHT);
@@ -307,32 +308,22 @@ public final class SearchResultDisplayer implements RefreshListener {
     }
 
     /**
-     * If i rp is no longer the i'th panel of this, returns silently. Otherwise
-     * adds line to rp under the given group. Updates the count on the tab in
-     * this and restarts the spinning lime.
+     * If rp is no longer responsible for the token, returns silently.
+     * Otherwise adds the whole batch of lines to rp and updates the count
+     * on the tab once.
      */
-    void addQueryResult(long token, UISearchResult line, SearchResultMediator rp) {
-        if (rp.isStopped()) {
+    void addQueryResults(long token, List<UISearchResult> lines, SearchResultMediator rp) {
+        if (rp.isStopped() || !rp.matches(token)) {
             return;
         }
 
-        //Actually add the line.   Must obtain rp's monitor first.
-        if (!rp.matches(token))//GUID of rp!=replyGuid
-            throw new IllegalArgumentException("guids don't match");
+        rp.addResults(lines);
 
-        rp.add(line);
-
-        int resultPanelIndex;
-        // Search for the ResultPanel to verify it exists.
-        resultPanelIndex = entries.indexOf(rp);
-
-        // If we couldn't find it, silently exit.
+        int resultPanelIndex = entries.indexOf(rp);
         if (resultPanelIndex == -1) {
             return;
         }
 
-        //Update index on tab.  Don't forget to add 1 since line hasn't
-        //actually been added!
         tabbedPane.setTitleAt(resultPanelIndex, titleOf(rp));
     }
 
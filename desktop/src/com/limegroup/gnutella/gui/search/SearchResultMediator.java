@@ -25,6 +25,7 @@ import com.frostwire.gui.theme.SkinMenu;
 import com.frostwire.gui.theme.SkinMenuItem;
 import com.frostwire.gui.theme.SkinPopupMenu;
 import com.frostwire.gui.theme.ThemeMediator;
+import com.frostwire.search.KeywordMatcher;
 import com.frostwire.search.SearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.uxstats.UXAction;
@@ -53,6 +54,8 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -76,7 +79,24 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
      */
     private long token;
 
-    private final List<String> searchTokens;
+    private final KeywordMatcher matcher;
+
+    /**
+     * The time window in milliseconds used to coalesce incoming results
+     * before they are added to the table.
+     */
+    private static final int RESULTS_FRAME_MS = 100;
+
+    /**
+     * Results waiting for the next frame, guarded by itself.
+     */
+    private final List<UISearchResult> pendingResults = new ArrayList<UISearchResult>();
+
+    private long pendingToken;
+
+    private boolean flushScheduled;
+
+    private final Timer resultsTimer = createResultsTimer();
 
     /**
      * The CompositeFilter for this ResultPanel.
@@ -123,7 +143,7 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
         SEARCH_INFO = SearchInformation.createKeywordSearch("", null, MediaType.getAnyTypeMediaType());
         FILTER = null;
         this.token = 0;
-        this.searchTokens = null;
+        this.matcher = null;
         setButtonEnabled(SearchButtons.TORRENT_DETAILS_BUTTON_INDEX, false);
         // disable dnd for overlay panel
         TABLE.setDragEnabled(false);
@@ -138,11 +158,11 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
      * @param token the guid of the query.  Used to match results.
      * @param info the info of the search
      */
-    SearchResultMediator(long token, List<String> searchTokens, SearchInformation info) {
+    SearchResultMediator(long token, KeywordMatcher matcher, SearchInformation info) {
         super(SEARCH_TABLE);
         SEARCH_INFO = info;
         this.token = token;
-        this.searchTokens = searchTokens;
+        this.matcher = matcher;
         setupRealTable();
         resetFilters();
     }
@@ -904,8 +924,8 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
         setButtonEnabled(SearchButtons.STOP_SEARCH_BUTTON_INDEX, active);
     }
 
-    List<String> getSearchTokens() {
-        return searchTokens;
+    KeywordMatcher getKeywordMatcher() {
+        return matcher;
     }
 
     public void updateFiltersPanel() {
@@ -925,4 +945,99 @@ public final class SearchResultMediator extends AbstractTableMediator<TableRowFi
 
         schemaBox.updateCounters(o);
     }
+
+    /**
+     * Queues results of the given search to be added in the next frame.
+     * Can be called from any thread.
+     */
+    void enqueueResults(long token, List<UISearchResult> results) {
+        synchronized (pendingResults) {
+            if (pendingToken != token) {
+                pendingResults.clear();
+                pendingToken = token;
+            }
+            pendingResults.addAll(results);
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                resultsTimer.start();
+            }
+        }
+    }
+
+    /**
+     * Adds a batch of results to the table in one pass, keeping the
+     * current selection. Must be called from the event dispatch thread.
+     */
+    void addResults(List<UISearchResult> results) {
+        if (TABLE.isEditing()) {
+            TABLE.getCellEditor().cancelCellEditing();
+        }
+
+        boolean sorted = SETTINGS.REAL_TIME_SORT.getValue() && DATA_MODEL.isSorted();
+
+        List<SearchResultDataLine> lines = new ArrayList<SearchResultDataLine>(results.size());
+        for (UISearchResult sr : results) {
+            SearchResultDataLine line = DATA_MODEL.getNewDataLine(sr);
+            if (line != null) {
+                lines.add(line);
+            }
+        }
+        if (sorted) {
+            Collections.sort(lines, DATA_MODEL);
+        }
+
+        // store the selection & visible rows, merged rows move around
+        int[] rows = TABLE.getSelectedRows();
+        SearchResultDataLine[] selected = new SearchResultDataLine[rows.length];
+        SearchResultDataLine inView = null;
+        for (int i = 0; i < rows.length; i++) {
+            selected[i] = DATA_MODEL.get(rows[i]);
+            if (inView == null && TABLE.isRowVisible(rows[i])) {
+                inView = selected[i];
+            }
+        }
+
+        int first = DATA_MODEL.addAll(lines, sorted);
+
+        if (first != -1 && selected.length > 0) {
+            TABLE.clearSelection();
+            for (SearchResultDataLine line : selected) {
+                int row = DATA_MODEL.getRow(line);
+                if (row != -1) {
+                    TABLE.addRowSelectionInterval(row, row);
+                    if (line == inView) {
+                        TABLE.ensureRowVisible(row);
+                    }
+                }
+            }
+        }
+
+        schemaBox.updateCounters(results);
+    }
+
+    private Timer createResultsTimer() {
+        Timer timer = new Timer(RESULTS_FRAME_MS, new ActionListener() {
+            public void actionPerformed(ActionEvent e) {
+                flushResults();
+            }
+        });
+        timer.setRepeats(false);
+        return timer;
+    }
+
+    private void flushResults() {
+        List<UISearchResult> results;
+        long resultsToken;
+        synchronized (pendingResults) {
+            results = new ArrayList<UISearchResult>(pendingResults);
+            resultsToken = pendingToken;
+            pendingResults.clear();
+            flushScheduled = false;
+        }
+
+        if (!results.isEmpty()) {
+            SearchMediator.getSearchResultDisplayer().addQueryResults(resultsToken, results, this);
+        }
+    }
 }
@@ -96,6 +96,30 @@ public class TableRowFilteredModel extends ResultPanelModel {
         return -1;
     }
 
+    /**
+     * Applies the same rules as add(SearchResultDataLine, int) to a batch,
+     * adding the allowed lines in one pass.
+     */
+    public int addAll(List<SearchResultDataLine> lines, boolean sorted) {
+        List<SearchResultDataLine> allowed = new ArrayList<SearchResultDataLine>(lines.size());
+        boolean hideJunk = SearchSettings.hideJunk();
+
+        for (SearchResultDataLine tl : lines) {
+            if (junkFilter.allow(tl) || !hideJunk) {
+                if (allow(tl)) {
+                    allowed.add(tl);
+                } else {
+                    HIDDEN.add(tl);
+                    _numResults += 1;
+                }
+            } else {
+                _numResults += 1;
+            }
+        }
+
+        return super.addAll(allowed, sorted);
+    }
+
     /**
      * Intercepts to clear the hidden map.
      */
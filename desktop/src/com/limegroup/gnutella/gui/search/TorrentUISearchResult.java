@@ -18,6 +18,8 @@
 
 package com.limegroup.gnutella.gui.search;
 
+import com.frostwire.search.CrawledSearchResult;
+import com.frostwire.search.torrent.AbstractTorrentSearchResult;
 import com.frostwire.search.torrent.TorrentCrawledSearchResult;
 import com.frostwire.search.torrent.TorrentSearchResult;
 import com.frostwire.uxstats.UXAction;
@@ -74,8 +76,16 @@ public class TorrentUISearchResult extends AbstractUISearchResult {
         return popupMenu;
     }
 
+    /**
+     * The highest seeds reported by the engines that returned the torrent,
+     * it can grow while the search runs.
+     */
     @Override
     public int getSeeds() {
+        Object torrent = sr instanceof CrawledSearchResult ? ((CrawledSearchResult) sr).getParent() : sr;
+        if (torrent instanceof AbstractTorrentSearchResult) {
+            return ((AbstractTorrentSearchResult) torrent).getMergedSeeds();
+        }
         return sr.getSeeds();
     }
 }
@@ -340,6 +340,67 @@ public class BasicDataLineModel<T extends DataLine<E>, E> extends AbstractTableM
         return add(dl, getSortedPosition(dl));
     }
 
+    /**
+     * Adds a batch of DataLines in a single pass and fires a single
+     * rows inserted event for the new rows at the end, plus a rows
+     * updated event for the existing rows the merge moved, since the
+     * new lines are spread among them.
+     *
+     * If sorted is true, the lines must already be ordered by this
+     * model's comparator and are merged into the list, otherwise they
+     * are appended at the end.
+     *
+     * Returns the first row that changed, or -1 if nothing was added.
+     */
+    public int addAll(List<T> lines, boolean sorted) {
+        int k = lines.size();
+        if (k == 0)
+            return -1;
+
+        int n = _list.size();
+        int first;
+        if (!sorted) {
+            _list.addAll(lines);
+            first = n;
+        } else {
+            // rebuild only the tail after the first insertion point,
+            // moving the existing rows in blocks
+            first = upperBound(lines.get(0), 0, n);
+            List<T> tail = new ArrayList<T>(n - first + k);
+            int i = first;
+            for (T dl : lines) {
+                int pos = upperBound(dl, i, n);
+                tail.addAll(_list.subList(i, pos));
+                tail.add(dl);
+                i = pos;
+            }
+            tail.addAll(_list.subList(i, n));
+
+            _list.subList(first, n).clear();
+            _list.addAll(tail);
+        }
+
+        fireTableRowsInserted(n, n + k - 1);
+        if (first < n)
+            fireTableRowsUpdated(first, n + k - 1);
+        return first;
+    }
+
+    /**
+     * Returns the first row in [from, to) that sorts after the DataLine,
+     * or to if there is none.
+     */
+    private int upperBound(T dl, int from, int to) {
+        while (from < to) {
+            int mid = (from + to) >>> 1;
+            if (compare(_list.get(mid), dl) > 0)
+                to = mid;
+            else
+                from = mid + 1;
+        }
+        return from;
+    }
+
     //Implements the DataLineModel interface.
     public T get(int row) {
         if(row == -1)